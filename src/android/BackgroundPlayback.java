@@ -0,0 +1,151 @@
+package com.example.plugin;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.support.v4.media.session.MediaSessionCompat;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ext.mediasession.MediaSessionConnector;
+import com.google.android.exoplayer2.ui.DefaultMediaDescriptionAdapter;
+import com.google.android.exoplayer2.ui.PlayerNotificationManager;
+
+/**
+ * Media session, notification and foreground service of the player that plays in the
+ * background.
+ *
+ * The player that last enabled background playback gets the media session, so headset
+ * and lock screen controls reach it. While the app is in the background its notification
+ * is shown, and {@link PlaybackService} is in the foreground whenever it plays. Players
+ * playing in the background are switched to audio only: with the video track disabled,
+ * the video renderer is released and adaptive streams stop loading video segments. Must
+ * be used on the players' application thread.
+ */
+final class BackgroundPlayback implements PlayerNotificationManager.NotificationListener {
+
+    private static final String CHANNEL_ID = "nativeplayer_playback";
+    private static final int NOTIFICATION_ID = 0x4e50;
+
+    private final Context context;
+    private final MediaSessionCompat mediaSession;
+    private final MediaSessionConnector mediaSessionConnector;
+    private final PlayerNotificationManager notificationManager;
+    @Nullable
+    private PlayerSession active;
+    private boolean inBackground;
+
+    BackgroundPlayback(Context context) {
+        this.context = context.getApplicationContext();
+        mediaSession = new MediaSessionCompat(this.context, "NativePlayer");
+        mediaSessionConnector = new MediaSessionConnector(mediaSession);
+
+        notificationManager = new PlayerNotificationManager.Builder(this.context, NOTIFICATION_ID, CHANNEL_ID)
+                .setChannelNameResourceId(this.context.getResources().getIdentifier(
+                        "nativeplayer_playback_channel", "string", this.context.getPackageName()))
+                .setMediaDescriptionAdapter(new DefaultMediaDescriptionAdapter(createContentIntent()))
+                .setNotificationListener(this)
+                .build();
+        notificationManager.setMediaSessionToken(mediaSession.getSessionToken());
+        notificationManager.setUseStopAction(true);
+    }
+
+    /**
+     * Hands the media session to the session's player.
+     */
+    void setActive(PlayerSession session) {
+        active = session;
+        mediaSessionConnector.setPlayer(session.player);
+        mediaSession.setActive(true);
+        if (inBackground) {
+            notificationManager.setPlayer(session.player);
+        }
+    }
+
+    /**
+     * Takes the media session away from the session, if it has it.
+     */
+    void detach(PlayerSession session) {
+        if (active != session) {
+            return;
+        }
+        active = null;
+        mediaSessionConnector.setPlayer(null);
+        notificationManager.setPlayer(null);
+        mediaSession.setActive(false);
+    }
+
+    void onBackground() {
+        inBackground = true;
+        if (active != null) {
+            notificationManager.setPlayer(active.player);
+        }
+    }
+
+    void onForeground() {
+        inBackground = false;
+        // Cancelling the notification also stops the service
+        notificationManager.setPlayer(null);
+    }
+
+    void release() {
+        onForeground();
+        mediaSessionConnector.setPlayer(null);
+        mediaSession.release();
+        PlaybackService.stop();
+    }
+
+    @Override
+    public void onNotificationPosted(int notificationId, Notification notification, boolean ongoing) {
+        if (!ongoing) {
+            PlaybackService.stopForeground();
+            return;
+        }
+        try {
+            PlaybackService.startForeground(context, notificationId, notification);
+        } catch (IllegalStateException e) {
+            // Android 12+ refuses to start it from the background, e.g. when playback is
+            // resumed from a headset button; the player keeps playing without it
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onNotificationCancelled(int notificationId, boolean dismissedByUser) {
+        PlaybackService.stop();
+    }
+
+    @Nullable
+    private PendingIntent createContentIntent() {
+        Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+        if (launchIntent == null) {
+            return null;
+        }
+        int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+        return PendingIntent.getActivity(context, 0, launchIntent, flags);
+    }
+
+    static void enterAudioOnly(ExoPlayer player) {
+        player.setTrackSelectionParameters(player.getTrackSelectionParameters()
+                .buildUpon()
+                .setTrackTypeDisabled(C.TRACK_TYPE_VIDEO, true)
+                .build());
+    }
+
+    /**
+     * Enables video again and seeks to the closest keyframe, so the picture is back at
+     * once instead of after decoding from the previous keyframe up to the position.
+     */
+    static void exitAudioOnly(PlayerSession session) {
+        ExoPlayer player = session.player;
+        player.setTrackSelectionParameters(player.getTrackSelectionParameters()
+                .buildUpon()
+                .setTrackTypeDisabled(C.TRACK_TYPE_VIDEO, false)
+                .build());
+        session.seekEngine.seekToClosestKeyframe();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.plugin;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load error policy shared by all players: exponential backoff with jitter, and unlimited
+ * retries while the device is offline.
+ *
+ * Which errors are retried at all is left to {@link DefaultLoadErrorHandlingPolicy} (parse
+ * errors, missing files and the like fail immediately); only the delay changes. Retrying
+ * forever while offline keeps a player buffering instead of failing, so it holds its
+ * buffer and resumes loading once a network is back. Called on loader threads.
+ */
+final class BackoffLoadErrorPolicy extends DefaultLoadErrorHandlingPolicy {
+
+    interface Connectivity {
+        boolean isConnected();
+    }
+
+    static final long BASE_DELAY_MS = 500;
+    static final long MAX_DELAY_MS = 16_000;
+
+    // Delay between load retries while no network is available
+    private static final long OFFLINE_RETRY_DELAY_MS = 2000;
+
+    private final Connectivity connectivity;
+
+    BackoffLoadErrorPolicy(Connectivity connectivity) {
+        this.connectivity = connectivity;
+    }
+
+    @Override
+    public long getRetryDelayMsFor(LoadErrorInfo loadErrorInfo) {
+        if (!connectivity.isConnected()) {
+            return OFFLINE_RETRY_DELAY_MS;
+        }
+        if (super.getRetryDelayMsFor(loadErrorInfo) == C.TIME_UNSET) {
+            return C.TIME_UNSET;
+        }
+        return backoffDelayMs(loadErrorInfo.errorCount, BASE_DELAY_MS, MAX_DELAY_MS);
+    }
+
+    @Override
+    public int getMinimumLoadableRetryCount(int dataType) {
+        return connectivity.isConnected() ? super.getMinimumLoadableRetryCount(dataType) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Delay before retry number {@code attempt} (1-based): the exponential ceiling
+     * {@code baseMs * 2^(attempt - 1)}, capped at {@code maxMs}, with its upper half
+     * randomized so that players failing together do not retry in lockstep.
+     */
+    static long backoffDelayMs(int attempt, long baseMs, long maxMs) {
+        long ceiling = Math.min(maxMs, baseMs << Math.min(Math.max(attempt - 1, 0), 20));
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.plugin;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.C;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persisted bandwidth estimates keyed by network.
+ *
+ * Keys are a network type ({@code wifi}, {@code cellular}, ...) optionally followed by an
+ * identity ({@code wifi:"HomeNet"}, {@code cellular:22210}). Each sample updates both the
+ * identity entry and its type entry, so an unseen network of a known type still starts from
+ * a sensible value. Values are smoothed with an exponential moving average and written to
+ * {@link SharedPreferences} at most once per {@link #PERSIST_INTERVAL_MS}.
+ */
+class BandwidthStore {
+
+    private static final String PREFERENCES_NAME = "NativePlayerBandwidth";
+    private static final long PERSIST_INTERVAL_MS = 30_000;
+    // Weight of a new sample in the moving average
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    private final SharedPreferences preferences;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long lastPersistMs = 0;
+
+    private static final class Entry {
+        long bitrate;
+        int samples;
+        long updatedAt;
+    }
+
+    BandwidthStore(Context context) {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        for (Map.Entry<String, ?> stored : preferences.getAll().entrySet()) {
+            try {
+                JSONObject value = new JSONObject(String.valueOf(stored.getValue()));
+                Entry entry = new Entry();
+                entry.bitrate = value.getLong("bitrate");
+                entry.samples = value.getInt("samples");
+                entry.updatedAt = value.getLong("updatedAt");
+                entries.put(stored.getKey(), entry);
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns the stored estimate for {@code networkKey}, falling back to its network type,
+     * or {@link C#LENGTH_UNSET} when neither is known.
+     */
+    synchronized long get(String networkKey) {
+        Entry entry = entries.get(networkKey);
+        if (entry == null) {
+            entry = entries.get(typeOf(networkKey));
+        }
+        return entry != null ? entry.bitrate : C.LENGTH_UNSET;
+    }
+
+    synchronized void record(String networkKey, long bitrate) {
+        update(networkKey, bitrate);
+        String type = typeOf(networkKey);
+        if (!type.equals(networkKey)) {
+            update(type, bitrate);
+        }
+        long nowMs = SystemClock.elapsedRealtime();
+        if (nowMs - lastPersistMs >= PERSIST_INTERVAL_MS) {
+            persist();
+            lastPersistMs = nowMs;
+        }
+    }
+
+    synchronized void flush() {
+        persist();
+    }
+
+    synchronized JSONObject toJson() throws JSONException {
+        JSONObject estimates = new JSONObject();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            estimates.put(entry.getKey(), entryJson(entry.getValue()));
+        }
+        return estimates;
+    }
+
+    synchronized void reset() {
+        entries.clear();
+        preferences.edit().clear().apply();
+    }
+
+    private void update(String key, long bitrate) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entry.bitrate = bitrate;
+            entries.put(key, entry);
+        } else {
+            entry.bitrate = Math.round(entry.bitrate * (1 - SAMPLE_WEIGHT) + bitrate * SAMPLE_WEIGHT);
+        }
+        entry.samples++;
+        entry.updatedAt = System.currentTimeMillis();
+    }
+
+    private void persist() {
+        SharedPreferences.Editor editor = preferences.edit();
+        try {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                editor.putString(entry.getKey(), entryJson(entry.getValue()).toString());
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        editor.apply();
+    }
+
+    private static JSONObject entryJson(Entry entry) throws JSONException {
+        JSONObject value = new JSONObject();
+        value.put("bitrate", entry.bitrate);
+        value.put("samples", entry.samples);
+        value.put("updatedAt", entry.updatedAt);
+        return value;
+    }
+
+    private static String typeOf(String networkKey) {
+        int separator = networkKey.indexOf(':');
+        return separator < 0 ? networkKey : networkKey.substring(0, separator);
+    }
+}
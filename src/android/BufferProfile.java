@@ -0,0 +1,148 @@
+package com.example.plugin;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Buffering thresholds used to build a player's {@link LoadControl}.
+ *
+ * The load control is fixed when the player is built, so pooled players are matched by
+ * profile (see {@link PlayerPool}). Profiles are immutable and compare by value.
+ */
+final class BufferProfile {
+
+    static final BufferProfile DEFAULT = new BufferProfile("default",
+            DefaultLoadControl.DEFAULT_MIN_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
+            C.LENGTH_UNSET);
+
+    // Small startup buffer: playback begins as soon as one second is loaded
+    static final BufferProfile FAST_START = new BufferProfile("fastStart",
+            15_000, 30_000, 1_000, 2_000, C.LENGTH_UNSET);
+
+    // Short buffer capped in bytes for low-RAM devices
+    static final BufferProfile LOW_MEMORY = new BufferProfile("lowMemory",
+            10_000, 20_000, 1_500, 3_000, 8 * 1024 * 1024);
+
+    // Deep buffer that rides out flaky networks at the cost of a slower start
+    static final BufferProfile HIGH_STABILITY = new BufferProfile("highStability",
+            60_000, 120_000, 5_000, 10_000, C.LENGTH_UNSET);
+
+    final String name;
+    final int minBufferMs;
+    final int maxBufferMs;
+    final int bufferForPlaybackMs;
+    final int bufferForPlaybackAfterRebufferMs;
+    final int targetBufferBytes;
+
+    BufferProfile(String name, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs,
+                  int bufferForPlaybackAfterRebufferMs, int targetBufferBytes) {
+        this.name = name;
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.targetBufferBytes = targetBufferBytes;
+    }
+
+    /**
+     * Resolves the {@code bufferProfile} createPlayer option. It is either a preset name or
+     * an object whose fields override the preset named by its {@code base} field. Negative
+     * durations are rejected, since {@code DefaultLoadControl} would throw on them.
+     */
+    static BufferProfile fromOption(@Nullable Object option) throws JSONException {
+        if (option instanceof String) {
+            return forName((String) option);
+        }
+        if (!(option instanceof JSONObject)) {
+            return DEFAULT;
+        }
+        JSONObject custom = (JSONObject) option;
+        BufferProfile base = forName(custom.optString("base", DEFAULT.name));
+        int minBufferMs = durationMs(custom, "minBufferMs", base.minBufferMs);
+        int maxBufferMs = Math.max(minBufferMs, durationMs(custom, "maxBufferMs", base.maxBufferMs));
+        int bufferForPlaybackMs = Math.min(minBufferMs, durationMs(custom, "bufferForPlaybackMs", base.bufferForPlaybackMs));
+        int bufferForPlaybackAfterRebufferMs = Math.min(minBufferMs,
+                durationMs(custom, "bufferForPlaybackAfterRebufferMs", base.bufferForPlaybackAfterRebufferMs));
+        return new BufferProfile("custom",
+                minBufferMs,
+                maxBufferMs,
+                bufferForPlaybackMs,
+                bufferForPlaybackAfterRebufferMs,
+                custom.optInt("targetBufferBytes", base.targetBufferBytes));
+    }
+
+    private static int durationMs(JSONObject custom, String field, int fallback) throws JSONException {
+        int value = custom.optInt(field, fallback);
+        if (value < 0) {
+            throw new JSONException("bufferProfile." + field + " must not be negative: " + value);
+        }
+        return value;
+    }
+
+    static BufferProfile forName(String name) {
+        switch (name) {
+            case "fastStart":
+                return FAST_START;
+            case "lowMemory":
+                return LOW_MEMORY;
+            case "highStability":
+                return HIGH_STABILITY;
+            default:
+                return DEFAULT;
+        }
+    }
+
+    TrimmableLoadControl createLoadControl() {
+        LoadControl loadControl = new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs)
+                .setTargetBufferBytes(targetBufferBytes)
+                .build();
+        return new TrimmableLoadControl(loadControl, Math.min(minBufferMs, TrimmableLoadControl.TRIMMED_BUFFER_MS));
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject profileObj = new JSONObject();
+        profileObj.put("profile", name);
+        profileObj.put("minBufferMs", minBufferMs);
+        profileObj.put("maxBufferMs", maxBufferMs);
+        profileObj.put("bufferForPlaybackMs", bufferForPlaybackMs);
+        profileObj.put("bufferForPlaybackAfterRebufferMs", bufferForPlaybackAfterRebufferMs);
+        profileObj.put("targetBufferBytes", targetBufferBytes);
+        return profileObj;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BufferProfile)) {
+            return false;
+        }
+        BufferProfile other = (BufferProfile) o;
+        return minBufferMs == other.minBufferMs
+                && maxBufferMs == other.maxBufferMs
+                && bufferForPlaybackMs == other.bufferForPlaybackMs
+                && bufferForPlaybackAfterRebufferMs == other.bufferForPlaybackAfterRebufferMs
+                && targetBufferBytes == other.targetBufferBytes;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = minBufferMs;
+        result = 31 * result + maxBufferMs;
+        result = 31 * result + bufferForPlaybackMs;
+        result = 31 * result + bufferForPlaybackAfterRebufferMs;
+        result = 31 * result + targetBufferBytes;
+        return result;
+    }
+}
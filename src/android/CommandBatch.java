@@ -0,0 +1,90 @@
+package com.example.plugin;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaWebView;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Collects the results of the commands of one executeBatch call.
+ *
+ * Each command gets its own {@link CallbackContext} slot. Once every slot has settled,
+ * the batch callback receives an array with one {ok, result} or {ok: false, error} entry
+ * per command, in the order they were sent. Slots may settle on any thread.
+ */
+final class CommandBatch {
+
+    private final CallbackContext callbackContext;
+    private final CordovaWebView webView;
+    private final JSONArray results;
+    private int remaining;
+
+    CommandBatch(int size, CallbackContext callbackContext, CordovaWebView webView) {
+        this.callbackContext = callbackContext;
+        this.webView = webView;
+        this.results = new JSONArray();
+        this.remaining = size;
+        if (size == 0) {
+            callbackContext.success(results);
+        }
+    }
+
+    CallbackContext slot(int index) {
+        return new Slot(index);
+    }
+
+    private synchronized void settle(int index, boolean ok, Object value) {
+        try {
+            JSONObject resultObj = new JSONObject();
+            resultObj.put("ok", ok);
+            resultObj.put(ok ? "result" : "error", value);
+            results.put(index, resultObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        if (--remaining == 0) {
+            callbackContext.success(results);
+        }
+    }
+
+    private final class Slot extends CallbackContext {
+        private final int index;
+        private boolean finished;
+
+        Slot(int index) {
+            super(callbackContext.getCallbackId() + "#" + index, webView);
+            this.index = index;
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            settle(index, pluginResult.getStatus() == PluginResult.Status.OK.ordinal(),
+                    parse(pluginResult.getMessage()));
+        }
+
+        @Override
+        public synchronized boolean isFinished() {
+            return finished;
+        }
+    }
+
+    private static Object parse(String message) {
+        if (message == null) {
+            return JSONObject.NULL;
+        }
+        try {
+            return new JSONTokener(message).nextValue();
+        } catch (JSONException e) {
+            return message;
+        }
+    }
+}
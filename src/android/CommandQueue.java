@@ -0,0 +1,78 @@
+package com.example.plugin;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Serial queue of plugin commands run on the players' application looper.
+ *
+ * Cordova calls execute on its bridge thread, while ExoPlayer and PlayerView may only be
+ * used from the looper the players were built on. Commands are appended here from any
+ * thread and run in order there; all commands pending when the looper gets to the queue
+ * run in the same message, so a burst from JS costs one hop rather than one per command.
+ * {@link #postAll(Collection)} appends a group atomically, so no other command can run in
+ * between its members.
+ */
+final class CommandQueue {
+
+    private final Handler handler;
+    private final Runnable drainRunnable = this::drain;
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+    private boolean drainScheduled;
+
+    CommandQueue(Looper looper) {
+        handler = new Handler(looper);
+    }
+
+    void post(Runnable command) {
+        synchronized (pending) {
+            pending.addLast(command);
+            scheduleDrain();
+        }
+    }
+
+    void postAll(Collection<Runnable> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.addAll(commands);
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Drops the commands that have not run yet.
+     */
+    void clear() {
+        synchronized (pending) {
+            pending.clear();
+            drainScheduled = false;
+            handler.removeCallbacks(drainRunnable);
+        }
+    }
+
+    private void scheduleDrain() {
+        if (!drainScheduled) {
+            drainScheduled = true;
+            handler.post(drainRunnable);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable command;
+            synchronized (pending) {
+                command = pending.pollFirst();
+                if (command == null) {
+                    drainScheduled = false;
+                    return;
+                }
+            }
+            command.run();
+        }
+    }
+}
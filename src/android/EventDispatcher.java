@@ -0,0 +1,138 @@
+package com.example.plugin;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.Nullable;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Queues events natively and delivers them to JS as one batched message per flush.
+ *
+ * Flushes happen once per display frame by default, or after a fixed interval when one
+ * is configured. Events whose payload only describes the latest state (timeUpdate,
+ * progress, ...) are coalesced per scope (the player, or the download for download
+ * events), so a batch carries only the newest value.
+ * Events nobody subscribed to are rejected by {@link #wants(String)} before their payload
+ * is built. Events may be posted from any thread.
+ */
+class EventDispatcher {
+
+    static final String ALL_EVENTS = "*";
+
+    private static final Set<String> COALESCED_EVENTS = new HashSet<>(Arrays.asList(
+            "timeUpdate",
+            "progress",
+            "loadStart",
+            "loadedData",
+            "volumeChange",
+            "rateChange",
+            "resolutionChange",
+            "resize",
+            "downloadProgress",
+            "liveLatency"
+    ));
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LinkedHashMap<String, JSONObject> pending = new LinkedHashMap<>();
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> flush();
+    private final Runnable flushRunnable = this::flush;
+    private final Runnable scheduleFrameRunnable =
+            () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    private volatile CallbackContext callbackContext;
+    private volatile Set<String> subscriptions = Collections.singleton(ALL_EVENTS);
+    private volatile long flushIntervalMs = 0;
+    private boolean flushScheduled = false;
+    private long sequence = 0;
+
+    void setCallbackContext(CallbackContext callbackContext) {
+        this.callbackContext = callbackContext;
+    }
+
+    /**
+     * Replaces the set of event types JS listens to. {@link #ALL_EVENTS} subscribes to
+     * everything.
+     */
+    void setSubscriptions(Collection<String> types) {
+        subscriptions = new HashSet<>(types);
+    }
+
+    /**
+     * Sets the delay between flushes. Zero or less flushes on the next display frame.
+     */
+    void setFlushInterval(long intervalMs) {
+        flushIntervalMs = intervalMs;
+    }
+
+    boolean wants(String type) {
+        if (callbackContext == null) {
+            return false;
+        }
+        Set<String> current = subscriptions;
+        return current.contains(ALL_EVENTS) || current.contains(type);
+    }
+
+    void post(String type, @Nullable String scope, JSONObject event) {
+        String key = COALESCED_EVENTS.contains(type) ? type + "#" + scope : null;
+        synchronized (pending) {
+            if (key == null) {
+                key = "#" + sequence++;
+            } else {
+                // Drop the superseded value so the newest one also takes its place in order
+                pending.remove(key);
+            }
+            pending.put(key, event);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                long intervalMs = flushIntervalMs;
+                if (intervalMs > 0) {
+                    mainHandler.postDelayed(flushRunnable, intervalMs);
+                } else {
+                    mainHandler.post(scheduleFrameRunnable);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        synchronized (pending) {
+            pending.clear();
+            flushScheduled = false;
+        }
+        mainHandler.removeCallbacksAndMessages(null);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    private void flush() {
+        JSONArray batch = new JSONArray();
+        synchronized (pending) {
+            flushScheduled = false;
+            Iterator<JSONObject> iterator = pending.values().iterator();
+            while (iterator.hasNext()) {
+                batch.put(iterator.next());
+                iterator.remove();
+            }
+        }
+        CallbackContext target = callbackContext;
+        if (target == null || batch.length() == 0) {
+            return;
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, batch);
+        result.setKeepCallback(true);
+        target.sendPluginResult(result);
+    }
+}
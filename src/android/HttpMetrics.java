@@ -0,0 +1,269 @@
+package com.example.plugin;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Per-request timings of the shared media HTTP client, totalled per priority class.
+ *
+ * Every call gets its own {@link EventListener}, which measures DNS lookup, connection
+ * setup (including TLS), time to first byte from the request to the response headers,
+ * and transfer from the headers to the end of the body. Phases a reused connection skips
+ * are reported as 0. Calls run on OkHttp's threads; totals are synchronized.
+ */
+final class HttpMetrics implements EventListener.Factory {
+
+    interface Listener {
+        void onRequest(Sample sample);
+    }
+
+    static final class Sample {
+        final String url;
+        final int priority;
+        @Nullable
+        final String protocol;
+        final boolean reused;
+        final long dnsMs;
+        final long connectMs;
+        final long ttfbMs;
+        final long transferMs;
+        final long totalMs;
+        final long bytes;
+        final boolean failed;
+
+        Sample(CallTimer timer) {
+            url = timer.url;
+            priority = timer.priority;
+            protocol = timer.protocol != null ? timer.protocol.toString() : null;
+            reused = timer.connectStartNs == 0;
+            dnsMs = elapsedMs(timer.dnsStartNs, timer.dnsEndNs);
+            connectMs = elapsedMs(timer.connectStartNs, timer.connectEndNs);
+            ttfbMs = elapsedMs(timer.requestStartNs, timer.responseStartNs);
+            transferMs = elapsedMs(timer.responseStartNs, timer.bodyEndNs);
+            totalMs = elapsedMs(timer.callStartNs, timer.callEndNs);
+            bytes = timer.bytes;
+            failed = timer.failed;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject sampleObj = new JSONObject();
+            sampleObj.put("url", url);
+            sampleObj.put("priority", RequestScheduler.nameOf(priority));
+            sampleObj.put("protocol", protocol != null ? protocol : JSONObject.NULL);
+            sampleObj.put("reused", reused);
+            sampleObj.put("dnsMs", dnsMs);
+            sampleObj.put("connectMs", connectMs);
+            sampleObj.put("ttfbMs", ttfbMs);
+            sampleObj.put("transferMs", transferMs);
+            sampleObj.put("totalMs", totalMs);
+            sampleObj.put("bytes", bytes);
+            sampleObj.put("failed", failed);
+            return sampleObj;
+        }
+    }
+
+    private static final class Totals {
+        int requests;
+        int failed;
+        int reused;
+        int http2;
+        long bytes;
+        final Phase dns = new Phase();
+        final Phase connect = new Phase();
+        final Phase ttfb = new Phase();
+        final Phase transfer = new Phase();
+
+        void add(Sample sample) {
+            requests++;
+            if (sample.failed) {
+                failed++;
+                return;
+            }
+            if (sample.reused) {
+                reused++;
+            } else {
+                dns.add(sample.dnsMs);
+                connect.add(sample.connectMs);
+            }
+            if (sample.protocol != null && sample.protocol.startsWith("h2")) {
+                http2++;
+            }
+            bytes += sample.bytes;
+            ttfb.add(sample.ttfbMs);
+            transfer.add(sample.transferMs);
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject totalsObj = new JSONObject();
+            totalsObj.put("requests", requests);
+            totalsObj.put("failed", failed);
+            totalsObj.put("reusedConnections", reused);
+            totalsObj.put("http2", http2);
+            totalsObj.put("bytes", bytes);
+            totalsObj.put("dns", dns.toJson());
+            totalsObj.put("connect", connect.toJson());
+            totalsObj.put("ttfb", ttfb.toJson());
+            totalsObj.put("transfer", transfer.toJson());
+            return totalsObj;
+        }
+    }
+
+    private static final class Phase {
+        int count;
+        long totalMs;
+        long maxMs;
+
+        void add(long ms) {
+            count++;
+            totalMs += ms;
+            maxMs = Math.max(maxMs, ms);
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject phaseObj = new JSONObject();
+            phaseObj.put("meanMs", count > 0 ? totalMs / count : JSONObject.NULL);
+            phaseObj.put("maxMs", maxMs);
+            return phaseObj;
+        }
+    }
+
+    private final Totals[] totals = {new Totals(), new Totals(), new Totals(), new Totals()};
+    @Nullable
+    private volatile Listener listener;
+
+    void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallTimer(call.request().url().toString(),
+                RequestScheduler.fromHeader(call.request().header(MediaHttp.PRIORITY_HEADER)));
+    }
+
+    private void record(CallTimer timer) {
+        Sample sample = new Sample(timer);
+        synchronized (totals) {
+            totals[sample.priority].add(sample);
+        }
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.onRequest(sample);
+        }
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject metricsObj = new JSONObject();
+        synchronized (totals) {
+            for (int priority = RequestScheduler.MANIFEST; priority <= RequestScheduler.PREFETCH; priority++) {
+                metricsObj.put(RequestScheduler.nameOf(priority), totals[priority].toJson());
+            }
+        }
+        return metricsObj;
+    }
+
+    private static long elapsedMs(long startNs, long endNs) {
+        return startNs != 0 && endNs >= startNs ? (endNs - startNs) / 1_000_000 : 0;
+    }
+
+    private final class CallTimer extends EventListener {
+        final String url;
+        final int priority;
+        long callStartNs;
+        long dnsStartNs;
+        long dnsEndNs;
+        long connectStartNs;
+        long connectEndNs;
+        long requestStartNs;
+        long responseStartNs;
+        long bodyEndNs;
+        long callEndNs;
+        long bytes;
+        boolean failed;
+        @Nullable
+        Protocol protocol;
+
+        CallTimer(String url, int priority) {
+            this.url = url;
+            this.priority = priority;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsEndNs = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, @Nullable Protocol protocol) {
+            connectEndNs = System.nanoTime();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            protocol = connection.protocol();
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            responseStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            protocol = response.protocol();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            bodyEndNs = System.nanoTime();
+            bytes = byteCount;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            callEndNs = System.nanoTime();
+            record(this);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            callEndNs = System.nanoTime();
+            failed = true;
+            record(this);
+        }
+    }
+}
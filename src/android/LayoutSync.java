@@ -0,0 +1,110 @@
+package com.example.plugin;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.google.android.exoplayer2.ui.PlayerView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps each player's native view on top of its HTML placeholder.
+ *
+ * Rects pushed from JS (or measured natively at creation) are stored per player; bursts
+ * are coalesced and applied at most once per display frame. They come from
+ * getBoundingClientRect(), in CSS pixels relative to the WebView, and are scaled by the
+ * display density and offset by the WebView's position in the parent both views share.
+ * Moves only touch the view's translation, and the existing layout params are mutated
+ * (triggering a layout pass) only when the size actually changed. Rects of a fullscreen
+ * player are dropped. Rects may be posted from any thread.
+ */
+class LayoutSync {
+
+    interface Listener {
+        void onResized(PlayerSession session);
+    }
+
+    private final View webView;
+    private final Map<Integer, PlayerSession> sessions;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Integer, int[]> pending = new HashMap<>();
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> apply();
+    private final Runnable scheduleFrameRunnable =
+            () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+    private boolean frameScheduled = false;
+
+    LayoutSync(View webView, Map<Integer, PlayerSession> sessions, Listener listener) {
+        this.webView = webView;
+        this.sessions = sessions;
+        this.listener = listener;
+    }
+
+    /**
+     * Queues the placeholder rect of a player, in CSS pixels.
+     */
+    void post(int playerId, int left, int top, int width, int height) {
+        synchronized (pending) {
+            pending.put(playerId, new int[] {left, top, width, height});
+            if (!frameScheduled) {
+                frameScheduled = true;
+                mainHandler.post(scheduleFrameRunnable);
+            }
+        }
+    }
+
+    void clear() {
+        synchronized (pending) {
+            pending.clear();
+            frameScheduled = false;
+        }
+        mainHandler.removeCallbacks(scheduleFrameRunnable);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    private void apply() {
+        Map<Integer, int[]> rects;
+        synchronized (pending) {
+            frameScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            rects = new HashMap<>(pending);
+            pending.clear();
+        }
+        for (Map.Entry<Integer, int[]> update : rects.entrySet()) {
+            PlayerSession session = sessions.get(update.getKey());
+            if (session != null && session.playerView != null && !session.isFullscreen) {
+                apply(session, update.getValue());
+            }
+        }
+    }
+
+    private void apply(PlayerSession session, int[] rect) {
+        PlayerView view = session.playerView;
+        float density = view.getResources().getDisplayMetrics().density;
+        int left = webView.getLeft() + Math.round(rect[0] * density);
+        int top = webView.getTop() + Math.round(rect[1] * density);
+        int width = Math.round(rect[2] * density);
+        int height = Math.round(rect[3] * density);
+
+        if (view.getTranslationX() != left) {
+            view.setTranslationX(left);
+        }
+        if (view.getTranslationY() != top) {
+            view.setTranslationY(top);
+        }
+
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params != null && (params.width != width || params.height != height)) {
+            params.width = width;
+            params.height = height;
+            view.requestLayout();
+            listener.onResized(session);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.plugin;
+
+import android.os.Handler;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Low-latency live mode of one player.
+ *
+ * The target offset, offset window and catch-up speeds are attached to every media item
+ * as a {@link MediaItem.LiveConfiguration}, which takes precedence over the manifest;
+ * ExoPlayer's live speed control then nudges the playback speed to hold the target. When
+ * the player still drifts further behind than {@code fallbackOffsetMs}, the {@code seek}
+ * fallback jumps back to the live edge. While a live item plays, latency is sampled once
+ * a second and reported as a liveLatency event. Must be used on the player's application
+ * thread.
+ */
+final class LiveController implements Player.Listener {
+
+    interface Listener {
+        void onLiveSample(LiveController live);
+    }
+
+    // Any other fallback value ("speed") only ever adjusts the speed
+    static final String FALLBACK_SEEK = "seek";
+
+    private static final long SAMPLE_INTERVAL_MS = 1000;
+
+    private final MediaItem.LiveConfiguration liveConfiguration;
+    private final String fallback;
+    private final long fallbackOffsetMs;
+
+    private final Timeline.Window window = new Timeline.Window();
+    private final Runnable sampleRunnable = this::sample;
+    @Nullable
+    private ExoPlayer player;
+    @Nullable
+    private Handler handler;
+    @Nullable
+    private Listener listener;
+
+    private long targetOffsetMs = C.TIME_UNSET;
+    private long latencyMs = C.TIME_UNSET;
+    private long edgeDistanceMs = C.TIME_UNSET;
+    private long minLatencyMs = Long.MAX_VALUE;
+    private long maxLatencyMs;
+    private int speedAdjustments;
+    private float minSpeed = 1f;
+    private float maxSpeed = 1f;
+    private int fallbackSeeks;
+
+    private LiveController(MediaItem.LiveConfiguration liveConfiguration, String fallback, long fallbackOffsetMs) {
+        this.liveConfiguration = liveConfiguration;
+        this.fallback = fallback;
+        this.fallbackOffsetMs = fallbackOffsetMs;
+    }
+
+    /**
+     * Resolves the {@code live} createPlayer option: {targetOffsetMs, minOffsetMs,
+     * maxOffsetMs, minPlaybackSpeed, maxPlaybackSpeed, fallback, fallbackOffsetMs}. Unset
+     * values are taken from the manifest or ExoPlayer's defaults.
+     */
+    @Nullable
+    static LiveController fromOption(@Nullable JSONObject option) {
+        if (option == null) {
+            return null;
+        }
+        long targetOffsetMs = option.optLong("targetOffsetMs", C.TIME_UNSET);
+        long maxOffsetMs = option.optLong("maxOffsetMs", C.TIME_UNSET);
+        MediaItem.LiveConfiguration liveConfiguration = new MediaItem.LiveConfiguration.Builder()
+                .setTargetOffsetMs(targetOffsetMs)
+                .setMinOffsetMs(option.optLong("minOffsetMs", C.TIME_UNSET))
+                .setMaxOffsetMs(maxOffsetMs)
+                .setMinPlaybackSpeed((float) option.optDouble("minPlaybackSpeed", C.RATE_UNSET))
+                .setMaxPlaybackSpeed((float) option.optDouble("maxPlaybackSpeed", C.RATE_UNSET))
+                .build();
+        long defaultFallbackOffsetMs = maxOffsetMs != C.TIME_UNSET ? 2 * maxOffsetMs
+                : targetOffsetMs != C.TIME_UNSET ? 3 * targetOffsetMs : C.TIME_UNSET;
+        return new LiveController(liveConfiguration,
+                option.optString("fallback", FALLBACK_SEEK),
+                option.optLong("fallbackOffsetMs", defaultFallbackOffsetMs));
+    }
+
+    MediaItem apply(MediaItem mediaItem) {
+        return mediaItem.buildUpon().setLiveConfiguration(liveConfiguration).build();
+    }
+
+    void attach(ExoPlayer player, Handler handler, Listener listener) {
+        this.player = player;
+        this.handler = handler;
+        this.listener = listener;
+        player.addListener(this);
+    }
+
+    void release() {
+        if (player != null) {
+            player.removeListener(this);
+            player = null;
+        }
+        if (handler != null) {
+            handler.removeCallbacks(sampleRunnable);
+        }
+    }
+
+    @Override
+    public void onIsPlayingChanged(boolean isPlaying) {
+        if (handler == null) {
+            return;
+        }
+        handler.removeCallbacks(sampleRunnable);
+        if (isPlaying) {
+            handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL_MS);
+        }
+    }
+
+    @Override
+    public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
+        if (player == null || !player.isCurrentMediaItemLive()) {
+            return;
+        }
+        speedAdjustments++;
+        minSpeed = Math.min(minSpeed, playbackParameters.speed);
+        maxSpeed = Math.max(maxSpeed, playbackParameters.speed);
+    }
+
+    private void sample() {
+        if (player == null || handler == null) {
+            return;
+        }
+        handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL_MS);
+        if (!player.isCurrentMediaItemLive()) {
+            return;
+        }
+        latencyMs = player.getCurrentLiveOffset();
+        Timeline timeline = player.getCurrentTimeline();
+        if (!timeline.isEmpty()) {
+            timeline.getWindow(player.getCurrentMediaItemIndex(), window);
+            // The window carries the configuration in effect, merged with the manifest
+            if (window.liveConfiguration != null) {
+                targetOffsetMs = window.liveConfiguration.targetOffsetMs;
+            }
+            edgeDistanceMs = window.durationMs != C.TIME_UNSET
+                    ? Math.max(0, window.getDurationMs() - player.getCurrentPosition())
+                    : C.TIME_UNSET;
+        }
+        if (latencyMs == C.TIME_UNSET) {
+            return;
+        }
+        minLatencyMs = Math.min(minLatencyMs, latencyMs);
+        maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+        if (FALLBACK_SEEK.equals(fallback) && fallbackOffsetMs != C.TIME_UNSET && latencyMs > fallbackOffsetMs) {
+            // Too far behind to catch up by speed alone
+            fallbackSeeks++;
+            player.seekToDefaultPosition();
+        }
+        if (listener != null) {
+            listener.onLiveSample(this);
+        }
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject live = new JSONObject();
+        live.put("latencyMs", latencyMs != C.TIME_UNSET ? latencyMs : JSONObject.NULL);
+        live.put("edgeDistanceMs", edgeDistanceMs != C.TIME_UNSET ? edgeDistanceMs : JSONObject.NULL);
+        if (maxLatencyMs > 0) {
+            live.put("minLatencyMs", minLatencyMs);
+            live.put("maxLatencyMs", maxLatencyMs);
+        }
+        live.put("targetOffsetMs", targetOffsetMs != C.TIME_UNSET ? targetOffsetMs : JSONObject.NULL);
+        live.put("speed", player != null ? player.getPlaybackParameters().speed : 1f);
+        live.put("speedAdjustments", speedAdjustments);
+        live.put("minSpeed", minSpeed);
+        live.put("maxSpeed", maxSpeed);
+        live.put("fallbackSeeks", fallbackSeeks);
+        return live;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.plugin;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheKeyFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide on-disk media cache shared by all players.
+ *
+ * SimpleCache locks its directory, so there is exactly one instance per process; it
+ * survives plugin re-creation on page reloads. Reads go through a {@link CacheDataSource}
+ * whose key is derived from the request URL, and eviction is least-recently-used against
+ * a byte budget that can be changed at runtime.
+ */
+final class MediaCache {
+
+    static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final String CACHE_DIRECTORY = "nativeplayer-media";
+
+    private static MediaCache instance;
+
+    private final SimpleCache cache;
+    private final BudgetEvictor evictor;
+    private final CacheDataSource.Factory dataSourceFactory;
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+
+    private final AtomicLong hitBytes = new AtomicLong();
+    private final AtomicLong missBytes = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+
+    private volatile boolean ignoreQueryParameters = false;
+
+    static synchronized MediaCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MediaCache(Context context) {
+        evictor = new BudgetEvictor(DEFAULT_MAX_BYTES, evictedBytes);
+        cache = new SimpleCache(
+                new File(context.getCacheDir(), CACHE_DIRECTORY),
+                evictor,
+                new StandaloneDatabaseProvider(context));
+
+        DataSource.Factory upstreamFactory = new DefaultDataSource.Factory(context, MediaHttp.getInstance().getDataSourceFactory())
+                .setTransferListener(new TransferListener() {
+                    @Override
+                    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+                    }
+
+                    @Override
+                    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+                    }
+
+                    @Override
+                    public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+                        if (isNetwork) {
+                            missBytes.addAndGet(bytesTransferred);
+                        }
+                    }
+
+                    @Override
+                    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+                    }
+                });
+
+        CacheKeyFactory keyFactory = dataSpec -> dataSpec.key != null ? dataSpec.key : keyFor(dataSpec.uri);
+        dataSourceFactory = new CacheDataSource.Factory()
+                .setCache(cache)
+                .setUpstreamDataSourceFactory(upstreamFactory)
+                .setCacheKeyFactory(keyFactory)
+                .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+                .setEventListener(new CacheDataSource.EventListener() {
+                    @Override
+                    public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+                        hitBytes.addAndGet(cachedBytesRead);
+                    }
+
+                    @Override
+                    public void onCacheIgnored(int reason) {
+                    }
+                });
+    }
+
+    CacheDataSource.Factory getDataSourceFactory() {
+        return dataSourceFactory;
+    }
+
+    void setMaxBytes(long maxBytes) {
+        evictor.setMaxBytes(cache, maxBytes);
+    }
+
+    /**
+     * When set, URLs that only differ in their query string (typically signed CDN tokens)
+     * share one cache entry.
+     */
+    void setIgnoreQueryParameters(boolean ignore) {
+        ignoreQueryParameters = ignore;
+    }
+
+    /**
+     * Writes the first {@code length} bytes of {@code url} into the cache on a background
+     * thread. {@link C#LENGTH_UNSET} caches the whole resource.
+     */
+    void prefetch(String url, long length, PrefetchCallback callback) {
+        prefetchExecutor.execute(() -> {
+            DataSpec dataSpec = new DataSpec.Builder()
+                    .setUri(Uri.parse(url))
+                    .setPosition(0)
+                    .setLength(length > 0 ? length : C.LENGTH_UNSET)
+                    // Carried through the cache to the HTTP source, behind playback loads
+                    .setCustomData(RequestScheduler.PREFETCH)
+                    .build();
+            CacheWriter writer = new CacheWriter(
+                    dataSourceFactory.createDataSourceForDownloading(),
+                    dataSpec,
+                    /* temporaryBuffer= */ null,
+                    /* progressListener= */ null);
+            try {
+                writer.cache();
+                callback.onComplete(null);
+            } catch (IOException e) {
+                callback.onComplete(e);
+            }
+        });
+    }
+
+    JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("hitBytes", hitBytes.get());
+        stats.put("missBytes", missBytes.get());
+        stats.put("evictedBytes", evictedBytes.get());
+        stats.put("cacheBytes", cache.getCacheSpace());
+        stats.put("maxBytes", evictor.getMaxBytes());
+        return stats;
+    }
+
+    private String keyFor(Uri uri) {
+        if (!ignoreQueryParameters || uri.getQuery() == null) {
+            return uri.toString();
+        }
+        return uri.buildUpon().clearQuery().build().toString();
+    }
+
+    interface PrefetchCallback {
+        void onComplete(@Nullable IOException error);
+    }
+
+    /**
+     * Least-recently-used evictor with a mutable byte budget. Spans removed while enforcing
+     * the budget are counted as evicted bytes.
+     */
+    private static final class BudgetEvictor implements CacheEvictor {
+
+        private final TreeSet<CacheSpan> leastRecentlyUsed = new TreeSet<>(BudgetEvictor::compare);
+        private final AtomicLong evictedBytes;
+        private long maxBytes;
+        private long currentSize;
+
+        BudgetEvictor(long maxBytes, AtomicLong evictedBytes) {
+            this.maxBytes = maxBytes;
+            this.evictedBytes = evictedBytes;
+        }
+
+        synchronized long getMaxBytes() {
+            return maxBytes;
+        }
+
+        void setMaxBytes(Cache cache, long maxBytes) {
+            // SimpleCache serializes evictor callbacks on its own lock
+            synchronized (cache) {
+                synchronized (this) {
+                    this.maxBytes = maxBytes;
+                    evict(cache, 0);
+                }
+            }
+        }
+
+        @Override
+        public boolean requiresCacheSpanTouches() {
+            return true;
+        }
+
+        @Override
+        public void onCacheInitialized() {
+        }
+
+        @Override
+        public synchronized void onStartFile(Cache cache, String key, long position, long length) {
+            if (length != C.LENGTH_UNSET) {
+                evict(cache, length);
+            }
+        }
+
+        @Override
+        public synchronized void onSpanAdded(Cache cache, CacheSpan span) {
+            leastRecentlyUsed.add(span);
+            currentSize += span.length;
+            evict(cache, 0);
+        }
+
+        @Override
+        public synchronized void onSpanRemoved(Cache cache, CacheSpan span) {
+            leastRecentlyUsed.remove(span);
+            currentSize -= span.length;
+        }
+
+        @Override
+        public synchronized void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+            onSpanRemoved(cache, oldSpan);
+            onSpanAdded(cache, newSpan);
+        }
+
+        private void evict(Cache cache, long requiredSpace) {
+            while (currentSize + requiredSpace > maxBytes && !leastRecentlyUsed.isEmpty()) {
+                CacheSpan span = leastRecentlyUsed.first();
+                evictedBytes.addAndGet(span.length);
+                cache.removeSpan(span);
+            }
+        }
+
+        private static int compare(CacheSpan lhs, CacheSpan rhs) {
+            long lastTouchTimestampDelta = lhs.lastTouchTimestamp - rhs.lastTouchTimestamp;
+            if (lastTouchTimestampDelta == 0) {
+                // Use the standard compareTo method as a tie-break.
+                return lhs.compareTo(rhs);
+            }
+            return lhs.lastTouchTimestamp < rhs.lastTouchTimestamp ? -1 : 1;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.plugin;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.ExoPlayerLibraryInfo;
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * Process-wide HTTP stack for media loading, shared by all players, the media cache,
+ * prefetches and downloads.
+ *
+ * One OkHttp client keeps a single connection pool, so connections to a CDN are reused
+ * across players, and HTTP/2 is negotiated where the server offers it, multiplexing all
+ * requests to a host over one connection. Requests are admitted by a
+ * {@link RequestScheduler} rather than OkHttp's per-host limit, and timed by
+ * {@link HttpMetrics}. Reconfiguring swaps the client; calls already running finish on
+ * the old one. Thread-safe.
+ */
+final class MediaHttp implements Call.Factory {
+
+    static final String PRIORITY_HEADER = "Priority";
+
+    static final long DEFAULT_CONNECT_TIMEOUT_MS = 8_000;
+    static final long DEFAULT_READ_TIMEOUT_MS = 8_000;
+    static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+    static final long DEFAULT_KEEP_ALIVE_MS = 5 * 60_000;
+
+    private static MediaHttp instance;
+
+    private final RequestScheduler scheduler = new RequestScheduler(RequestScheduler.DEFAULT_MAX_ACTIVE);
+    private final HttpMetrics metrics = new HttpMetrics();
+    private final DataSource.Factory upstreamFactory;
+    private volatile OkHttpClient client;
+
+    static synchronized MediaHttp getInstance() {
+        if (instance == null) {
+            instance = new MediaHttp(new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS))
+                    .connectTimeout(DEFAULT_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .readTimeout(DEFAULT_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        }
+        return instance;
+    }
+
+    /**
+     * Visible for tests, which point the client at a local HTTP/1.1 or HTTP/2 server.
+     */
+    MediaHttp(OkHttpClient.Builder builder) {
+        Dispatcher dispatcher = new Dispatcher();
+        // The scheduler decides what runs; OkHttp's default of 5 per host would queue again
+        dispatcher.setMaxRequests(64);
+        dispatcher.setMaxRequestsPerHost(64);
+        client = builder
+                .dispatcher(dispatcher)
+                .eventListenerFactory(metrics)
+                .build();
+        upstreamFactory = new OkHttpDataSource.Factory(this)
+                .setUserAgent(ExoPlayerLibraryInfo.DEFAULT_USER_AGENT);
+    }
+
+    @Override
+    public Call newCall(Request request) {
+        return client.newCall(request);
+    }
+
+    /**
+     * Data sources whose priority class is guessed per request, for playback.
+     */
+    DataSource.Factory getDataSourceFactory() {
+        return getDataSourceFactory(PrioritizedDataSource.CLASSIFY);
+    }
+
+    DataSource.Factory getDataSourceFactory(int priority) {
+        return new PrioritizedDataSource.Factory(upstreamFactory, scheduler, priority);
+    }
+
+    void setListener(@Nullable HttpMetrics.Listener listener) {
+        metrics.setListener(listener);
+    }
+
+    /**
+     * options: {connectTimeoutMs, readTimeoutMs, maxIdleConnections, keepAliveMs, http2,
+     * maxConcurrentRequests}. Omitted values keep their current setting.
+     */
+    synchronized void configure(JSONObject options) {
+        OkHttpClient current = client;
+        OkHttpClient.Builder builder = current.newBuilder()
+                .connectTimeout(options.optLong("connectTimeoutMs", current.connectTimeoutMillis()), TimeUnit.MILLISECONDS)
+                .readTimeout(options.optLong("readTimeoutMs", current.readTimeoutMillis()), TimeUnit.MILLISECONDS);
+        if (options.has("maxIdleConnections") || options.has("keepAliveMs")) {
+            // Pools are immutable; idle connections of the old one are dropped
+            builder.connectionPool(new ConnectionPool(
+                    options.optInt("maxIdleConnections", DEFAULT_MAX_IDLE_CONNECTIONS),
+                    options.optLong("keepAliveMs", DEFAULT_KEEP_ALIVE_MS),
+                    TimeUnit.MILLISECONDS));
+        }
+        if (options.has("http2")) {
+            builder.protocols(options.optBoolean("http2", true)
+                    ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                    : Collections.singletonList(Protocol.HTTP_1_1));
+        }
+        client = builder.build();
+        if (options.has("maxConcurrentRequests")) {
+            scheduler.setMaxActive(options.optInt("maxConcurrentRequests", RequestScheduler.DEFAULT_MAX_ACTIVE));
+        }
+    }
+
+    JSONObject getStats() throws JSONException {
+        OkHttpClient client = this.client;
+        JSONObject stats = new JSONObject();
+        stats.put("connections", client.connectionPool().connectionCount());
+        stats.put("idleConnections", client.connectionPool().idleConnectionCount());
+        stats.put("activeRequests", scheduler.activeCount());
+        stats.put("requests", metrics.toJson());
+        return stats;
+    }
+}
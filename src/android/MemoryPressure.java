@@ -0,0 +1,76 @@
+package com.example.plugin;
+
+import android.content.ComponentCallbacks2;
+
+/**
+ * Maps the system's trim levels to what the plugin gives up, in increasing order.
+ *
+ * <ol>
+ * <li>{@link #SHRINK_BUFFERS}: every player stops loading ahead once a few seconds are
+ * buffered, thumbnails are evicted.</li>
+ * <li>{@link #RELEASE_DECODERS}: paused players are stopped, which frees their decoders
+ * and buffers but keeps the player; idle pooled players are released.</li>
+ * <li>{@link #RELEASE_PLAYERS}: paused players are released altogether.</li>
+ * </ol>
+ *
+ * A player that is playing is never stopped or released here.
+ */
+final class MemoryPressure {
+
+    static final int NONE = 0;
+    static final int SHRINK_BUFFERS = 1;
+    static final int RELEASE_DECODERS = 2;
+    static final int RELEASE_PLAYERS = 3;
+
+    private MemoryPressure() {}
+
+    static int stageFor(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            // The process is in the background LRU list and next in line to be killed
+            return RELEASE_PLAYERS;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return RELEASE_DECODERS;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            // Also the UI going to the background
+            return SHRINK_BUFFERS;
+        }
+        return NONE;
+    }
+
+    static String stageName(int stage) {
+        switch (stage) {
+            case SHRINK_BUFFERS:
+                return "shrinkBuffers";
+            case RELEASE_DECODERS:
+                return "releaseDecoders";
+            case RELEASE_PLAYERS:
+                return "releasePlayers";
+            default:
+                return "none";
+        }
+    }
+
+    static String levelName(int level) {
+        switch (level) {
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE:
+                return "runningModerate";
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
+                return "runningLow";
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
+                return "runningCritical";
+            case ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN:
+                return "uiHidden";
+            case ComponentCallbacks2.TRIM_MEMORY_BACKGROUND:
+                return "background";
+            case ComponentCallbacks2.TRIM_MEMORY_MODERATE:
+                return "moderate";
+            case ComponentCallbacks2.TRIM_MEMORY_COMPLETE:
+                return "complete";
+            default:
+                return "level" + level;
+        }
+    }
+}
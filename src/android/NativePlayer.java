@@ -2,438 +2,1653 @@ package com.example.plugin;
 
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CallbackContext;
-import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import android.app.PictureInPictureParams;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Configuration;
+import android.graphics.Color;
 import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.net.NetworkRequest;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
-import android.os.PowerManager;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.Rational;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.Window;
 import android.widget.FrameLayout;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.view.WindowInsetsCompat;
+import androidx.core.view.WindowInsetsControllerCompat;
 
 import com.google.android.exoplayer2.*;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionOverride;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
 import com.google.android.exoplayer2.ui.PlayerView;
 import com.google.android.exoplayer2.video.VideoSize;
+import com.google.android.exoplayer2.decoder.DecoderReuseEvaluation;
 import com.google.android.exoplayer2.analytics.AnalyticsListener;
-import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
 import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.MediaLoadData;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
 import com.google.android.exoplayer2.Format;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class NativePlayer extends CordovaPlugin {
 
-    private ExoPlayer player;
-    private PlayerView playerView;
-    private CallbackContext callbackContext;
+    private final Map<Integer, PlayerSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPlayerId = new AtomicInteger();
+    private final Map<String, Command> commands = new HashMap<>();
+    // PlayerView only accepts players whose application looper is the main looper
+    private final CommandQueue commandQueue = new CommandQueue(Looper.getMainLooper());
+    private PlayerPool playerPool;
+    private BandwidthStore bandwidthStore;
+    private SeededBandwidthMeter bandwidthMeter;
+    private MediaSource.Factory mediaSourceFactory;
+    private boolean cacheEnabled = false;
+    private OfflineManager offlineManager;
+    private ThumbnailEngine thumbnailEngine;
+    private final EventDispatcher events = new EventDispatcher();
+    private final NetworkPolicy networkPolicy = new NetworkPolicy();
+    private final ViewScheduler viewScheduler = new ViewScheduler();
+    private final StartupTracer startupTracer = new StartupTracer();
+    private final BackoffLoadErrorPolicy loadErrorPolicy = new BackoffLoadErrorPolicy(networkPolicy::isConnected);
+    private LayoutSync layoutSync;
     private Handler handler;
     private ConnectivityManager.NetworkCallback networkCallback;
-    private boolean isFullscreen = false;
-    private String divId;
-    private PowerManager.WakeLock wakeLock;
+    private BackgroundPlayback backgroundPlayback;
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        // Called on the main thread, which is the players' application thread
+        @Override
+        public void onTrimMemory(int level) {
+            applyMemoryPressure(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            applyMemoryPressure(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
 
     @Override
-    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
-        this.callbackContext = callbackContext;
-        if (action.equals("createPlayer")) {
-            String url = args.getString(0);
-            this.divId = args.getString(1);
-            this.createPlayer(url, this.divId);
-            return true;
-        } else if (action.equals("play")) {
-            this.play();
-            return true;
-        } else if (action.equals("pause")) {
-            this.pause();
-            return true;
-        } else if (action.equals("stop")) {
-            this.stop();
-            return true;
-        } else if (action.equals("seekTo")) {
-            long position = args.getLong(0);
-            this.seekTo(position);
-            return true;
-        } else if (action.equals("setVolume")) {
-            float volume = (float) args.getDouble(0);
-            this.setVolume(volume);
-            return true;
-        } else if (action.equals("setRate")) {
-            float rate = (float) args.getDouble(0);
-            this.setRate(rate);
-            return true;
-        } else if (action.equals("toggleFullscreen")) {
-            this.toggleFullscreen();
-            return true;
-        } else if (action.equals("togglePictureInPicture")) {
-            this.togglePictureInPicture();
-            return true;
-        } else if (action.equals("setPreferredAudioLanguage")) {
-            String language = args.getString(0);
-            this.setPreferredAudioLanguage(language);
-            return true;
-        } else if (action.equals("setPreferredTextLanguage")) {
-            String language = args.getString(0);
-            this.setPreferredTextLanguage(language);
-            return true;
-        } else if (action.equals("enableSubtitles")) {
-            boolean enable = args.getBoolean(0);
-            this.enableSubtitles(enable);
-            return true;
-        } else if (action.equals("setVideoQuality")) {
-            String quality = args.getString(0);
-            this.setVideoQuality(quality);
-            return true;
-        } else if (action.equals("setBackgroundPlayback")) {
-            boolean enabled = args.getBoolean(0);
-            this.setBackgroundPlayback(enabled);
-            return true;
-        }
-        return false;
-    }
-
-    private void createPlayer(String url, String divId) {
-        cordova.getActivity().runOnUiThread(() -> {
-            player = new SimpleExoPlayer.Builder(cordova.getActivity()).build();
-            playerView = new PlayerView(cordova.getActivity());
-            playerView.setPlayer(player);
-
-            FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
-                    ViewGroup.LayoutParams.MATCH_PARENT,
-                    ViewGroup.LayoutParams.MATCH_PARENT
+    protected void pluginInitialize() {
+        handler = new Handler(Looper.getMainLooper());
+        layoutSync = new LayoutSync(webView.getView(), sessions, session -> sendEvent(session, "resize", null));
+        registerCommands();
+        cordova.getActivity().getApplicationContext().registerComponentCallbacks(memoryCallbacks);
+        MediaHttp.getInstance().setListener(this::sendHttpTiming);
+        // Instantiated eagerly so downloads interrupted by a process kill resume right away
+        handler.post(this::getOfflineManager);
+    }
+
+    @Override
+    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) {
+        Command command = commands.get(action);
+        if (command == null) {
+            return false;
+        }
+        if ("createPlayer".equals(action)) {
+            startupTracer.onCommandReceived(callbackContext.getCallbackId(), args.optLong(3, 0));
+        }
+        if (command.queued) {
+            commandQueue.post(() -> run(command, args, callbackContext));
+        } else {
+            run(command, args, callbackContext);
+        }
+        return true;
+    }
+
+    private interface Action {
+        void run(JSONArray args, CallbackContext callbackContext) throws JSONException;
+    }
+
+    private interface PlayerAction {
+        void run(PlayerSession session, JSONArray args, CallbackContext callbackContext) throws JSONException;
+    }
+
+    private static final class Command {
+        final Action action;
+        // Runs through the command queue on the players' looper rather than on the bridge thread
+        final boolean queued;
+        // Settles its callback later on its own; other queued commands are settled once they ran
+        final boolean completesLater;
+
+        Command(Action action, boolean queued, boolean completesLater) {
+            this.action = action;
+            this.queued = queued;
+            this.completesLater = completesLater;
+        }
+    }
+
+    private void run(Command command, JSONArray args, CallbackContext callbackContext) {
+        try {
+            command.action.run(args, callbackContext);
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+            return;
+        }
+        if (command.queued && !command.completesLater && !callbackContext.isFinished()) {
+            callbackContext.success();
+        }
+    }
+
+    /**
+     * Direct commands only touch thread-safe state and run on the bridge thread; they
+     * settle their own callback.
+     */
+    private void direct(String action, Action command) {
+        commands.put(action, new Command(command, false, false));
+    }
+
+    private void queued(String action, Action command) {
+        commands.put(action, new Command(command, true, false));
+    }
+
+    private void queuedAsync(String action, Action command) {
+        commands.put(action, new Command(command, true, true));
+    }
+
+    /**
+     * Queued command addressed to the player whose id is the first argument. The id is
+     * resolved when the command runs, so it sees players created earlier in the queue. A
+     * player given up under memory pressure is restored first.
+     */
+    private void player(String action, PlayerAction command) {
+        queued(action, (args, callbackContext) -> {
+            PlayerSession session = sessions.get(args.optInt(0, -1));
+            if (session == null) {
+                callbackContext.error("Unknown player id: " + args.opt(0));
+                return;
+            }
+            if (session.snapshot != null && !"destroy".equals(action)) {
+                restore(session, "command");
+            }
+            command.run(session, args, callbackContext);
+        });
+    }
+
+    private void registerCommands() {
+        direct("registerEventListener", (args, callbackContext) -> events.setCallbackContext(callbackContext));
+        direct("setEventSubscriptions", (args, callbackContext) -> {
+            setEventSubscriptions(args.getJSONArray(0));
+            callbackContext.success();
+        });
+        direct("setEventBatchInterval", (args, callbackContext) -> {
+            events.setFlushInterval(args.getLong(0));
+            callbackContext.success();
+        });
+        direct("configureCache", (args, callbackContext) -> {
+            configureCache(args.getJSONObject(0));
+            callbackContext.success();
+        });
+        direct("prefetch", (args, callbackContext) ->
+                prefetch(args.getString(0), args.optLong(1, C.LENGTH_UNSET), callbackContext));
+        direct("getCacheStats", (args, callbackContext) ->
+                callbackContext.success(MediaCache.getInstance(cordova.getActivity()).getStats()));
+        direct("updateLayout", (args, callbackContext) -> updateLayout(args.getJSONArray(0)));
+        direct("getBandwidthEstimates", (args, callbackContext) -> getBandwidthEstimates(callbackContext));
+        direct("resetBandwidthEstimates", (args, callbackContext) -> {
+            getBandwidthStore().reset();
+            callbackContext.success();
+        });
+        direct("executeBatch", (args, callbackContext) -> executeBatch(args.getJSONArray(0), callbackContext));
+        direct("configureHttp", (args, callbackContext) -> {
+            MediaHttp.getInstance().configure(args.getJSONObject(0));
+            callbackContext.success();
+        });
+        direct("getHttpStats", (args, callbackContext) -> callbackContext.success(MediaHttp.getInstance().getStats()));
+        direct("dumpStartupTraces", (args, callbackContext) ->
+                dumpStartupTraces(args.optInt(0, StartupTracer.CAPACITY), callbackContext));
+
+        queued("createPlayer", (args, callbackContext) -> {
+            try {
+                JSONObject options = args.optJSONObject(2);
+                createPlayer(args.getString(0), args.getString(1), options != null ? options : new JSONObject(), callbackContext);
+            } finally {
+                // Already taken by the trace unless the call failed validation
+                startupTracer.discard(callbackContext.getCallbackId());
+            }
+        });
+        queued("setPlayerPoolSize", (args, callbackContext) -> setPlayerPoolSize(args.getInt(0), callbackContext));
+        queued("setNetworkPolicy", (args, callbackContext) -> setNetworkPolicy(args.getJSONArray(0), callbackContext));
+        queued("configureMultiView", (args, callbackContext) -> {
+            viewScheduler.configure(args.getJSONObject(0));
+            scheduleViews("configure");
+        });
+        queuedAsync("getThumbnail", (args, callbackContext) -> {
+            JSONObject options = args.optJSONObject(2);
+            getThumbnail(args.getString(0), Math.round(args.getDouble(1) * 1000),
+                    options != null ? options : new JSONObject(), callbackContext);
+        });
+        queued("prefetchThumbnails", (args, callbackContext) -> {
+            JSONObject options = args.optJSONObject(2);
+            prefetchThumbnails(args.getString(0), Math.round(args.getDouble(1) * 1000),
+                    options != null ? options : new JSONObject(), callbackContext);
+        });
+        queued("setThumbnailCacheSize", (args, callbackContext) -> getThumbnailEngine().setMaxBytes(args.getInt(0)));
+        queued("download", (args, callbackContext) ->
+                download(args.getString(0), args.getString(1), args.optString(2, null), callbackContext));
+        queued("removeDownload", (args, callbackContext) -> getOfflineManager().remove(args.getString(0)));
+        queued("pauseDownloads", (args, callbackContext) -> getOfflineManager().pauseAll());
+        queued("resumeDownloads", (args, callbackContext) -> getOfflineManager().resumeAll());
+        queued("getDownloads", (args, callbackContext) -> getDownloads(callbackContext));
+        queued("setDownloadOptions", (args, callbackContext) -> getOfflineManager().configure(args.getJSONObject(0)));
+
+        player("destroy", (session, args, callbackContext) -> destroyPlayer(session, callbackContext));
+        player("play", (session, args, callbackContext) -> play(session));
+        player("pause", (session, args, callbackContext) -> pause(session));
+        player("stop", (session, args, callbackContext) -> stop(session));
+        player("seekTo", (session, args, callbackContext) -> seekTo(session, args.getLong(1)));
+        player("load", (session, args, callbackContext) ->
+                load(session, args.getString(1), args.isNull(2) ? C.TIME_UNSET : Math.round(args.getDouble(2) * 1000)));
+        player("seekToLiveEdge", (session, args, callbackContext) -> seekToLiveEdge(session, callbackContext));
+        player("setSeekMode", (session, args, callbackContext) -> setSeekMode(session, args.getString(1), callbackContext));
+        player("setViewPriority", (session, args, callbackContext) ->
+                setViewPriority(session, args.isNull(1) ? null : args.getString(1), callbackContext));
+        player("setScrubbing", (session, args, callbackContext) -> session.seekEngine.setScrubbing(args.getBoolean(1)));
+        player("setVolume", (session, args, callbackContext) -> setVolume(session, (float) args.getDouble(1)));
+        player("setTimeUpdateRate", (session, args, callbackContext) -> setTimeUpdateRate(session, (float) args.getDouble(1)));
+        player("addToQueue", (session, args, callbackContext) -> addToQueue(session, args.getJSONArray(1), args.optInt(2, -1)));
+        player("removeFromQueue", (session, args, callbackContext) -> removeFromQueue(session, args.getInt(1)));
+        player("moveInQueue", (session, args, callbackContext) -> moveInQueue(session, args.getInt(1), args.getInt(2)));
+        player("next", (session, args, callbackContext) -> next(session));
+        player("previous", (session, args, callbackContext) -> previous(session));
+        player("jumpTo", (session, args, callbackContext) -> jumpTo(session, args.getInt(1)));
+        player("setPreloadWindow", (session, args, callbackContext) -> setPreloadWindow(session,
+                Math.round(args.getDouble(1) * 1000), args.optLong(2, PlaylistPreloader.DEFAULT_PRELOAD_BYTES), callbackContext));
+        player("getStats", (session, args, callbackContext) -> getStats(session, callbackContext));
+        player("setStatsInterval", (session, args, callbackContext) ->
+                setStatsInterval(session, Math.round(args.getDouble(1) * 1000)));
+        player("getPosition", (session, args, callbackContext) -> getPosition(session, callbackContext));
+        player("getDuration", (session, args, callbackContext) -> getDuration(session, callbackContext));
+        player("setRate", (session, args, callbackContext) -> setRate(session, (float) args.getDouble(1)));
+        player("toggleFullscreen", (session, args, callbackContext) -> toggleFullscreen(session, callbackContext));
+        player("togglePictureInPicture", (session, args, callbackContext) -> togglePictureInPicture());
+        player("setPreferredAudioLanguage", (session, args, callbackContext) ->
+                setPreferredAudioLanguage(session, args.getString(1), callbackContext));
+        player("setPreferredTextLanguage", (session, args, callbackContext) ->
+                setPreferredTextLanguage(session, args.getString(1), callbackContext));
+        player("enableSubtitles", (session, args, callbackContext) -> enableSubtitles(session, args.getBoolean(1)));
+        player("setVideoQuality", (session, args, callbackContext) -> setVideoQuality(session, args.getString(1)));
+        player("getTracks", (session, args, callbackContext) -> getTracks(session, callbackContext));
+        player("selectTrack", (session, args, callbackContext) -> selectTrack(session, args.getString(1), callbackContext));
+        player("setRecoveryOptions", (session, args, callbackContext) -> setRecoveryOptions(session, args.getJSONObject(1)));
+        player("setBackgroundPlayback", (session, args, callbackContext) -> setBackgroundPlayback(session, args.getBoolean(1)));
+    }
+
+    /**
+     * Runs [[action, args], ...] back to back on the command queue, with no other command
+     * in between, and reports every result in one callback. Only queued actions can be
+     * batched.
+     */
+    private void executeBatch(JSONArray batch, CallbackContext callbackContext) throws JSONException {
+        // Parsed up front so a malformed entry fails the whole batch before anything runs
+        List<String> actions = new ArrayList<>(batch.length());
+        List<JSONArray> argsList = new ArrayList<>(batch.length());
+        for (int i = 0; i < batch.length(); i++) {
+            JSONArray entry = batch.getJSONArray(i);
+            actions.add(entry.getString(0));
+            JSONArray args = entry.optJSONArray(1);
+            argsList.add(args != null ? args : new JSONArray());
+        }
+        CommandBatch results = new CommandBatch(actions.size(), callbackContext, webView);
+        List<Runnable> queue = new ArrayList<>(actions.size());
+        for (int i = 0; i < actions.size(); i++) {
+            Command command = commands.get(actions.get(i));
+            JSONArray args = argsList.get(i);
+            CallbackContext slot = results.slot(i);
+            if (command == null || !command.queued) {
+                slot.error("Action cannot be batched: " + actions.get(i));
+                continue;
+            }
+            queue.add(() -> run(command, args, slot));
+        }
+        commandQueue.postAll(queue);
+    }
+
+    private void createPlayer(String url, String divId, JSONObject options, CallbackContext callbackContext) throws JSONException {
+        BufferProfile bufferProfile = BufferProfile.fromOption(options.opt("bufferProfile"));
+        String audioLanguage = options.optString("audioLanguage", null);
+        String textLanguage = options.optString("textLanguage", null);
+        RenderMode renderMode = RenderMode.fromOption(options.optString("renderMode", null));
+        PlayerSession session = new PlayerSession(nextPlayerId.incrementAndGet(), divId, bufferProfile, renderMode);
+        session.startupTrace = startupTracer.begin(session.id, url, callbackContext.getCallbackId(),
+                trace -> onStartupCompleted(session, trace));
+        session.live = LiveController.fromOption(options.optJSONObject("live"));
+        session.seekEngine = new SeekEngine(handler, createSeekListener(session));
+        session.recoveryOptions = options.optJSONObject("recovery");
+        String viewPriority = options.optString("viewPriority", null);
+        if (ViewScheduler.isPriority(viewPriority)) {
+            if (ViewScheduler.FOCUSED.equals(viewPriority)) {
+                demoteFocusedTile(session);
+            }
+            session.viewPriority = viewPriority;
+        }
+        sessions.put(session.id, session);
+        // Registered first so the bandwidth meter is seeded for the current network
+        setupNetworkCallback();
+        attachPlayer(session);
+        if (audioLanguage != null || textLanguage != null) {
+            // Applied before prepare so no segments of another language are fetched
+            session.player.setTrackSelectionParameters(
+                session.player.getTrackSelectionParameters()
+                    .buildUpon()
+                    .setPreferredAudioLanguage(audioLanguage)
+                    .setPreferredTextLanguage(textLanguage)
+                    .build()
             );
-            ((ViewGroup) webView.getView().getParent()).addView(playerView, params);
+        }
 
-            MediaItem mediaItem = MediaItem.fromUri(url);
-            player.setMediaItem(mediaItem);
-            player.prepare();
+        MediaItem mediaItem = new MediaItem.Builder().setUri(url).setMediaId(url).build();
+        session.player.setMediaSource(createMediaSource(session, mediaItem));
+        session.player.prepare();
+        session.startupTrace.mark(StartupTrace.PREPARED);
+
+        startSession(session);
+        sendBufferProfile(session);
+
+        callbackContext.success(session.id);
+    }
+
+    /**
+     * Takes a player from the pool for the session, puts its view on screen and applies
+     * the network caps. Must be called on the UI thread.
+     */
+    private void attachPlayer(PlayerSession session) {
+        Trace.beginSection("NativePlayer.acquirePlayer");
+        int idleCount = getPlayerPool().idleCount();
+        session.entry = getPlayerPool().acquire(session.bufferProfile, session.renderMode);
+        Trace.endSection();
+        session.player = session.entry.player;
+        session.playerView = session.entry.playerView;
+        session.startupTrace.setWarmPlayer(getPlayerPool().idleCount() < idleCount);
+        session.startupTrace.mark(StartupTrace.PLAYER_ACQUIRED);
+
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT
+        );
+        Trace.beginSection("NativePlayer.addView");
+        ((ViewGroup) webView.getView().getParent()).addView(session.playerView, params);
+        Trace.endSection();
+        session.startupTrace.mark(StartupTrace.VIEW_ATTACHED);
+
+        session.player.setTrackSelectionParameters(
+                capVideo(session, networkPolicy.getDecision(), session.player.getTrackSelectionParameters()));
+        updateTileShutter(session);
+    }
+
+    /**
+     * Tiles demoted to a still keep showing their last frame. PlayerView closes its shutter
+     * over the surface once the video track is disabled, but the surface still holds the
+     * last frame the decoder released, so the shutter of a tile is made transparent.
+     */
+    private static void updateTileShutter(PlayerSession session) {
+        boolean tile = session.viewPriority != null;
+        session.playerView.setKeepContentOnPlayerReset(tile);
+        session.playerView.setShutterBackgroundColor(tile ? Color.TRANSPARENT : Color.BLACK);
+    }
+
+    /**
+     * Applies the network caps, and the tile's share of the multi-view budget if it has one.
+     */
+    private TrackSelectionParameters capVideo(PlayerSession session, NetworkPolicy.Decision decision,
+                                              TrackSelectionParameters parameters) {
+        parameters = decision.applyTo(parameters);
+        if (session.viewAssignment != null && session.viewAssignment.maxBitrate < parameters.maxVideoBitrate) {
+            parameters = parameters.buildUpon().setMaxVideoBitrate(session.viewAssignment.maxBitrate).build();
+        }
+        return parameters;
+    }
+
+    /**
+     * Registers the session's listeners and helpers on its prepared player and positions
+     * the view. Must be called on the UI thread.
+     */
+    private void startSession(PlayerSession session) {
+        if (cacheEnabled) {
+            // Pre-buffered bytes only help when the player reads through the cache
+            session.preloader = new PlaylistPreloader(session.player, MediaCache.getInstance(cordova.getActivity()));
+        }
+
+        setupPlayerListeners(session);
+        if (session.recoveryOptions != null) {
+            session.recovery.configure(session.recoveryOptions);
+        }
+        if (session.backgroundPlayback) {
+            // A player restored after a release under memory pressure
+            setBackgroundPlayback(session, true);
+        }
+        if (session.viewPriority != null) {
+            scheduleViews("join");
+        }
+        updatePlayerPosition(session);
+    }
+
+    private void destroyPlayer(PlayerSession session, CallbackContext callbackContext) {
+        sessions.remove(session.id);
+        releaseSession(session, false);
+        if (session.viewPriority != null) {
+            // Its decoder slot and bandwidth go to the next tile
+            scheduleViews("leave");
+        }
+        callbackContext.success();
+    }
+
+    /**
+     * Detaches everything the session registered on its player and hands the instance
+     * back to the pool. A {@code restorable} session keeps its statistics for the player
+     * restored later, and its instance is released rather than kept warm. Must be called
+     * on the UI thread.
+     */
+    private void releaseSession(PlayerSession session, boolean restorable) {
+        if (session.entry == null) {
+            return;
+        }
+        if (session.progressTicker != null) {
+            session.progressTicker.release();
+            session.progressTicker = null;
+        }
+        if (session.preloader != null) {
+            session.preloader.release();
+            session.preloader = null;
+        }
+        if (session.statsRunnable != null && !restorable) {
+            handler.removeCallbacks(session.statsRunnable);
+            session.statsRunnable = null;
+        }
+        if (session.metrics != null) {
+            session.player.removeAnalyticsListener(session.metrics);
+            if (!restorable) {
+                session.metrics = null;
+            }
+        }
+        session.player.removeAnalyticsListener(session.startupTrace);
+        if (!restorable && !session.startupTrace.isFinished()) {
+            // Destroyed before its first frame, kept to show where startup stalled
+            session.startupTrace.finish();
+            startupTracer.record(session.startupTrace);
+        }
+        if (session.live != null) {
+            session.live.release();
+        }
+        session.seekEngine.release();
+        if (session.recovery != null) {
+            session.recovery.release();
+            session.player.removeListener(session.recovery);
+            session.recovery = null;
+        }
+        if (session.listener != null) {
+            session.player.removeListener(session.listener);
+        }
+        if (session.analyticsListener != null) {
+            session.player.removeAnalyticsListener(session.analyticsListener);
+        }
+        if (session.restoreListener != null) {
+            session.player.removeListener(session.restoreListener);
+            session.restoreListener = null;
+        }
+        if (backgroundPlayback != null) {
+            backgroundPlayback.detach(session);
+        }
+        if (session.isFullscreen) {
+            // A restored player comes back over its element
+            session.isFullscreen = false;
+            updateSystemBars();
+        }
+        if (restorable) {
+            getPlayerPool().discard(session.entry);
+        } else {
+            getPlayerPool().recycle(session.entry);
+        }
+        session.entry = null;
+        session.player = null;
+        session.playerView = null;
+    }
+
+    private void setPlayerPoolSize(int size, CallbackContext callbackContext) {
+        getPlayerPool().resize(size);
+        callbackContext.success();
+    }
+
+    private void setEventSubscriptions(JSONArray types) throws JSONException {
+        List<String> subscriptions = new ArrayList<>(types.length());
+        for (int i = 0; i < types.length(); i++) {
+            subscriptions.add(types.getString(i));
+        }
+        events.setSubscriptions(subscriptions);
+    }
+
+    /**
+     * Enables or disables the on-disk media cache for players created afterwards and
+     * applies its byte budget and key options.
+     */
+    private synchronized void configureCache(JSONObject options) {
+        MediaCache cache = MediaCache.getInstance(cordova.getActivity());
+        cache.setMaxBytes(options.optLong("maxBytes", MediaCache.DEFAULT_MAX_BYTES));
+        cache.setIgnoreQueryParameters(options.optBoolean("ignoreQueryParameters", false));
+        cacheEnabled = options.optBoolean("enabled", true);
+        mediaSourceFactory = null;
+        if (thumbnailEngine != null) {
+            commandQueue.post(() -> thumbnailEngine.setDataSourceFactory(createDataSourceFactory()));
+        }
+    }
+
+    /**
+     * Called on OkHttp's threads once a media request completes.
+     */
+    private void sendHttpTiming(HttpMetrics.Sample sample) {
+        if (!events.wants("httpTiming")) {
+            return;
+        }
+        try {
+            sendEvent(null, "httpTiming", sample.toJson());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
 
-            setupPlayerListeners();
-            setupNetworkCallback();
-            updatePlayerPosition(divId);
+    private void prefetch(String url, long bytes, CallbackContext callbackContext) {
+        MediaCache.getInstance(cordova.getActivity()).prefetch(url, bytes, error -> {
+            if (error == null) {
+                callbackContext.success();
+            } else {
+                callbackContext.error(error.getMessage());
+            }
         });
     }
 
-    private void setupPlayerListeners() {
-        player.addListener(new Player.Listener() {
+    /**
+     * Builds the playback data source chain: downloads first, then the media cache when
+     * enabled, then the network. Must be called on the UI thread.
+     */
+    private synchronized MediaSource.Factory getMediaSourceFactory() {
+        if (mediaSourceFactory == null) {
+            mediaSourceFactory = new DefaultMediaSourceFactory(createDataSourceFactory())
+                    .setLoadErrorHandlingPolicy(loadErrorPolicy);
+        }
+        return mediaSourceFactory;
+    }
+
+    /**
+     * Builds the source of one queue item, carrying the session's live configuration.
+     * Must be called on the UI thread.
+     */
+    private MediaSource createMediaSource(PlayerSession session, MediaItem mediaItem) {
+        if (session.live != null) {
+            mediaItem = session.live.apply(mediaItem);
+        }
+        return getMediaSourceFactory().createMediaSource(mediaItem);
+    }
+
+    private DataSource.Factory createDataSourceFactory() {
+        DataSource.Factory upstream;
+        if (cacheEnabled) {
+            upstream = MediaCache.getInstance(cordova.getActivity()).getDataSourceFactory();
+        } else {
+            upstream = new DefaultDataSource.Factory(cordova.getActivity(), MediaHttp.getInstance().getDataSourceFactory());
+        }
+        return getOfflineManager().wrapForPlayback(upstream);
+    }
+
+    /**
+     * options: {width, height, quality, format}. {@code format} is {@code dataUrl}
+     * (default) or {@code file}.
+     */
+    private void getThumbnail(String url, long timeMs, JSONObject options, CallbackContext callbackContext) {
+        int width = options.optInt("width", 0);
+        int height = options.optInt("height", 0);
+        int quality = options.optInt("quality", ThumbnailEngine.DEFAULT_QUALITY);
+        boolean asFile = "file".equals(options.optString("format"));
+        ThumbnailEngine engine = getThumbnailEngine();
+        engine.get(url, timeMs, width, height, quality, (jpeg, error) -> {
+            if (jpeg == null) {
+                callbackContext.error(error != null ? error.getMessage() : "No frame");
+                return;
+            }
+            try {
+                JSONObject result = new JSONObject();
+                result.put("time", timeMs / 1000.0);
+                result.put("src", asFile
+                        ? Uri.fromFile(engine.toFile(jpeg)).toString()
+                        : ThumbnailEngine.toDataUrl(jpeg));
+                callbackContext.success(result);
+            } catch (JSONException | IOException e) {
+                callbackContext.error(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * options: {width, height, quality, count, interval}; {@code count} frames on each side
+     * of the center, {@code interval} seconds apart.
+     */
+    private void prefetchThumbnails(String url, long centerMs, JSONObject options, CallbackContext callbackContext) {
+        int width = options.optInt("width", 0);
+        int height = options.optInt("height", 0);
+        int quality = options.optInt("quality", ThumbnailEngine.DEFAULT_QUALITY);
+        int count = options.optInt("count", 5);
+        long intervalMs = Math.round(options.optDouble("interval", 1) * 1000);
+        getThumbnailEngine().prefetch(url, centerMs, intervalMs, count, width, height, quality);
+        callbackContext.success();
+    }
+
+    /**
+     * Must be called on the UI thread, which owns the offline manager that provides the
+     * engine's data source chain.
+     */
+    private ThumbnailEngine getThumbnailEngine() {
+        if (thumbnailEngine == null) {
+            thumbnailEngine = new ThumbnailEngine(cordova.getActivity(), createDataSourceFactory());
+        }
+        return thumbnailEngine;
+    }
+
+    private void download(String downloadId, String url, @Nullable String title, CallbackContext callbackContext) {
+        if (getOfflineManager().download(downloadId, url, title)) {
+            callbackContext.success();
+        } else {
+            callbackContext.error("Download quota exceeded");
+        }
+    }
+
+    private void getDownloads(CallbackContext callbackContext) {
+        try {
+            JSONObject result = new JSONObject();
+            result.put("downloads", getOfflineManager().getDownloads());
+            result.put("storage", getOfflineManager().getStorage());
+            callbackContext.success(result);
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Must be called on the UI thread, where DownloadManager delivers its callbacks.
+     */
+    private OfflineManager getOfflineManager() {
+        if (offlineManager == null) {
+            offlineManager = OfflineManager.getInstance(cordova.getActivity());
+            offlineManager.setListener(this::sendDownloadEvent);
+        }
+        return offlineManager;
+    }
+
+    /**
+     * Download events are scoped by download id, so progress of concurrent downloads is
+     * coalesced per download rather than across them.
+     */
+    private void sendDownloadEvent(String eventName, String downloadId, JSONObject eventData) {
+        if (!events.wants(eventName)) {
+            return;
+        }
+        try {
+            eventData.put("type", eventName);
+            events.post(eventName, downloadId, eventData);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void getBandwidthEstimates(CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("network", getBandwidthMeter().getNetworkKey());
+        result.put("estimates", getBandwidthStore().toJson());
+        callbackContext.success(result);
+    }
+
+    private PlayerPool getPlayerPool() {
+        if (playerPool == null) {
+            playerPool = new PlayerPool(cordova.getActivity(), getBandwidthMeter());
+        }
+        return playerPool;
+    }
+
+    private synchronized BandwidthStore getBandwidthStore() {
+        if (bandwidthStore == null) {
+            bandwidthStore = new BandwidthStore(cordova.getActivity());
+        }
+        return bandwidthStore;
+    }
+
+    private synchronized SeededBandwidthMeter getBandwidthMeter() {
+        if (bandwidthMeter == null) {
+            bandwidthMeter = new SeededBandwidthMeter(cordova.getActivity(), getBandwidthStore());
+        }
+        return bandwidthMeter;
+    }
+
+    private void setupPlayerListeners(PlayerSession session) {
+        ExoPlayer player = session.player;
+        session.listener = new Player.Listener() {
             @Override
             public void onPlaybackStateChanged(int playbackState) {
                 switch (playbackState) {
                     case Player.STATE_IDLE:
-                        sendEvent("stop", null);
+                        if (session.snapshot == null) {
+                            // Stopped by JS or by an error; a stop to free memory takes a
+                            // snapshot first and is not reported
+                            sendEvent(session, "stop", null);
+                        }
                         break;
                     case Player.STATE_BUFFERING:
-                        sendEvent("waiting", null);
+                        sendEvent(session, "waiting", null);
                         break;
                     case Player.STATE_READY:
-                        sendEvent("ready", null);
-                        sendEvent("canPlay", null);
+                        sendEvent(session, "ready", null);
+                        sendEvent(session, "canPlay", null);
                         if (player.getPlayWhenReady()) {
-                            sendEvent("play", null);
+                            sendEvent(session, "play", null);
                         } else {
-                            sendEvent("pause", null);
+                            sendEvent(session, "pause", null);
                         }
                         break;
                     case Player.STATE_ENDED:
-                        sendEvent("ended", null);
+                        sendEvent(session, "ended", null);
                         break;
                 }
             }
 
             @Override
-            public void onPlayerError(PlaybackException error) {
+            public void onIsPlayingChanged(boolean isPlaying) {
+                if (isPlaying) {
+                    session.progressTicker.start();
+                } else {
+                    session.progressTicker.stop();
+                }
+            }
+
+            @Override
+            public void onPlayWhenReadyChanged(boolean playWhenReady, int reason) {
+                sendEvent(session, playWhenReady ? "play" : "pause", null);
+            }
+
+            @Override
+            public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
+                if (!events.wants("rateChange")) {
+                    return;
+                }
+                try {
+                    JSONObject rateObj = new JSONObject();
+                    rateObj.put("rate", playbackParameters.speed);
+                    sendEvent(session, "rateChange", rateObj);
+                } catch (JSONException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            @Override
+            public void onTracksChanged(Tracks tracks) {
+                session.trackCatalog = new TrackCatalog(tracks);
+                handleTrackChange(session);
+            }
+
+            @Override
+            public void onVideoSizeChanged(VideoSize videoSize) {
+                if (!events.wants("resolutionChange")) {
+                    return;
+                }
+                try {
+                    JSONObject resolutionObj = new JSONObject();
+                    resolutionObj.put("width", videoSize.width);
+                    resolutionObj.put("height", videoSize.height);
+                    sendEvent(session, "resolutionChange", resolutionObj);
+                } catch (JSONException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            @Override
+            public void onVolumeChanged(float volume) {
+                if (!events.wants("volumeChange")) {
+                    return;
+                }
+                try {
+                    JSONObject volumeObj = new JSONObject();
+                    volumeObj.put("volume", volume);
+                    volumeObj.put("muted", volume == 0);
+                    sendEvent(session, "volumeChange", volumeObj);
+                } catch (JSONException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            @Override
+            public void onIsLoadingChanged(boolean isLoading) {
+                sendEvent(session, isLoading ? "loadStart" : "loadedData", null);
+            }
+
+            @Override
+            public void onMediaItemTransition(@Nullable MediaItem mediaItem, int reason) {
+                sendEvent(session, "loadedMetadata", null);
+                if (session.preloader != null) {
+                    session.preloader.update();
+                }
+                if (!events.wants("mediaItemTransition")) {
+                    return;
+                }
+                try {
+                    JSONObject transitionObj = new JSONObject();
+                    transitionObj.put("index", player.getCurrentMediaItemIndex());
+                    transitionObj.put("reason", transitionReasonName(reason));
+                    if (mediaItem != null) {
+                        transitionObj.put("mediaId", mediaItem.mediaId);
+                    }
+                    sendEvent(session, "mediaItemTransition", transitionObj);
+                } catch (JSONException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            @Override
+            public void onTimelineChanged(Timeline timeline, int reason) {
+                if (session.preloader != null) {
+                    session.preloader.update();
+                }
+            }
+        };
+        player.addListener(session.listener);
+
+        session.recovery = new RecoveryEngine(player, handler, (type, data) -> sendEvent(session, type, data));
+        player.addListener(session.recovery);
+        session.seekEngine.attach(player);
+
+        if (session.live != null) {
+            session.live.attach(player, handler, live -> {
+                if (!events.wants("liveLatency")) {
+                    return;
+                }
                 try {
-                    JSONObject errorObj = new JSONObject();
-                    errorObj.put("error", error.getMessage());
-                    sendEvent("error", errorObj);
+                    sendEvent(session, "liveLatency", live.toJson());
                 } catch (JSONException e) {
                     e.printStackTrace();
                 }
+            });
+        }
+
+        // Setup timeUpdate event; the ticker only runs while the player is playing
+        session.progressTicker = new ProgressTicker(handler, () -> updateProgress(session));
+        session.progressTicker.setRate(session.timeUpdateRateHz);
+
+        // Setup progress event
+        session.analyticsListener = new AnalyticsListener() {
+            @Override
+            public void onLoadCompleted(EventTime eventTime, LoadEventInfo loadEventInfo, MediaLoadData mediaLoadData) {
+                updateBufferProgress(session);
+            }
+
+            @Override
+            public void onVideoInputFormatChanged(EventTime eventTime, Format format, @Nullable DecoderReuseEvaluation decoderReuseEvaluation) {
+                if (session.viewPriority != null) {
+                    sendTileRendition(session, format);
+                }
+            }
+        };
+        player.addAnalyticsListener(session.analyticsListener);
+
+        if (session.metrics == null) {
+            session.metrics = new PlaybackMetrics(session.startupTrace.startedAtMs());
+        }
+        player.addAnalyticsListener(session.metrics);
+        if (!session.startupTrace.isFinished()) {
+            player.addAnalyticsListener(session.startupTrace);
+        }
+    }
+
+    private void onStartupCompleted(PlayerSession session, StartupTrace trace) {
+        session.player.removeAnalyticsListener(trace);
+        startupTracer.record(trace);
+        if (!events.wants("startup")) {
+            return;
+        }
+        try {
+            sendEvent(session, "startup", trace.toJson());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the startup traces of the last {@code count} sessions to a JSON file in the
+     * app's external files directory and returns {path, count}.
+     */
+    private void dumpStartupTraces(int count, CallbackContext callbackContext) {
+        Context context = cordova.getActivity().getApplicationContext();
+        cordova.getThreadPool().execute(() -> {
+            // getExternalFilesDir creates the directory, so it runs off the bridge thread too
+            File file = StartupTracer.defaultDumpFile(context.getExternalFilesDir(null), context.getFilesDir());
+            try {
+                callbackContext.success(startupTracer.dump(file, count));
+            } catch (JSONException | IOException e) {
+                callbackContext.error(e.getMessage());
+            }
+        });
+    }
+
+    private static String transitionReasonName(int reason) {
+        switch (reason) {
+            case Player.MEDIA_ITEM_TRANSITION_REASON_REPEAT:
+                return "repeat";
+            case Player.MEDIA_ITEM_TRANSITION_REASON_AUTO:
+                return "auto";
+            case Player.MEDIA_ITEM_TRANSITION_REASON_SEEK:
+                return "seek";
+            case Player.MEDIA_ITEM_TRANSITION_REASON_PLAYLIST_CHANGED:
+            default:
+                return "playlistChanged";
+        }
+    }
+
+    private void sendBufferProfile(PlayerSession session) {
+        if (!events.wants("bufferProfile")) {
+            return;
+        }
+        try {
+            sendEvent(session, "bufferProfile", session.bufferProfile.toJson());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void updateProgress(PlayerSession session) {
+        if (!events.wants("timeUpdate")) {
+            return;
+        }
+        try {
+            JSONObject progressObj = new JSONObject();
+            progressObj.put("currentTime", session.player.getCurrentPosition() / 1000.0);
+            progressObj.put("duration", session.player.getDuration() / 1000.0);
+            sendEvent(session, "timeUpdate", progressObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void updateBufferProgress(PlayerSession session) {
+        if (!events.wants("progress")) {
+            return;
+        }
+        try {
+            JSONObject bufferObj = new JSONObject();
+            bufferObj.put("bufferedPercentage", session.player.getBufferedPercentage());
+            sendEvent(session, "progress", bufferObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @VisibleForTesting
+    void handleTrackChange(PlayerSession session) {
+        sendSelectedTrack(session, C.TRACK_TYPE_VIDEO, "qualityTrackChange");
+        sendSelectedTrack(session, C.TRACK_TYPE_AUDIO, "audioTrackChange");
+        sendSelectedTrack(session, C.TRACK_TYPE_TEXT, "textTrackChange");
+    }
+
+    private void sendSelectedTrack(PlayerSession session, int trackType, String eventName) {
+        if (!events.wants(eventName)) {
+            return;
+        }
+        TrackCatalog.Track track = session.trackCatalog.selected(trackType);
+        if (track == null) {
+            return;
+        }
+        try {
+            JSONObject trackObj = new JSONObject();
+            trackObj.put("track", track.toJson());
+            sendEvent(session, eventName, trackObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Registers the connectivity callback once. Capability changes feed the bandwidth
+     * meter and the network policy; the policy work is posted to the UI thread, which owns
+     * the players.
+     */
+    private void setupNetworkCallback() {
+        if (networkCallback != null) {
+            return;
+        }
+        ConnectivityManager connectivityManager = (ConnectivityManager) cordova.getActivity().getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            NetworkCapabilities activeCapabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+            if (activeCapabilities != null) {
+                getBandwidthMeter().onNetworkChanged(activeCapabilities);
+                networkPolicy.onCapabilitiesChanged(activeCapabilities);
+            }
+        }
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                sendEvent(null, "online", null);
+                handler.post(() -> {
+                    if (networkPolicy.onAvailable()) {
+                        recoverFromNetworkLoss();
+                    }
+                });
+            }
+
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || network.equals(connectivityManager.getActiveNetwork())) {
+                    getBandwidthMeter().onNetworkChanged(networkCapabilities);
+                    handler.post(() -> {
+                        NetworkPolicy.Decision decision = networkPolicy.onCapabilitiesChanged(networkCapabilities);
+                        if (decision != null) {
+                            applyNetworkPolicy(decision, "networkChange");
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onLost(Network network) {
+                sendEvent(null, "offline", null);
+                // Losing one network while another takes over is not an outage
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || connectivityManager.getActiveNetwork() == null) {
+                    handler.post(networkPolicy::onLost);
+                }
+            }
+        };
+        NetworkRequest networkRequest = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        connectivityManager.registerNetworkCallback(networkRequest, networkCallback);
+    }
+
+    private void setNetworkPolicy(JSONArray rules, CallbackContext callbackContext) {
+        try {
+            NetworkPolicy.Decision decision = networkPolicy.setRules(rules);
+            applyNetworkPolicy(decision, "policyChange");
+            callbackContext.success(decision.toJson());
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the caps of {@code decision} to every player and reports it in a
+     * networkPolicy event. Must be called on the UI thread.
+     */
+    private void applyNetworkPolicy(NetworkPolicy.Decision decision, String reason) {
+        for (PlayerSession session : sessions.values()) {
+            if (session.player != null) {
+                session.player.setTrackSelectionParameters(capVideo(session, decision, session.player.getTrackSelectionParameters()));
+            }
+        }
+        if (!events.wants("networkPolicy")) {
+            return;
+        }
+        try {
+            JSONObject decisionObj = decision.toJson();
+            decisionObj.put("reason", reason);
+            sendEvent(null, "networkPolicy", decisionObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Players keep retrying while offline, but one that failed before the outage was
+     * detected is prepared again from where it stopped. Must be called on the UI thread.
+     */
+    private void recoverFromNetworkLoss() {
+        for (PlayerSession session : sessions.values()) {
+            if (session.player != null && session.player.getPlayerError() != null) {
+                session.player.prepare();
+            }
+        }
+    }
+
+    /**
+     * Measures the placeholder once from native code. Continuous tracking is done by the
+     * JS layout observer, which pushes rects through updateLayout.
+     */
+    private void updatePlayerPosition(PlayerSession session) {
+        webView.getEngine().evaluateJavascript(
+                "(function(r) { return {left: r.left, top: r.top, width: r.width, height: r.height}; })" +
+                        "(document.getElementById('" + session.divId + "').getBoundingClientRect());",
+                value -> {
+                    try {
+                        JSONObject rect = new JSONObject(value);
+                        layoutSync.post(session.id,
+                                rect.getInt("left"),
+                                rect.getInt("top"),
+                                rect.getInt("width"),
+                                rect.getInt("height"));
+                    } catch (JSONException e) {
+                        e.printStackTrace();
+                    }
+                }
+        );
+    }
+
+    private void updateLayout(JSONArray updates) throws JSONException {
+        for (int i = 0; i < updates.length(); i++) {
+            JSONArray rect = updates.getJSONArray(i);
+            layoutSync.post(rect.getInt(0), rect.getInt(1), rect.getInt(2), rect.getInt(3), rect.getInt(4));
+        }
+    }
+
+    /**
+     * Queues an event for the listener registered through registerEventListener. Events
+     * raised by a player carry its id; plugin-wide events (online/offline) pass a null
+     * session. Events JS has not subscribed to are dropped here.
+     */
+    @VisibleForTesting
+    void sendEvent(@Nullable PlayerSession session, String eventName, @Nullable JSONObject eventData) {
+        if (!events.wants(eventName)) {
+            return;
+        }
+        if (eventData == null) {
+            eventData = new JSONObject();
+        }
+        try {
+            eventData.put("type", eventName);
+            if (session != null) {
+                eventData.put("playerId", session.id);
             }
+            events.post(eventName, session != null ? String.valueOf(session.id) : null, eventData);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void play(PlayerSession session) {
+        if (isStill(session)) {
+            session.playWhenPromoted = true;
+        } else if (session.player != null) {
+            session.player.setPlayWhenReady(true);
+        }
+    }
+
+    private void pause(PlayerSession session) {
+        if (isStill(session)) {
+            session.playWhenPromoted = false;
+        } else if (session.player != null) {
+            session.player.setPlayWhenReady(false);
+        }
+    }
+
+    private void stop(PlayerSession session) {
+        if (session.player != null) {
+            session.player.stop();
+            session.player.seekTo(0);
+        }
+    }
 
-            @Override
-            public void onPositionDiscontinuity(Player.PositionInfo oldPosition, Player.PositionInfo newPosition, int reason) {
-                if (reason == Player.DISCONTINUITY_REASON_SEEK) {
-                    sendEvent("seeking", null);
-                    sendEvent("seeked", null);
-                }
-            }
+    private void seekTo(PlayerSession session, long position) {
+        session.seekEngine.seekTo(position);
+    }
 
-            @Override
-            public void onPlayWhenReadyChanged(boolean playWhenReady, int reason) {
-                sendEvent(playWhenReady ? "play" : "pause", null);
-            }
+    private void setSeekMode(PlayerSession session, String mode, CallbackContext callbackContext) {
+        SeekParameters seekParameters = SeekEngine.parametersFor(mode);
+        if (seekParameters == null) {
+            callbackContext.error("Unknown seek mode: " + mode);
+            return;
+        }
+        session.seekEngine.setSeekParameters(seekParameters);
+        callbackContext.success();
+    }
 
+    private SeekEngine.Listener createSeekListener(PlayerSession session) {
+        return new SeekEngine.Listener() {
             @Override
-            public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
+            public void onSeekStarted(long positionMs, boolean scrubbing) {
+                if (!events.wants("seeking")) {
+                    return;
+                }
                 try {
-                    JSONObject rateObj = new JSONObject();
-                    rateObj.put("rate", playbackParameters.speed);
-                    sendEvent("rateChange", rateObj);
+                    JSONObject seekObj = new JSONObject();
+                    seekObj.put("position", positionMs / 1000.0);
+                    seekObj.put("scrubbing", scrubbing);
+                    sendEvent(session, "seeking", seekObj);
                 } catch (JSONException e) {
                     e.printStackTrace();
                 }
             }
 
             @Override
-            public void onTracksChanged(Tracks tracks) {
-                handleTrackChange(tracks);
-            }
-
-            @Override
-            public void onVideoSizeChanged(VideoSize videoSize) {
+            public void onSeekCompleted(long positionMs, long latencyMs, int coalesced, boolean scrubbing) {
+                if (!events.wants("seeked")) {
+                    return;
+                }
                 try {
-                    JSONObject resolutionObj = new JSONObject();
-                    resolutionObj.put("width", videoSize.width);
-                    resolutionObj.put("height", videoSize.height);
-                    sendEvent("resolutionChange", resolutionObj);
+                    JSONObject seekObj = new JSONObject();
+                    seekObj.put("position", positionMs / 1000.0);
+                    seekObj.put("scrubbing", scrubbing);
+                    seekObj.put("latencyMs", latencyMs != C.TIME_UNSET ? latencyMs : JSONObject.NULL);
+                    seekObj.put("coalesced", coalesced);
+                    sendEvent(session, "seeked", seekObj);
                 } catch (JSONException e) {
                     e.printStackTrace();
                 }
             }
+        };
+    }
 
-            @Override
-            public void onVolumeChanged(float volume) {
-                try {
-                    JSONObject volumeObj = new JSONObject();
-                    volumeObj.put("volume", volume);
-                    volumeObj.put("muted", volume == 0);
-                    sendEvent("volumeChange", volumeObj);
-                } catch (JSONException e) {
-                    e.printStackTrace();
+    private void setViewPriority(PlayerSession session, @Nullable String priority, CallbackContext callbackContext) {
+        if (priority != null && !ViewScheduler.isPriority(priority)) {
+            callbackContext.error("Unknown view priority: " + priority);
+            return;
+        }
+        if (ViewScheduler.FOCUSED.equals(priority)) {
+            demoteFocusedTile(session);
+        }
+        session.viewPriority = priority;
+        updateTileShutter(session);
+        if (priority == null && session.viewAssignment != null) {
+            // Leaves the mosaic, with its tracks and buffers as any other player
+            boolean wasStill = !session.viewAssignment.decodes;
+            session.viewAssignment = null;
+            TrackSelectionParameters parameters = session.player.getTrackSelectionParameters().buildUpon()
+                    .setTrackTypeDisabled(C.TRACK_TYPE_VIDEO, session.audioOnly)
+                    .setTrackTypeDisabled(C.TRACK_TYPE_AUDIO, false)
+                    .build();
+            session.player.setTrackSelectionParameters(capVideo(session, networkPolicy.getDecision(), parameters));
+            session.entry.loadControl.setTrimmed(false);
+            if (wasStill) {
+                if (!session.audioOnly) {
+                    session.seekEngine.seekToClosestKeyframe();
                 }
+                session.player.setPlayWhenReady(session.playWhenPromoted);
             }
+        }
+        scheduleViews("priority");
+        callbackContext.success();
+    }
 
-            @Override
-            public void onIsLoadingChanged(boolean isLoading) {
-                sendEvent(isLoading ? "loadStart" : "loadedData", null);
-            }
+    private static boolean isStill(PlayerSession session) {
+        return session.viewAssignment != null && !session.viewAssignment.decodes;
+    }
 
-            public void onMediaItemTransition(@Nullable MediaItem mediaItem, int reason) {
-                sendEvent("loadedMetadata", null);
+    /**
+     * There is one focused tile at a time, the previous one becomes visible.
+     */
+    private void demoteFocusedTile(PlayerSession focused) {
+        for (PlayerSession session : sessions.values()) {
+            if (session != focused && ViewScheduler.FOCUSED.equals(session.viewPriority)) {
+                session.viewPriority = ViewScheduler.VISIBLE;
             }
-        });
+        }
+    }
 
-        // Setup timeUpdate event
-        handler = new Handler();
-        final Runnable updateProgressRunnable = new Runnable() {
-            @Override
-            public void run() {
-                updateProgress();
-                handler.postDelayed(this, 1000);
+    /**
+     * Applies the {@link ViewScheduler} assignments to the tiles and reports them in a
+     * viewSchedule event. Must be called on the UI thread.
+     */
+    private void scheduleViews(String reason) {
+        List<PlayerSession> tiles = new ArrayList<>();
+        for (PlayerSession session : sessions.values()) {
+            if (session.viewPriority != null && session.player != null) {
+                tiles.add(session);
             }
-        };
-        handler.post(updateProgressRunnable);
-
-        // Setup progress event
-        player.addAnalyticsListener(new AnalyticsListener() {
-            public void onLoadCompleted(EventTime eventTime, LoadEventInfo loadEventInfo, MediaPeriodId mediaPeriodId) {
-                updateBufferProgress();
+        }
+        long budgetBps = viewScheduler.budgetFor(getBandwidthMeter().getBitrateEstimate());
+        Map<PlayerSession, ViewScheduler.Assignment> assignments = viewScheduler.schedule(tiles, budgetBps);
+        NetworkPolicy.Decision decision = networkPolicy.getDecision();
+        for (Map.Entry<PlayerSession, ViewScheduler.Assignment> scheduled : assignments.entrySet()) {
+            PlayerSession session = scheduled.getKey();
+            ViewScheduler.Assignment assignment = scheduled.getValue();
+            boolean wasStill = session.viewAssignment != null && !session.viewAssignment.decodes;
+            session.viewAssignment = assignment;
+            // Disabling the video track releases the tile's decoder, the view keeps the frame
+            TrackSelectionParameters parameters = session.player.getTrackSelectionParameters().buildUpon()
+                    .setTrackTypeDisabled(C.TRACK_TYPE_VIDEO, !assignment.decodes || session.audioOnly)
+                    .setTrackTypeDisabled(C.TRACK_TYPE_AUDIO, !assignment.audible)
+                    .build();
+            session.player.setTrackSelectionParameters(capVideo(session, decision, parameters));
+            session.entry.loadControl.setTrimmed(!assignment.decodes);
+            if (!assignment.decodes) {
+                if (!wasStill) {
+                    session.playWhenPromoted = session.player.getPlayWhenReady();
+                }
+                session.player.setPlayWhenReady(false);
+            } else if (wasStill) {
+                if (!session.audioOnly) {
+                    session.seekEngine.seekToClosestKeyframe();
+                }
+                // A tile the user paused stays paused
+                session.player.setPlayWhenReady(session.playWhenPromoted);
             }
-        });
-    }
-
-    private void updateProgress() {
+        }
+        if (!events.wants("viewSchedule")) {
+            return;
+        }
         try {
-            JSONObject progressObj = new JSONObject();
-            progressObj.put("currentTime", player.getCurrentPosition() / 1000.0);
-            progressObj.put("duration", player.getDuration() / 1000.0);
-            sendEvent("timeUpdate", progressObj);
+            JSONArray tilesArray = new JSONArray();
+            for (Map.Entry<PlayerSession, ViewScheduler.Assignment> scheduled : assignments.entrySet()) {
+                JSONObject tileObj = scheduled.getValue().toJson();
+                tileObj.put("playerId", scheduled.getKey().id);
+                tilesArray.put(tileObj);
+            }
+            JSONObject scheduleObj = new JSONObject();
+            scheduleObj.put("reason", reason);
+            scheduleObj.put("decoderSlots", viewScheduler.getDecoderSlots());
+            scheduleObj.put("budgetBps", budgetBps > 0 ? budgetBps : JSONObject.NULL);
+            scheduleObj.put("tiles", tilesArray);
+            sendEvent(null, "viewSchedule", scheduleObj);
         } catch (JSONException e) {
             e.printStackTrace();
         }
     }
 
-    private void updateBufferProgress() {
+    private void sendTileRendition(PlayerSession session, Format format) {
+        if (!events.wants("tileRendition")) {
+            return;
+        }
         try {
-            JSONObject bufferObj = new JSONObject();
-            bufferObj.put("bufferedPercentage", player.getBufferedPercentage());
-            sendEvent("progress", bufferObj);
+            JSONObject renditionObj = new JSONObject();
+            renditionObj.put("priority", session.viewPriority);
+            renditionObj.put("width", format.width);
+            renditionObj.put("height", format.height);
+            renditionObj.put("bitrate", format.bitrate != Format.NO_VALUE ? format.bitrate : JSONObject.NULL);
+            sendEvent(session, "tileRendition", renditionObj);
         } catch (JSONException e) {
             e.printStackTrace();
         }
     }
 
-    private void handleTrackChange(Tracks tracks) {
-        for (Tracks.Group trackGroup : tracks.getGroups()) {
-            if (trackGroup.getType() == C.TRACK_TYPE_VIDEO) {
-                try {
-                    JSONObject trackObj = new JSONObject();
-                    trackObj.put("track", Format.toLogString(trackGroup.getMediaTrackGroup().getFormat(0)));
-                    sendEvent("qualityTrackChange", trackObj);
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            } else if (trackGroup.getType() == C.TRACK_TYPE_AUDIO) {
-                try {
-                    JSONObject trackObj = new JSONObject();
-                    trackObj.put("track", Format.toLogString(trackGroup.getMediaTrackGroup().getFormat(0)));
-                    sendEvent("audioTrackChange", trackObj);
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            } else if (trackGroup.getType() == C.TRACK_TYPE_TEXT) {
-                try {
-                    JSONObject trackObj = new JSONObject();
-                    trackObj.put("track", Format.toLogString(trackGroup.getMediaTrackGroup().getFormat(0)));
-                    sendEvent("textTrackChange", trackObj);
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            }
+    /**
+     * Replaces the player's queue with {@code url} without stopping the player. Renderers
+     * are not reset, so the video surface and the open codecs carry over to the new item
+     * whenever its format allows, instead of being torn down as destroy/createPlayer does.
+     */
+    private void load(PlayerSession session, String url, long positionMs) {
+        MediaItem mediaItem = new MediaItem.Builder().setUri(url).setMediaId(url).build();
+        if (session.player == null) {
+            return;
+        }
+        MediaSource mediaSource = createMediaSource(session, mediaItem);
+        if (positionMs == C.TIME_UNSET) {
+            session.player.setMediaSource(mediaSource);
+        } else {
+            session.player.setMediaSource(mediaSource, positionMs);
+        }
+        if (session.player.getPlaybackState() == Player.STATE_IDLE) {
+            session.player.prepare();
         }
     }
 
-    private void setupNetworkCallback() {
-        ConnectivityManager connectivityManager = (ConnectivityManager) cordova.getActivity().getSystemService(Context.CONNECTIVITY_SERVICE);
-        networkCallback = new ConnectivityManager.NetworkCallback() {
-            @Override
-            public void onAvailable(Network network) {
-                sendEvent("online", null);
-            }
+    /**
+     * Jumps to the live edge, at the target offset of the live configuration.
+     */
+    private void seekToLiveEdge(PlayerSession session, CallbackContext callbackContext) {
+        if (session.player == null || !session.player.isCurrentMediaItemLive()) {
+            callbackContext.error("Current item is not live");
+            return;
+        }
+        session.player.seekToDefaultPosition();
+        callbackContext.success();
+    }
 
-            @Override
-            public void onLost(Network network) {
-                sendEvent("offline", null);
-            }
-        };
-        NetworkRequest networkRequest = new NetworkRequest.Builder()
-                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
-                .build();
-        connectivityManager.registerNetworkCallback(networkRequest, networkCallback);
+    private void setVolume(PlayerSession session, float volume) {
+        if (session.player != null) {
+            session.player.setVolume(volume);
+        }
     }
 
-    private void updatePlayerPosition(String divId) {
-        cordova.getActivity().runOnUiThread(() -> {
-            webView.getEngine().evaluateJavascript(
-                    "function getElementRect(id) { " +
-                            "  var el = document.getElementById(id); " +
-                            "  var rect = el.getBoundingClientRect(); " +
-                            "  return JSON.stringify({left: rect.left, top: rect.top, width: rect.width, height: rect.height}); " +
-                            "} " +
-                            "getElementRect('" + divId + "');",
-                    value -> {
-                        try {
-                            JSONObject rect = new JSONObject(value);
-                            playerView.setX(rect.getInt("left"));
-                            playerView.setY(rect.getInt("top"));
-                            playerView.setLayoutParams(new FrameLayout.LayoutParams(
-                                    rect.getInt("width"),
-                                    rect.getInt("height")
-                            ));
-                            sendEvent("resize", null);
-                        } catch (JSONException e) {
-                            e.printStackTrace();
-                        }
-                    }
-            );
-        });
+    private void setTimeUpdateRate(PlayerSession session, float rateHz) {
+        session.timeUpdateRateHz = rateHz;
+        if (session.progressTicker != null) {
+            session.progressTicker.setRate(rateHz);
+        }
     }
 
-    private void sendEvent(String eventName, JSONObject eventData) {
-        if (eventData == null) {
-            eventData = new JSONObject();
+    private MediaItem toMediaItem(Object item) throws JSONException {
+        if (item instanceof JSONObject) {
+            JSONObject itemObj = (JSONObject) item;
+            String url = itemObj.getString("url");
+            return new MediaItem.Builder()
+                    .setUri(url)
+                    .setMediaId(itemObj.optString("id", url))
+                    .setMediaMetadata(new MediaMetadata.Builder()
+                            .setTitle(itemObj.optString("title", null))
+                            .build())
+                    .build();
         }
-        try {
-            eventData.put("type", eventName);
-            PluginResult result = new PluginResult(PluginResult.Status.OK, eventData);
-            result.setKeepCallback(true);
-            callbackContext.sendPluginResult(result);
-        } catch (JSONException e) {
-            e.printStackTrace();
+        String url = item.toString();
+        return new MediaItem.Builder().setUri(url).setMediaId(url).build();
+    }
+
+    private void addToQueue(PlayerSession session, JSONArray items, int index) throws JSONException {
+        List<MediaItem> mediaItems = new ArrayList<>(items.length());
+        for (int i = 0; i < items.length(); i++) {
+            mediaItems.add(toMediaItem(items.get(i)));
+        }
+        if (session.player == null) {
+            return;
+        }
+        List<MediaSource> mediaSources = new ArrayList<>(mediaItems.size());
+        for (MediaItem mediaItem : mediaItems) {
+            mediaSources.add(createMediaSource(session, mediaItem));
+        }
+        if (index >= 0 && index <= session.player.getMediaItemCount()) {
+            session.player.addMediaSources(index, mediaSources);
+        } else {
+            session.player.addMediaSources(mediaSources);
         }
     }
 
-    private void play() {
-        if (player != null) {
-            player.setPlayWhenReady(true);
+    private void removeFromQueue(PlayerSession session, int index) {
+        if (session.player != null && index >= 0 && index < session.player.getMediaItemCount()) {
+            session.player.removeMediaItem(index);
         }
     }
 
-    private void pause() {
-        if (player != null) {
-            player.setPlayWhenReady(false);
+    private void moveInQueue(PlayerSession session, int from, int to) {
+        if (session.player == null) {
+            return;
+        }
+        int count = session.player.getMediaItemCount();
+        if (from >= 0 && from < count && to >= 0 && to < count) {
+            session.player.moveMediaItem(from, to);
         }
     }
 
-    private void stop() {
-        if (player != null) {
-            player.stop();
-            player.seekTo(0);
+    private void next(PlayerSession session) {
+        if (session.player != null && session.player.hasNextMediaItem()) {
+            session.player.seekToNextMediaItem();
         }
     }
 
-    private void seekTo(long position) {
-        if (player != null) {
-            player.seekTo(position);
+    private void previous(PlayerSession session) {
+        if (session.player != null && session.player.hasPreviousMediaItem()) {
+            session.player.seekToPreviousMediaItem();
         }
     }
 
-    private void setVolume(float volume) {
-        if (player != null) {
-            player.setVolume(volume);
+    private void jumpTo(PlayerSession session, int index) {
+        if (session.player != null && index >= 0 && index < session.player.getMediaItemCount()) {
+            session.player.seekToDefaultPosition(index);
         }
     }
 
-    private void setRate(float rate) {
-        if (player != null) {
-            PlaybackParameters params = new PlaybackParameters(rate);
-            player.setPlaybackParameters(params);
+    private void setPreloadWindow(PlayerSession session, long windowMs, long bytes, CallbackContext callbackContext) {
+        if (session.preloader == null) {
+            // Created without the cache, the player would never read the warmed bytes
+            callbackContext.error("Media cache disabled");
+            return;
         }
+        session.preloader.setWindow(windowMs, bytes);
+        callbackContext.success();
     }
 
-    private void toggleFullscreen() {
-        cordova.getActivity().runOnUiThread(() -> {
-            isFullscreen = !isFullscreen;
-            if (isFullscreen) {
-                // Implement fullscreen logic here
-                // This might involve changing the layout params, hiding system UI, etc.
-            } else {
-                // Implement exit fullscreen logic here
+    private void getStats(PlayerSession session, CallbackContext callbackContext) {
+        if (session.metrics == null) {
+            callbackContext.error("Player is not ready");
+            return;
+        }
+        try {
+            JSONObject stats = session.metrics.toJson();
+            if (session.live != null) {
+                stats.put("live", session.live.toJson());
             }
-            try {
-                JSONObject fullscreenObj = new JSONObject();
-                fullscreenObj.put("isFullscreen", isFullscreen);
-                sendEvent("fullscreenChange", fullscreenObj);
-            } catch (JSONException e) {
-                e.printStackTrace();
+            stats.put("seeks", session.seekEngine.toJson());
+            stats.put("startup", session.startupTrace.toJson());
+            callbackContext.success(stats);
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Emits a stats event with the getStats summary every {@code intervalMs}; 0 stops it.
+     */
+    private void setStatsInterval(PlayerSession session, long intervalMs) {
+        if (session.statsRunnable != null) {
+            handler.removeCallbacks(session.statsRunnable);
+            session.statsRunnable = null;
+        }
+        if (intervalMs <= 0 || session.metrics == null) {
+            return;
+        }
+        session.statsRunnable = new Runnable() {
+            @Override
+            public void run() {
+                sendStats(session);
+                handler.postDelayed(this, intervalMs);
             }
-        });
+        };
+        handler.postDelayed(session.statsRunnable, intervalMs);
+    }
+
+    private void sendStats(PlayerSession session) {
+        if (!events.wants("stats") || session.metrics == null) {
+            return;
+        }
+        try {
+            sendEvent(session, "stats", session.metrics.toJson());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void getPosition(PlayerSession session, CallbackContext callbackContext) {
+        if (session.player != null) {
+            callbackContext.success(String.valueOf(session.player.getCurrentPosition() / 1000.0));
+        } else {
+            callbackContext.error("Player is not ready");
+        }
+    }
+
+    private void getDuration(PlayerSession session, CallbackContext callbackContext) {
+        if (session.player != null) {
+            callbackContext.success(String.valueOf(session.player.getDuration() / 1000.0));
+        } else {
+            callbackContext.error("Player is not ready");
+        }
+    }
+
+    private void setRate(PlayerSession session, float rate) {
+        if (session.player != null) {
+            PlaybackParameters params = new PlaybackParameters(rate);
+            session.player.setPlaybackParameters(params);
+        }
+    }
+
+    /**
+     * Stretches the player over the WebView's container and hides the system bars, or
+     * puts it back over its element. Layout updates for it are ignored in between.
+     */
+    private void toggleFullscreen(PlayerSession session, CallbackContext callbackContext) {
+        if (session.playerView == null) {
+            callbackContext.error("Player is not ready");
+            return;
+        }
+        session.isFullscreen = !session.isFullscreen;
+        if (session.isFullscreen) {
+            PlayerView view = session.playerView;
+            view.setTranslationX(0);
+            view.setTranslationY(0);
+            ViewGroup.LayoutParams params = view.getLayoutParams();
+            params.width = ViewGroup.LayoutParams.MATCH_PARENT;
+            params.height = ViewGroup.LayoutParams.MATCH_PARENT;
+            view.setLayoutParams(params);
+            // Over the other players too
+            view.bringToFront();
+        } else {
+            updatePlayerPosition(session);
+        }
+        updateSystemBars();
+        try {
+            JSONObject fullscreenObj = new JSONObject();
+            fullscreenObj.put("isFullscreen", session.isFullscreen);
+            sendEvent(session, "fullscreenChange", fullscreenObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        callbackContext.success();
+    }
+
+    /**
+     * Hides the system bars while any player is fullscreen; a swipe shows them briefly.
+     */
+    private void updateSystemBars() {
+        boolean fullscreen = false;
+        for (PlayerSession session : sessions.values()) {
+            fullscreen |= session.isFullscreen;
+        }
+        Window window = cordova.getActivity().getWindow();
+        WindowInsetsControllerCompat controller = new WindowInsetsControllerCompat(window, window.getDecorView());
+        if (fullscreen) {
+            controller.setSystemBarsBehavior(WindowInsetsControllerCompat.BEHAVIOR_SHOW_TRANSIENT_BARS_BY_SWIPE);
+            controller.hide(WindowInsetsCompat.Type.systemBars());
+        } else {
+            controller.show(WindowInsetsCompat.Type.systemBars());
+        }
     }
 
     private void togglePictureInPicture() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            cordova.getActivity().runOnUiThread(() -> {
-                if (cordova.getActivity().isInPictureInPictureMode()) {
-                    cordova.getActivity().moveTaskToBack(false);
-                } else {
-                    PictureInPictureParams.Builder params = new PictureInPictureParams.Builder();
-                    cordova.getActivity().enterPictureInPictureMode(params.build());
-                }
-            });
+            if (cordova.getActivity().isInPictureInPictureMode()) {
+                cordova.getActivity().moveTaskToBack(false);
+            } else {
+                PictureInPictureParams.Builder params = new PictureInPictureParams.Builder();
+                cordova.getActivity().enterPictureInPictureMode(params.build());
+            }
         }
     }
 
     public void onPictureInPictureModeChanged(boolean isInPictureInPictureMode, Configuration newConfig) {
+        if (!events.wants("pictureInPictureChange")) {
+            return;
+        }
         try {
             JSONObject pipObj = new JSONObject();
             pipObj.put("isPictureInPicture", isInPictureInPictureMode);
-            sendEvent("pictureInPictureChange", pipObj);
+            sendEvent(null, "pictureInPictureChange", pipObj);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -441,18 +1656,39 @@ public class NativePlayer extends CordovaPlugin {
 
     @Override
     public void onDestroy() {
-        if (player != null) {
-            player.release();
+        commandQueue.clear();
+        cordova.getActivity().getApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+        MediaHttp.getInstance().setListener(null);
+        for (PlayerSession session : sessions.values()) {
+            releaseSession(session, false);
+        }
+        sessions.clear();
+        if (playerPool != null) {
+            playerPool.clear();
         }
         if (handler != null) {
             handler.removeCallbacksAndMessages(null);
         }
+        events.clear();
+        layoutSync.clear();
         if (networkCallback != null) {
             ConnectivityManager connectivityManager = (ConnectivityManager) cordova.getActivity().getSystemService(Context.CONNECTIVITY_SERVICE);
             connectivityManager.unregisterNetworkCallback(networkCallback);
         }
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
+        if (backgroundPlayback != null) {
+            backgroundPlayback.release();
+            backgroundPlayback = null;
+        }
+        if (bandwidthStore != null) {
+            bandwidthStore.flush();
+        }
+        if (thumbnailEngine != null) {
+            thumbnailEngine.release();
+            thumbnailEngine = null;
+        }
+        if (offlineManager != null) {
+            // The manager outlives the activity; downloads keep running in the process
+            offlineManager.setListener(null);
         }
         super.onDestroy();
     }
@@ -461,82 +1697,247 @@ public class NativePlayer extends CordovaPlugin {
         super.onConfigurationChanged(newConfig);
         if (newConfig.orientation == Configuration.ORIENTATION_LANDSCAPE ||
             newConfig.orientation == Configuration.ORIENTATION_PORTRAIT) {
-            updatePlayerPosition(this.divId);
+            for (PlayerSession session : sessions.values()) {
+                updatePlayerPosition(session);
+            }
         }
     }
 
-    private void updateMediaInfo() {
-        if (player != null && player.getCurrentMediaItem() != null) {
-            try {
-                JSONObject mediaInfo = new JSONObject();
-                MediaItem mediaItem = player.getCurrentMediaItem();
-                mediaInfo.put("title", mediaItem.mediaMetadata.title);
-                mediaInfo.put("artist", mediaItem.mediaMetadata.artist);
-                mediaInfo.put("album", mediaItem.mediaMetadata.albumTitle);
-                mediaInfo.put("duration", player.getDuration() / 1000.0);
-                sendEvent("mediaInfo", mediaInfo);
-            } catch (JSONException e) {
-                e.printStackTrace();
+    @Override
+    public void onResume(boolean multitasking) {
+        super.onResume(multitasking);
+        if (backgroundPlayback != null) {
+            backgroundPlayback.onForeground();
+        }
+        boolean hasTiles = false;
+        for (PlayerSession session : sessions.values()) {
+            if (session.snapshot != null) {
+                restore(session, "resume");
+            }
+            if (session.audioOnly && session.player != null) {
+                BackgroundPlayback.exitAudioOnly(session);
+            }
+            session.audioOnly = false;
+            hasTiles |= session.viewPriority != null;
+            if (session.entry != null) {
+                session.entry.loadControl.setTrimmed(false);
+            }
+            if (session.resumeOnForeground && session.player != null) {
+                session.player.setPlayWhenReady(true);
+            }
+            session.resumeOnForeground = false;
+        }
+        if (hasTiles) {
+            // Tiles demoted to a still stay paused
+            scheduleViews("resume");
+        }
+    }
+
+    @Override
+    public void onPause(boolean multitasking) {
+        super.onPause(multitasking);
+        // Picture in picture pauses the activity too, but the video stays visible there
+        boolean videoVisible = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                && cordova.getActivity().isInPictureInPictureMode();
+        boolean playsInBackground = false;
+        for (PlayerSession session : sessions.values()) {
+            if (session.player == null) {
+                continue;
             }
+            if (session.backgroundPlayback && session.player.getPlayWhenReady()) {
+                if (!videoVisible) {
+                    BackgroundPlayback.enterAudioOnly(session.player);
+                    session.audioOnly = true;
+                }
+                playsInBackground = true;
+            } else {
+                // Stills are paused already and resume through their promotion
+                session.resumeOnForeground = session.player.getPlayWhenReady();
+                session.player.setPlayWhenReady(false);
+            }
+        }
+        if (playsInBackground) {
+            getBackgroundPlayback().onBackground();
         }
     }
 
-    private void handleStalled() {
-        if (player != null && player.getPlaybackState() == Player.STATE_BUFFERING &&
-            player.getPlayWhenReady() && player.getBufferedPosition() == player.getCurrentPosition()) {
-            sendEvent("stalled", null);
+    /**
+     * Gives up memory according to the {@link MemoryPressure} stage of the trim level.
+     * Players that get stopped or released keep a {@link ResumeSnapshot} and are restored
+     * on resume or on their next command. Must be called on the UI thread.
+     */
+    @VisibleForTesting
+    void applyMemoryPressure(int level) {
+        int stage = MemoryPressure.stageFor(level);
+        if (stage == MemoryPressure.NONE) {
+            return;
+        }
+        JSONArray affected = new JSONArray();
+        for (PlayerSession session : sessions.values()) {
+            if (session.entry == null) {
+                continue;
+            }
+            session.entry.loadControl.setTrimmed(true);
+            if (stage < MemoryPressure.RELEASE_DECODERS || session.player.isPlaying()) {
+                continue;
+            }
+            if (session.snapshot == null) {
+                session.snapshot = ResumeSnapshot.capture(session.player, session.trackCatalog,
+                        getBandwidthMeter().getBitrateEstimate());
+                if (session.recovery != null) {
+                    // A pending retry would prepare the player again
+                    session.recovery.release();
+                }
+                session.player.stop();
+            }
+            if (stage == MemoryPressure.RELEASE_PLAYERS) {
+                releaseSession(session, true);
+            }
+            affected.put(session.id);
+        }
+        if (thumbnailEngine != null) {
+            thumbnailEngine.trimMemory();
+        }
+        if (stage >= MemoryPressure.RELEASE_DECODERS && playerPool != null) {
+            playerPool.clear();
+        }
+        if (!events.wants("memoryTrim")) {
+            return;
+        }
+        try {
+            JSONObject trimObj = new JSONObject();
+            trimObj.put("level", level);
+            trimObj.put("levelName", MemoryPressure.levelName(level));
+            trimObj.put("action", MemoryPressure.stageName(stage));
+            trimObj.put("players", affected);
+            sendEvent(null, "memoryTrim", trimObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
         }
     }
 
-    private void setupStallDetection() {
-        final Handler stallHandler = new Handler();
-        final Runnable stallRunnable = new Runnable() {
+    /**
+     * Brings back a player stopped or released under memory pressure from its snapshot.
+     * A restore event follows once it is ready again. Must be called on the UI thread.
+     */
+    private void restore(PlayerSession session, String reason) {
+        ResumeSnapshot snapshot = session.snapshot;
+        session.snapshot = null;
+        long startMs = SystemClock.elapsedRealtime();
+        String from;
+        if (session.entry == null) {
+            from = "released";
+            attachPlayer(session);
+            ExoPlayer player = session.player;
+            // Reapplied over the snapshot, the network may have changed in the meantime
+            player.setTrackSelectionParameters(
+                    capVideo(session, networkPolicy.getDecision(), snapshot.trackSelectionParameters));
+            List<MediaSource> mediaSources = new ArrayList<>(snapshot.mediaItems.size());
+            for (MediaItem mediaItem : snapshot.mediaItems) {
+                mediaSources.add(createMediaSource(session, mediaItem));
+            }
+            // An unset position starts live items at their default position again
+            player.setMediaSources(mediaSources, snapshot.mediaItemIndex, snapshot.positionMs);
+            player.setVolume(snapshot.volume);
+            player.setPlaybackParameters(snapshot.playbackParameters);
+            player.setPlayWhenReady(snapshot.playWhenReady);
+            player.prepare();
+            startSession(session);
+        } else {
+            from = "stopped";
+            session.entry.loadControl.setTrimmed(false);
+            session.player.prepare();
+        }
+        session.restoreListener = new Player.Listener() {
             @Override
-            public void run() {
-                handleStalled();
-                stallHandler.postDelayed(this, 1000);
+            public void onPlaybackStateChanged(int state) {
+                if (state != Player.STATE_READY) {
+                    return;
+                }
+                session.player.removeListener(this);
+                session.restoreListener = null;
+                sendRestore(session, snapshot, from, reason, SystemClock.elapsedRealtime() - startMs);
             }
         };
-        stallHandler.post(stallRunnable);
+        session.player.addListener(session.restoreListener);
     }
 
-    private void handleWarning(String message) {
+    private void sendRestore(PlayerSession session, ResumeSnapshot snapshot, String from, String reason, long restoreMs) {
+        if (!events.wants("restore")) {
+            return;
+        }
         try {
-            JSONObject warningObj = new JSONObject();
-            warningObj.put("message", message);
-            sendEvent("warning", warningObj);
+            JSONObject restoreObj = new JSONObject();
+            restoreObj.put("from", from);
+            restoreObj.put("reason", reason);
+            restoreObj.put("restoreMs", restoreMs);
+            restoreObj.put("snapshot", snapshot.toJson());
+            sendEvent(session, "restore", restoreObj);
         } catch (JSONException e) {
             e.printStackTrace();
         }
     }
 
-    @Override
-    public void onResume(boolean multitasking) {
-        super.onResume(multitasking);
-        if (player != null) {
-            player.setPlayWhenReady(true);
+    private void setRecoveryOptions(PlayerSession session, JSONObject options) throws JSONException {
+        // Kept so the options survive the player being released under memory pressure
+        if (session.recoveryOptions == null) {
+            session.recoveryOptions = new JSONObject();
+        }
+        JSONArray names = options.names();
+        for (int i = 0; names != null && i < names.length(); i++) {
+            String name = names.getString(i);
+            session.recoveryOptions.put(name, options.get(name));
+        }
+        if (session.recovery != null) {
+            session.recovery.configure(options);
         }
     }
 
-    @Override
-    public void onPause(boolean multitasking) {
-        super.onPause(multitasking);
-        if (player != null) {
-            player.setPlayWhenReady(false);
+    private void setPreferredAudioLanguage(PlayerSession session, String language, CallbackContext callbackContext) {
+        if (!checkLanguage(session, C.TRACK_TYPE_AUDIO, language, callbackContext)) {
+            return;
+        }
+        if (session.player != null) {
+            session.player.setTrackSelectionParameters(
+                session.player.getTrackSelectionParameters()
+                    .buildUpon()
+                    .clearOverridesOfType(C.TRACK_TYPE_AUDIO)
+                    .setPreferredAudioLanguage(language)
+                    .build()
+            );
         }
     }
 
-    private void setPreferredAudioLanguage(String language) {
-        // Implement custom logic to select preferred audio language
-        // This might involve iterating through available audio tracks and selecting the appropriate one
+    private void setPreferredTextLanguage(PlayerSession session, String language, CallbackContext callbackContext) {
+        if (!checkLanguage(session, C.TRACK_TYPE_TEXT, language, callbackContext)) {
+            return;
+        }
+        if (session.player != null) {
+            session.player.setTrackSelectionParameters(
+                session.player.getTrackSelectionParameters()
+                    .buildUpon()
+                    .clearOverridesOfType(C.TRACK_TYPE_TEXT)
+                    .setPreferredTextLanguage(language)
+                    .build()
+            );
+        }
     }
 
-    private void setPreferredTextLanguage(String language) {
-        // Implement custom logic to select preferred text language
-        // This might involve iterating through available text tracks and selecting the appropriate one
+    /**
+     * Fails the call when the current item's tracks of the type are known and none is in
+     * the language. Before the tracks are known any language is accepted.
+     */
+    private boolean checkLanguage(PlayerSession session, int type, String language, CallbackContext callbackContext) {
+        TrackCatalog catalog = session.trackCatalog;
+        if (catalog.hasTracks(type) && !catalog.hasLanguage(type, language)) {
+            callbackContext.error("No " + (type == C.TRACK_TYPE_AUDIO ? "audio" : "text") + " track in language: " + language);
+            return false;
+        }
+        return true;
     }
 
-    private void enableSubtitles(boolean enable) {
+    private void enableSubtitles(PlayerSession session, boolean enable) {
+        ExoPlayer player = session.player;
         if (player != null) {
             Tracks tracks = player.getCurrentTracks();
             for (Tracks.Group trackGroup : tracks.getGroups()) {
@@ -553,53 +1954,73 @@ public class NativePlayer extends CordovaPlugin {
         }
     }
 
-    private void setVideoQuality(String quality) {
-        if (player != null) {
-            Tracks tracks = player.getCurrentTracks();
-            for (Tracks.Group trackGroup : tracks.getGroups()) {
-                if (trackGroup.getType() == C.TRACK_TYPE_VIDEO) {
-                    for (int i = 0; i < trackGroup.length; i++) {
-                        Format format = trackGroup.getTrackFormat(i);
-                        if (quality.equals(format.height + "p")) {
-                            player.setTrackSelectionParameters(
-                                player.getTrackSelectionParameters()
-                                    .buildUpon()
-                                    .setOverrideForType(
-                                        new TrackSelectionOverride(
-                                            trackGroup.getMediaTrackGroup(),
-                                            i
-                                        )
-                                    )
-                                    .build()
-                            );
-                            break;
-                        }
-                    }
-                    break;
-                }
-            }
+    /**
+     * Pins the video rendition with the given height ("720p"), or returns to adaptive
+     * selection for "auto".
+     */
+    private void setVideoQuality(PlayerSession session, String quality) {
+        ExoPlayer player = session.player;
+        if (player == null) {
+            return;
+        }
+        if (quality.equals("auto")) {
+            player.setTrackSelectionParameters(
+                player.getTrackSelectionParameters()
+                    .buildUpon()
+                    .clearOverridesOfType(C.TRACK_TYPE_VIDEO)
+                    .build()
+            );
+            return;
+        }
+        TrackCatalog.Track track = session.trackCatalog.videoForQuality(quality);
+        if (track != null) {
+            selectTrack(player, track);
         }
     }
 
-    public void setBackgroundPlayback(boolean enabled) {
-        if (player != null) {
-            player.setHandleAudioBecomingNoisy(!enabled);
+    private void selectTrack(PlayerSession session, String trackId, CallbackContext callbackContext) {
+        TrackCatalog.Track track = session.trackCatalog.byId(trackId);
+        if (session.player == null || track == null) {
+            callbackContext.error("Unknown track: " + trackId);
+            return;
+        }
+        selectTrack(session.player, track);
+        callbackContext.success();
+    }
 
-            PowerManager powerManager = (PowerManager) cordova.getActivity().getSystemService(Context.POWER_SERVICE);
-            if (wakeLock == null) {
-                wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "NativePlayer:WakeLock");
-            }
+    private void selectTrack(ExoPlayer player, TrackCatalog.Track track) {
+        player.setTrackSelectionParameters(track.applyTo(player.getTrackSelectionParameters()));
+    }
 
-            if (enabled) {
-                if (!wakeLock.isHeld()) {
-                    wakeLock.acquire();
-                }
-            } else {
-                if (wakeLock.isHeld()) {
-                    wakeLock.release();
-                }
-            }
+    private void getTracks(PlayerSession session, CallbackContext callbackContext) {
+        try {
+            callbackContext.success(session.trackCatalog.toJson());
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+
+    public void setBackgroundPlayback(PlayerSession session, boolean enabled) {
+        session.backgroundPlayback = enabled;
+        if (session.player == null) {
+            return;
+        }
+        // Unplugging headphones pauses rather than playing out loud from a hidden app
+        session.player.setHandleAudioBecomingNoisy(enabled);
+        // Wake and Wi-Fi locks are only held while the player actually plays
+        session.player.setWakeMode(enabled ? C.WAKE_MODE_NETWORK : C.WAKE_MODE_NONE);
+        if (enabled) {
+            getBackgroundPlayback().setActive(session);
+        } else if (backgroundPlayback != null) {
+            backgroundPlayback.detach(session);
+        }
+    }
+
+    private BackgroundPlayback getBackgroundPlayback() {
+        if (backgroundPlayback == null) {
+            backgroundPlayback = new BackgroundPlayback(cordova.getActivity());
         }
+        return backgroundPlayback;
     }
 
     @Override
@@ -607,4 +2028,4 @@ public class NativePlayer extends CordovaPlugin {
         super.onActivityResult(requestCode, resultCode, intent);
         // Handle any activity results here if needed
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,191 @@
+package com.example.plugin;
+
+import android.net.NetworkCapabilities;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Video caps chosen from the current network.
+ *
+ * The network is described by its type, metered flag and the downstream bandwidth the
+ * system reports for it. Rules set from JS are checked in order and the first one whose
+ * conditions all hold provides the caps ({@code maxHeight}, {@code maxBitrate}); with no
+ * matching rule nothing is capped. Connectivity is also tracked here; it is read by
+ * {@link BackoffLoadErrorPolicy} from loader threads. Must otherwise be used on the main
+ * thread.
+ */
+final class NetworkPolicy {
+
+    static final class Decision {
+        final String network;
+        final boolean metered;
+        final int downstreamKbps;
+        final int ruleIndex;
+        final int maxHeight;
+        final int maxBitrate;
+
+        Decision(String network, boolean metered, int downstreamKbps, int ruleIndex, int maxHeight, int maxBitrate) {
+            this.network = network;
+            this.metered = metered;
+            this.downstreamKbps = downstreamKbps;
+            this.ruleIndex = ruleIndex;
+            this.maxHeight = maxHeight;
+            this.maxBitrate = maxBitrate;
+        }
+
+        TrackSelectionParameters applyTo(TrackSelectionParameters parameters) {
+            return parameters.buildUpon()
+                    .setMaxVideoSize(Integer.MAX_VALUE, maxHeight)
+                    .setMaxVideoBitrate(maxBitrate)
+                    .build();
+        }
+
+        /**
+         * Downstream bandwidth is left out: it fluctuates with signal strength and only
+         * matters through the rule it selects.
+         */
+        boolean sameAs(@Nullable Decision other) {
+            return other != null
+                    && network.equals(other.network)
+                    && metered == other.metered
+                    && ruleIndex == other.ruleIndex
+                    && maxHeight == other.maxHeight
+                    && maxBitrate == other.maxBitrate;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject decisionObj = new JSONObject();
+            decisionObj.put("network", network);
+            decisionObj.put("metered", metered);
+            if (downstreamKbps > 0) {
+                decisionObj.put("downstreamKbps", downstreamKbps);
+            }
+            decisionObj.put("rule", ruleIndex >= 0 ? ruleIndex : JSONObject.NULL);
+            decisionObj.put("maxHeight", maxHeight != Integer.MAX_VALUE ? maxHeight : JSONObject.NULL);
+            decisionObj.put("maxBitrate", maxBitrate != Integer.MAX_VALUE ? maxBitrate : JSONObject.NULL);
+            return decisionObj;
+        }
+    }
+
+    private static final class Rule {
+        @Nullable final String network;
+        @Nullable final Boolean metered;
+        final int minDownstreamKbps;
+        final int maxDownstreamKbps;
+        final int maxHeight;
+        final int maxBitrate;
+
+        Rule(JSONObject rule) {
+            network = rule.has("network") ? rule.optString("network") : null;
+            metered = rule.has("metered") ? rule.optBoolean("metered") : null;
+            minDownstreamKbps = rule.optInt("minDownstreamKbps", 0);
+            maxDownstreamKbps = rule.optInt("maxDownstreamKbps", Integer.MAX_VALUE);
+            maxHeight = rule.optInt("maxHeight", Integer.MAX_VALUE);
+            maxBitrate = rule.optInt("maxBitrate", Integer.MAX_VALUE);
+        }
+
+        boolean matches(String network, boolean metered, int downstreamKbps) {
+            if (this.network != null && !this.network.equals(network)) {
+                return false;
+            }
+            if (this.metered != null && this.metered != metered) {
+                return false;
+            }
+            // An unknown bandwidth (0) only fails rules that ask for a minimum
+            return downstreamKbps >= minDownstreamKbps
+                    && (downstreamKbps == 0 || downstreamKbps <= maxDownstreamKbps);
+        }
+    }
+
+    private List<Rule> rules = Collections.emptyList();
+    private String network = "other";
+    private boolean metered = false;
+    private int downstreamKbps = 0;
+    private Decision decision = evaluate();
+    private volatile boolean connected = true;
+
+    Decision getDecision() {
+        return decision;
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Replaces the rule table and returns the resulting decision.
+     */
+    Decision setRules(JSONArray table) throws JSONException {
+        List<Rule> rules = new ArrayList<>(table.length());
+        for (int i = 0; i < table.length(); i++) {
+            rules.add(new Rule(table.getJSONObject(i)));
+        }
+        this.rules = rules;
+        decision = evaluate();
+        return decision;
+    }
+
+    /**
+     * Updates the network description. Returns the new decision, or null when it is the
+     * same as the current one.
+     */
+    @Nullable
+    Decision onCapabilitiesChanged(NetworkCapabilities capabilities) {
+        network = networkType(capabilities);
+        metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        downstreamKbps = capabilities.getLinkDownstreamBandwidthKbps();
+        Decision next = evaluate();
+        if (next.sameAs(decision)) {
+            return null;
+        }
+        decision = next;
+        return decision;
+    }
+
+    void onLost() {
+        connected = false;
+    }
+
+    /**
+     * Returns true when this ends a period without network.
+     */
+    boolean onAvailable() {
+        boolean wasOffline = !connected;
+        connected = true;
+        return wasOffline;
+    }
+
+    private Decision evaluate() {
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (rule.matches(network, metered, downstreamKbps)) {
+                return new Decision(network, metered, downstreamKbps, i, rule.maxHeight, rule.maxBitrate);
+            }
+        }
+        return new Decision(network, metered, downstreamKbps, C.INDEX_UNSET, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    static String networkType(NetworkCapabilities capabilities) {
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            return "wifi";
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            return "cellular";
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            return "ethernet";
+        }
+        return "other";
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.plugin;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.offline.Download;
+import com.google.android.exoplayer2.offline.DownloadCursor;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadRequest;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide offline download subsystem.
+ *
+ * Downloads are stored in their own never-evicted cache, separate from the LRU
+ * {@link MediaCache}. A {@link DownloadManager} persists the queue in its database, so
+ * downloads interrupted by a process kill resume as soon as this class is instantiated.
+ * Segmented HLS/DASH downloads fetch segments in parallel on a shared executor.
+ * {@link #wrapForPlayback(DataSource.Factory)} puts the download cache in front of the
+ * playback data source, so a downloaded URL plays from local bytes with no network.
+ * Must be used on the main thread; listener callbacks arrive there too.
+ */
+final class OfflineManager implements DownloadManager.Listener {
+
+    interface Listener {
+        void onDownloadEvent(String type, String downloadId, JSONObject download);
+    }
+
+    static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 2;
+    static final int DEFAULT_SEGMENT_THREADS = 4;
+
+    // Stop reason recorded on downloads halted by the storage quota
+    static final int STOP_REASON_QUOTA = 1;
+
+    private static final String DOWNLOAD_DIRECTORY = "nativeplayer-downloads";
+    private static final String PREFERENCES_NAME = "NativePlayerOffline";
+    private static final String PREF_QUOTA_BYTES = "quotaBytes";
+    private static final String PREF_SEGMENT_THREADS = "segmentThreads";
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private static OfflineManager instance;
+
+    private final StandaloneDatabaseProvider databaseProvider;
+    private final SimpleCache downloadCache;
+    private final DownloadManager downloadManager;
+    private final ExecutorService segmentExecutor;
+    private final SharedPreferences preferences;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable progressRunnable = this::reportProgress;
+
+    @Nullable
+    private Listener listener;
+    private long quotaBytes;
+    private boolean progressScheduled = false;
+
+    static synchronized OfflineManager getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new OfflineManager(
+                    appContext,
+                    new DefaultDataSource.Factory(appContext, MediaHttp.getInstance().getDataSourceFactory(RequestScheduler.PREFETCH)),
+                    new File(appContext.getFilesDir(), DOWNLOAD_DIRECTORY));
+        }
+        return instance;
+    }
+
+    /**
+     * Visible for tests, which point {@code upstreamFactory} at a local HTTP server.
+     */
+    OfflineManager(Context context, DataSource.Factory upstreamFactory, File directory) {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        quotaBytes = preferences.getLong(PREF_QUOTA_BYTES, C.LENGTH_UNSET);
+        segmentExecutor = Executors.newFixedThreadPool(
+                preferences.getInt(PREF_SEGMENT_THREADS, DEFAULT_SEGMENT_THREADS));
+
+        databaseProvider = new StandaloneDatabaseProvider(context);
+        downloadCache = new SimpleCache(directory, new NoOpCacheEvictor(), databaseProvider);
+        downloadManager = new DownloadManager(context, databaseProvider, downloadCache, upstreamFactory, segmentExecutor);
+        downloadManager.setMaxParallelDownloads(DEFAULT_MAX_PARALLEL_DOWNLOADS);
+        downloadManager.addListener(this);
+        // DownloadManager starts paused; this also resumes whatever was persisted
+        downloadManager.resumeDownloads();
+    }
+
+    /**
+     * Stops the downloads and frees the download directory. Unfinished downloads stay
+     * queued in the database and resume with the next instance. Visible for tests, which
+     * start over as the next launch would.
+     */
+    void release() {
+        handler.removeCallbacks(progressRunnable);
+        progressScheduled = false;
+        downloadManager.release();
+        segmentExecutor.shutdown();
+        downloadCache.release();
+        databaseProvider.close();
+    }
+
+    void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns a read-only view of the download cache in front of {@code upstreamFactory}.
+     */
+    CacheDataSource.Factory wrapForPlayback(DataSource.Factory upstreamFactory) {
+        return new CacheDataSource.Factory()
+                .setCache(downloadCache)
+                .setUpstreamDataSourceFactory(upstreamFactory)
+                .setCacheWriteDataSinkFactory(null);
+    }
+
+    /**
+     * Applies {@code maxParallelDownloads}, {@code quotaBytes} and {@code segmentThreads}.
+     * The segment thread count is persisted and takes effect on the next launch.
+     */
+    void configure(JSONObject options) {
+        if (options.has("maxParallelDownloads")) {
+            downloadManager.setMaxParallelDownloads(Math.max(1, options.optInt("maxParallelDownloads")));
+        }
+        SharedPreferences.Editor editor = preferences.edit();
+        if (options.has("quotaBytes")) {
+            quotaBytes = options.optLong("quotaBytes", C.LENGTH_UNSET);
+            editor.putLong(PREF_QUOTA_BYTES, quotaBytes);
+        }
+        if (options.has("segmentThreads")) {
+            editor.putInt(PREF_SEGMENT_THREADS, Math.max(1, options.optInt("segmentThreads")));
+        }
+        editor.apply();
+        if (!isOverQuota()) {
+            // Raising the quota releases downloads stopped by it
+            for (Download download : downloadManager.getCurrentDownloads()) {
+                if (download.stopReason == STOP_REASON_QUOTA) {
+                    downloadManager.setStopReason(download.request.id, Download.STOP_REASON_NONE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues {@code url} under {@code id}. Returns false when the storage quota is already
+     * used up.
+     */
+    boolean download(String id, String url, @Nullable String title) {
+        if (isOverQuota()) {
+            return false;
+        }
+        DownloadRequest.Builder request = new DownloadRequest.Builder(id, Uri.parse(url));
+        if (title != null) {
+            request.setData(Util.getUtf8Bytes(title));
+        }
+        downloadManager.addDownload(request.build());
+        return true;
+    }
+
+    void remove(String id) {
+        downloadManager.removeDownload(id);
+    }
+
+    void pauseAll() {
+        downloadManager.pauseDownloads();
+    }
+
+    void resumeAll() {
+        downloadManager.resumeDownloads();
+    }
+
+    JSONArray getDownloads() throws JSONException {
+        JSONArray downloads = new JSONArray();
+        try (DownloadCursor cursor = downloadManager.getDownloadIndex().getDownloads()) {
+            while (cursor.moveToNext()) {
+                downloads.put(toJson(cursor.getDownload()));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return downloads;
+    }
+
+    JSONObject getStorage() throws JSONException {
+        JSONObject storage = new JSONObject();
+        storage.put("usedBytes", downloadCache.getCacheSpace());
+        storage.put("quotaBytes", quotaBytes);
+        return storage;
+    }
+
+    @Override
+    public void onDownloadChanged(DownloadManager downloadManager, Download download, @Nullable Exception finalException) {
+        notifyListener("downloadChange", download);
+        scheduleProgress();
+    }
+
+    @Override
+    public void onDownloadRemoved(DownloadManager downloadManager, Download download) {
+        try {
+            JSONObject removed = toJson(download);
+            removed.put("state", "removed");
+            if (listener != null) {
+                listener.onDownloadEvent("downloadChange", download.request.id, removed);
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void scheduleProgress() {
+        if (!progressScheduled && hasActiveDownloads()) {
+            progressScheduled = true;
+            handler.postDelayed(progressRunnable, PROGRESS_INTERVAL_MS);
+        }
+    }
+
+    private void reportProgress() {
+        progressScheduled = false;
+        List<Download> downloads = downloadManager.getCurrentDownloads();
+        boolean overQuota = isOverQuota();
+        for (Download download : downloads) {
+            if (download.state != Download.STATE_DOWNLOADING) {
+                continue;
+            }
+            if (overQuota) {
+                downloadManager.setStopReason(download.request.id, STOP_REASON_QUOTA);
+            } else {
+                notifyListener("downloadProgress", download);
+            }
+        }
+        scheduleProgress();
+    }
+
+    private boolean hasActiveDownloads() {
+        for (Download download : downloadManager.getCurrentDownloads()) {
+            if (download.state == Download.STATE_DOWNLOADING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isOverQuota() {
+        return quotaBytes != C.LENGTH_UNSET && downloadCache.getCacheSpace() >= quotaBytes;
+    }
+
+    private void notifyListener(String type, Download download) {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onDownloadEvent(type, download.request.id, toJson(download));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static JSONObject toJson(Download download) throws JSONException {
+        JSONObject downloadObj = new JSONObject();
+        downloadObj.put("id", download.request.id);
+        downloadObj.put("url", download.request.uri.toString());
+        if (download.request.data.length > 0) {
+            downloadObj.put("title", Util.fromUtf8Bytes(download.request.data));
+        }
+        downloadObj.put("state", stateName(download.state));
+        downloadObj.put("bytesDownloaded", download.getBytesDownloaded());
+        if (download.contentLength != C.LENGTH_UNSET) {
+            downloadObj.put("contentLength", download.contentLength);
+        }
+        if (download.getPercentDownloaded() != C.PERCENTAGE_UNSET) {
+            downloadObj.put("percent", download.getPercentDownloaded());
+        }
+        if (download.stopReason == STOP_REASON_QUOTA) {
+            downloadObj.put("stopReason", "quota");
+        }
+        return downloadObj;
+    }
+
+    private static String stateName(int state) {
+        switch (state) {
+            case Download.STATE_QUEUED:
+                return "queued";
+            case Download.STATE_STOPPED:
+                return "stopped";
+            case Download.STATE_DOWNLOADING:
+                return "downloading";
+            case Download.STATE_COMPLETED:
+                return "completed";
+            case Download.STATE_FAILED:
+                return "failed";
+            case Download.STATE_REMOVING:
+                return "removing";
+            case Download.STATE_RESTARTING:
+            default:
+                return "restarting";
+        }
+    }
+}
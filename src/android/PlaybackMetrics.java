@@ -0,0 +1,258 @@
+package com.example.plugin;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.decoder.DecoderReuseEvaluation;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Quality-of-experience counters for one player session.
+ *
+ * Every callback only updates primitive fields and preallocated arrays, so recording adds
+ * no allocation to the playback path; JSON is built only when {@link #toJson()} is
+ * called. Timestamps are {@link SystemClock#elapsedRealtime()} based, like
+ * {@link EventTime#realtimeMs}. Must be used on the player's application thread.
+ */
+class PlaybackMetrics implements AnalyticsListener {
+
+    // Distinct video bitrates tracked individually; further ones share the last slot
+    private static final int MAX_BITRATES = 16;
+
+    private final long createdAtMs;
+
+    private long firstFrameAtMs = C.TIME_UNSET;
+
+    private int rebufferCount;
+    private long rebufferDurationMs;
+    private long rebufferStartMs = C.TIME_UNSET;
+    private boolean seekInProgress;
+
+    private long droppedFrames;
+
+    private final int[] bitrates = new int[MAX_BITRATES];
+    private final long[] playingMsAtBitrate = new long[MAX_BITRATES];
+    private int bitrateCount;
+    private int currentBitrateIndex = C.INDEX_UNSET;
+    private int bitrateSwitches;
+    private boolean playing;
+    private long playingSinceMs;
+
+    private long lastBandwidthEstimate = C.LENGTH_UNSET;
+    private long minBandwidthEstimate = Long.MAX_VALUE;
+    private long maxBandwidthEstimate;
+    private long bandwidthEstimateSum;
+    private int bandwidthSamples;
+
+    private long bytesLoaded;
+
+    private String videoDecoderName;
+    private int videoDecoderInits;
+    private long videoDecoderInitMs;
+    private long lastVideoDecoderInitMs;
+    private int videoDecoderReuses;
+    private int videoDecoderReuseRefusals;
+    private String audioDecoderName;
+    private int audioDecoderInits;
+    private long audioDecoderInitMs;
+    private long lastAudioDecoderInitMs;
+    private int audioDecoderReuses;
+    private int audioDecoderReuseRefusals;
+
+    PlaybackMetrics(long createdAtMs) {
+        this.createdAtMs = createdAtMs;
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime, Object output, long renderTimeMs) {
+        if (firstFrameAtMs == C.TIME_UNSET) {
+            firstFrameAtMs = eventTime.realtimeMs;
+        }
+    }
+
+    @Override
+    public void onPlaybackStateChanged(EventTime eventTime, int state) {
+        if (state == Player.STATE_BUFFERING) {
+            // Buffering before the first frame is startup, after a seek it is expected
+            if (firstFrameAtMs != C.TIME_UNSET && !seekInProgress && rebufferStartMs == C.TIME_UNSET) {
+                rebufferCount++;
+                rebufferStartMs = eventTime.realtimeMs;
+            }
+            return;
+        }
+        if (rebufferStartMs != C.TIME_UNSET) {
+            rebufferDurationMs += eventTime.realtimeMs - rebufferStartMs;
+            rebufferStartMs = C.TIME_UNSET;
+        }
+        if (state == Player.STATE_READY) {
+            seekInProgress = false;
+        }
+    }
+
+    @Override
+    public void onPositionDiscontinuity(EventTime eventTime, Player.PositionInfo oldPosition,
+                                        Player.PositionInfo newPosition, int reason) {
+        if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+            seekInProgress = true;
+        }
+    }
+
+    @Override
+    public void onIsPlayingChanged(EventTime eventTime, boolean isPlaying) {
+        accumulatePlayingTime(eventTime.realtimeMs);
+        playing = isPlaying;
+    }
+
+    @Override
+    public void onVideoInputFormatChanged(EventTime eventTime, Format format,
+                                          @Nullable DecoderReuseEvaluation decoderReuseEvaluation) {
+        accumulatePlayingTime(eventTime.realtimeMs);
+        // Progressive files and some playlists do not declare a bitrate
+        if (format.bitrate != Format.NO_VALUE) {
+            int index = indexOfBitrate(format.bitrate);
+            if (currentBitrateIndex != C.INDEX_UNSET && index != currentBitrateIndex) {
+                bitrateSwitches++;
+            }
+            currentBitrateIndex = index;
+        }
+        // Only present when a codec was already open for the previous format
+        if (decoderReuseEvaluation != null) {
+            if (decoderReuseEvaluation.result == DecoderReuseEvaluation.REUSE_RESULT_NO) {
+                videoDecoderReuseRefusals++;
+            } else {
+                videoDecoderReuses++;
+            }
+        }
+    }
+
+    @Override
+    public void onAudioInputFormatChanged(EventTime eventTime, Format format,
+                                          @Nullable DecoderReuseEvaluation decoderReuseEvaluation) {
+        if (decoderReuseEvaluation != null) {
+            if (decoderReuseEvaluation.result == DecoderReuseEvaluation.REUSE_RESULT_NO) {
+                audioDecoderReuseRefusals++;
+            } else {
+                audioDecoderReuses++;
+            }
+        }
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+        this.droppedFrames += droppedFrames;
+    }
+
+    @Override
+    public void onBandwidthEstimate(EventTime eventTime, int totalLoadTimeMs, long totalBytesLoaded, long bitrateEstimate) {
+        lastBandwidthEstimate = bitrateEstimate;
+        minBandwidthEstimate = Math.min(minBandwidthEstimate, bitrateEstimate);
+        maxBandwidthEstimate = Math.max(maxBandwidthEstimate, bitrateEstimate);
+        bandwidthEstimateSum += bitrateEstimate;
+        bandwidthSamples++;
+    }
+
+    @Override
+    public void onLoadCompleted(EventTime eventTime, LoadEventInfo loadEventInfo, MediaLoadData mediaLoadData) {
+        bytesLoaded += loadEventInfo.bytesLoaded;
+    }
+
+    @Override
+    public void onVideoDecoderInitialized(EventTime eventTime, String decoderName,
+                                          long initializedTimestampMs, long initializationDurationMs) {
+        videoDecoderName = decoderName;
+        videoDecoderInits++;
+        videoDecoderInitMs += initializationDurationMs;
+        lastVideoDecoderInitMs = initializationDurationMs;
+    }
+
+    @Override
+    public void onAudioDecoderInitialized(EventTime eventTime, String decoderName,
+                                          long initializedTimestampMs, long initializationDurationMs) {
+        audioDecoderName = decoderName;
+        audioDecoderInits++;
+        audioDecoderInitMs += initializationDurationMs;
+        lastAudioDecoderInitMs = initializationDurationMs;
+    }
+
+    JSONObject toJson() throws JSONException {
+        long nowMs = SystemClock.elapsedRealtime();
+        accumulatePlayingTime(nowMs);
+
+        JSONObject stats = new JSONObject();
+        stats.put("timeToFirstFrameMs", firstFrameAtMs == C.TIME_UNSET ? JSONObject.NULL : firstFrameAtMs - createdAtMs);
+        stats.put("rebufferCount", rebufferCount);
+        stats.put("rebufferDurationMs", rebufferDurationMs
+                + (rebufferStartMs == C.TIME_UNSET ? 0 : nowMs - rebufferStartMs));
+        stats.put("droppedFrames", droppedFrames);
+        stats.put("bitrateSwitches", bitrateSwitches);
+        JSONArray bitrateTimes = new JSONArray();
+        for (int i = 0; i < bitrateCount; i++) {
+            JSONObject bitrateObj = new JSONObject();
+            bitrateObj.put("bitrate", bitrates[i]);
+            bitrateObj.put("playingMs", playingMsAtBitrate[i]);
+            bitrateTimes.put(bitrateObj);
+        }
+        stats.put("bitrates", bitrateTimes);
+
+        JSONObject bandwidth = new JSONObject();
+        bandwidth.put("samples", bandwidthSamples);
+        if (bandwidthSamples > 0) {
+            bandwidth.put("lastBps", lastBandwidthEstimate);
+            bandwidth.put("minBps", minBandwidthEstimate);
+            bandwidth.put("maxBps", maxBandwidthEstimate);
+            bandwidth.put("meanBps", bandwidthEstimateSum / bandwidthSamples);
+        }
+        stats.put("bandwidth", bandwidth);
+        stats.put("bytesLoaded", bytesLoaded);
+
+        JSONObject decoders = new JSONObject();
+        decoders.put("video", decoderJson(videoDecoderName, videoDecoderInits, videoDecoderInitMs,
+                lastVideoDecoderInitMs, videoDecoderReuses, videoDecoderReuseRefusals));
+        decoders.put("audio", decoderJson(audioDecoderName, audioDecoderInits, audioDecoderInitMs,
+                lastAudioDecoderInitMs, audioDecoderReuses, audioDecoderReuseRefusals));
+        stats.put("decoders", decoders);
+        return stats;
+    }
+
+    private static JSONObject decoderJson(@Nullable String name, int inits, long totalInitMs, long lastInitMs,
+                                          int reuses, int reuseRefusals) throws JSONException {
+        JSONObject decoderObj = new JSONObject();
+        decoderObj.put("name", name != null ? name : JSONObject.NULL);
+        decoderObj.put("initCount", inits);
+        decoderObj.put("totalInitMs", totalInitMs);
+        decoderObj.put("lastInitMs", lastInitMs);
+        decoderObj.put("reuseCount", reuses);
+        decoderObj.put("reuseRefusedCount", reuseRefusals);
+        return decoderObj;
+    }
+
+    private void accumulatePlayingTime(long nowMs) {
+        if (playing && currentBitrateIndex != C.INDEX_UNSET) {
+            playingMsAtBitrate[currentBitrateIndex] += nowMs - playingSinceMs;
+        }
+        playingSinceMs = nowMs;
+    }
+
+    private int indexOfBitrate(int bitrate) {
+        for (int i = 0; i < bitrateCount; i++) {
+            if (bitrates[i] == bitrate) {
+                return i;
+            }
+        }
+        if (bitrateCount < MAX_BITRATES) {
+            bitrates[bitrateCount] = bitrate;
+            return bitrateCount++;
+        }
+        return MAX_BITRATES - 1;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.plugin;
+
+import android.app.Notification;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Foreground service that keeps the process alive while a player plays in the
+ * background.
+ *
+ * It owns nothing: the notification is built by {@link BackgroundPlayback}, which moves
+ * the service in and out of the foreground as playback starts and pauses. Must be used
+ * on the main thread.
+ */
+public final class PlaybackService extends Service {
+
+    private static final String EXTRA_NOTIFICATION_ID = "notificationId";
+    private static final String EXTRA_NOTIFICATION = "notification";
+
+    @Nullable
+    private static PlaybackService instance;
+
+    static void startForeground(Context context, int notificationId, Notification notification) {
+        if (instance != null) {
+            instance.startForeground(notificationId, notification);
+            return;
+        }
+        Intent intent = new Intent(context, PlaybackService.class)
+                .putExtra(EXTRA_NOTIFICATION_ID, notificationId)
+                .putExtra(EXTRA_NOTIFICATION, notification);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    /**
+     * Leaves the foreground but keeps the notification, so playback can be resumed from it.
+     */
+    static void stopForeground() {
+        if (instance != null) {
+            instance.stopForeground(false);
+        }
+    }
+
+    static void stop() {
+        if (instance != null) {
+            instance.stopForeground(true);
+            instance.stopSelf();
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        instance = this;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        Notification notification = intent != null ? intent.getParcelableExtra(EXTRA_NOTIFICATION) : null;
+        if (notification == null) {
+            // Restarted by the system without a player to show
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        startForeground(intent.getIntExtra(EXTRA_NOTIFICATION_ID, 1), notification);
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        instance = null;
+        super.onDestroy();
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
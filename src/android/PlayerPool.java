@@ -0,0 +1,151 @@
+package com.example.plugin;
+
+import android.content.Context;
+import android.view.ViewGroup;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
+import com.google.android.exoplayer2.ui.PlayerView;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Bounded pool of pre-built ExoPlayer/PlayerView pairs.
+ *
+ * Instances handed back through {@link #recycle(Entry)} are reset and kept warm for the
+ * next createPlayer call. When the pool is already full the surplus instance is released,
+ * so the number of live players never exceeds the active sessions plus the pool bound.
+ * The load control and the surface type are fixed at build time, so an idle instance is
+ * only reused for a session with the same {@link BufferProfile} and {@link RenderMode}.
+ * All methods must be called on the UI thread.
+ */
+class PlayerPool {
+
+    static final int DEFAULT_MAX_IDLE = 2;
+
+    static final class Entry {
+        final ExoPlayer player;
+        final PlayerView playerView;
+        final TrimmableLoadControl loadControl;
+        final BufferProfile bufferProfile;
+        final RenderMode renderMode;
+
+        Entry(ExoPlayer player, PlayerView playerView, TrimmableLoadControl loadControl,
+              BufferProfile bufferProfile, RenderMode renderMode) {
+            this.player = player;
+            this.playerView = playerView;
+            this.loadControl = loadControl;
+            this.bufferProfile = bufferProfile;
+            this.renderMode = renderMode;
+        }
+    }
+
+    private final Context context;
+    private final BandwidthMeter bandwidthMeter;
+    private final ArrayDeque<Entry> idle = new ArrayDeque<>();
+    private int maxIdle = DEFAULT_MAX_IDLE;
+
+    PlayerPool(Context context, BandwidthMeter bandwidthMeter) {
+        this.context = context;
+        this.bandwidthMeter = bandwidthMeter;
+    }
+
+    Entry acquire(BufferProfile bufferProfile, RenderMode renderMode) {
+        Iterator<Entry> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.bufferProfile.equals(bufferProfile) && entry.renderMode == renderMode) {
+                iterator.remove();
+                return entry;
+            }
+        }
+        return build(bufferProfile, renderMode);
+    }
+
+    void recycle(Entry entry) {
+        detach(entry);
+        if (idle.size() < maxIdle) {
+            reset(entry);
+            idle.addFirst(entry);
+        } else {
+            release(entry);
+        }
+    }
+
+    /**
+     * Changes the pool bound and pre-builds default-profile, SurfaceView instances up to
+     * it, releasing any excess.
+     */
+    void resize(int size) {
+        maxIdle = Math.max(0, size);
+        while (idle.size() > maxIdle) {
+            release(idle.pollLast());
+        }
+        while (idle.size() < maxIdle) {
+            idle.addLast(build(BufferProfile.DEFAULT, RenderMode.SURFACE));
+        }
+    }
+
+    /**
+     * Releases an instance for good instead of keeping it warm, for example to free
+     * memory.
+     */
+    void discard(Entry entry) {
+        release(entry);
+    }
+
+    int idleCount() {
+        return idle.size();
+    }
+
+    void clear() {
+        while (!idle.isEmpty()) {
+            release(idle.pollFirst());
+        }
+    }
+
+    private Entry build(BufferProfile bufferProfile, RenderMode renderMode) {
+        TrimmableLoadControl loadControl = bufferProfile.createLoadControl();
+        ExoPlayer player = new ExoPlayer.Builder(context)
+                .setLoadControl(loadControl)
+                .setBandwidthMeter(bandwidthMeter)
+                .build();
+        PlayerView playerView = renderMode.createView(context);
+        playerView.setPlayer(player);
+        return new Entry(player, playerView, loadControl, bufferProfile, renderMode);
+    }
+
+    private void reset(Entry entry) {
+        ExoPlayer player = entry.player;
+        player.stop();
+        player.clearMediaItems();
+        player.setPlayWhenReady(false);
+        player.setRepeatMode(Player.REPEAT_MODE_OFF);
+        player.setVolume(1f);
+        player.setWakeMode(C.WAKE_MODE_NONE);
+        player.setHandleAudioBecomingNoisy(false);
+        player.setPlaybackParameters(PlaybackParameters.DEFAULT);
+        player.setTrackSelectionParameters(TrackSelectionParameters.getDefaults(context));
+        entry.loadControl.setTrimmed(false);
+        entry.playerView.setTranslationX(0);
+        entry.playerView.setTranslationY(0);
+    }
+
+    private static void detach(Entry entry) {
+        ViewGroup parent = (ViewGroup) entry.playerView.getParent();
+        if (parent != null) {
+            parent.removeView(entry.playerView);
+        }
+    }
+
+    private static void release(Entry entry) {
+        detach(entry);
+        entry.playerView.setPlayer(null);
+        entry.player.release();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.plugin;
+
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.ui.PlayerView;
+
+import org.json.JSONObject;
+
+/**
+ * State owned by one player created through createPlayer.
+ *
+ * The session is registered when the createPlayer command runs, together with the
+ * pooled {@link #player} and {@link #playerView}; they are cleared again on destroy, and
+ * while the player is released under memory pressure.
+ */
+class PlayerSession {
+
+    final int id;
+    final String divId;
+    final BufferProfile bufferProfile;
+    final RenderMode renderMode;
+
+    PlayerPool.Entry entry;
+    ExoPlayer player;
+    PlayerView playerView;
+
+    Player.Listener listener;
+    AnalyticsListener analyticsListener;
+    ProgressTicker progressTicker;
+    PlaylistPreloader preloader;
+    PlaybackMetrics metrics;
+    RecoveryEngine recovery;
+    LiveController live;
+    SeekEngine seekEngine;
+    StartupTrace startupTrace;
+    Runnable statsRunnable;
+    Player.Listener restoreListener;
+
+    TrackCatalog trackCatalog = TrackCatalog.EMPTY;
+
+    boolean isFullscreen = false;
+    boolean backgroundPlayback = false;
+    // Video disabled while the app is in the background
+    boolean audioOnly = false;
+    // Paused by the app going to the background while it was playing
+    boolean resumeOnForeground = false;
+    float timeUpdateRateHz = ProgressTicker.DEFAULT_RATE_HZ;
+    JSONObject recoveryOptions;
+    // Set while the player is stopped or released to free memory
+    ResumeSnapshot snapshot;
+    // Multi-view tile priority, null for players that are not tiles
+    String viewPriority;
+    ViewScheduler.Assignment viewAssignment;
+    // What a still tile does once it decodes again: whether it played before the demotion,
+    // or the last play/pause JS sent while it was a still
+    boolean playWhenPromoted;
+
+    PlayerSession(int id, String divId, BufferProfile bufferProfile, RenderMode renderMode) {
+        this.id = id;
+        this.divId = divId;
+        this.bufferProfile = bufferProfile;
+        this.renderMode = renderMode;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.plugin;
+
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlayerMessage;
+
+/**
+ * Warms the head of the upcoming playlist item while the current one plays.
+ *
+ * A {@link PlayerMessage} is scheduled {@code windowMs} before the end of the current
+ * item; when playback reaches it the first {@code preloadBytes} of the next item are
+ * written into the {@link MediaCache}, so the transition reads them from disk. For HLS and
+ * DASH this warms the manifest. ExoPlayer itself starts buffering the next item once the
+ * current one is fully loaded. Must be used on the player's application thread.
+ */
+class PlaylistPreloader {
+
+    static final long DEFAULT_WINDOW_MS = 10_000;
+    static final long DEFAULT_PRELOAD_BYTES = 2L * 1024 * 1024;
+
+    private final ExoPlayer player;
+    private final MediaCache cache;
+
+    private long windowMs = DEFAULT_WINDOW_MS;
+    private long preloadBytes = DEFAULT_PRELOAD_BYTES;
+
+    @Nullable
+    private PlayerMessage pendingMessage;
+    private int scheduledIndex = C.INDEX_UNSET;
+    private int scheduledNextIndex = C.INDEX_UNSET;
+    private long scheduledDurationMs = C.TIME_UNSET;
+
+    PlaylistPreloader(ExoPlayer player, MediaCache cache) {
+        this.player = player;
+        this.cache = cache;
+    }
+
+    /**
+     * Sets how long before the end of the current item the next one is warmed, and how
+     * many bytes of it. A window of 0 disables pre-buffering.
+     */
+    void setWindow(long windowMs, long preloadBytes) {
+        this.windowMs = windowMs;
+        this.preloadBytes = preloadBytes;
+        cancel();
+        update();
+    }
+
+    /**
+     * Reschedules the preload message after the playlist, current item or its duration
+     * changed. Cheap to call when nothing changed.
+     */
+    void update() {
+        int index = player.getCurrentMediaItemIndex();
+        int nextIndex = player.getNextMediaItemIndex();
+        long durationMs = player.getDuration();
+        if (index == scheduledIndex && nextIndex == scheduledNextIndex && durationMs == scheduledDurationMs) {
+            return;
+        }
+        cancel();
+        scheduledIndex = index;
+        scheduledNextIndex = nextIndex;
+        scheduledDurationMs = durationMs;
+        if (windowMs <= 0 || nextIndex == C.INDEX_UNSET || durationMs == C.TIME_UNSET) {
+            return;
+        }
+        pendingMessage = player.createMessage((messageType, payload) -> preloadNext())
+                .setLooper(Looper.getMainLooper())
+                .setPosition(index, Math.max(0, durationMs - windowMs))
+                .setDeleteAfterDelivery(true)
+                .send();
+    }
+
+    void release() {
+        cancel();
+    }
+
+    private void preloadNext() {
+        int nextIndex = player.getNextMediaItemIndex();
+        if (nextIndex == C.INDEX_UNSET) {
+            return;
+        }
+        MediaItem next = player.getMediaItemAt(nextIndex);
+        if (next.localConfiguration == null) {
+            return;
+        }
+        cache.prefetch(next.localConfiguration.uri.toString(), preloadBytes, error -> {
+            // Best effort; the player loads the item normally if warming failed
+        });
+    }
+
+    private void cancel() {
+        if (pendingMessage != null) {
+            pendingMessage.cancel();
+            pendingMessage = null;
+        }
+        scheduledIndex = C.INDEX_UNSET;
+        scheduledNextIndex = C.INDEX_UNSET;
+        scheduledDurationMs = C.TIME_UNSET;
+    }
+}
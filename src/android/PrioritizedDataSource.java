@@ -0,0 +1,124 @@
+package com.example.plugin;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * HTTP data source that waits for a {@link RequestScheduler} slot before it opens.
+ *
+ * The priority class is fixed by the factory, or taken from an Integer
+ * {@link DataSpec#customData}, or else guessed from the request: playlists and MPDs are
+ * manifests, and short ranges at the start of a resource or paths naming an init segment
+ * are init segments. The class also goes out as a Priority header.
+ */
+final class PrioritizedDataSource implements DataSource {
+
+    static final int CLASSIFY = -1;
+
+    // Init segments are a few hundred bytes to a few KiB; media segments are far larger
+    private static final long INIT_MAX_BYTES = 64 * 1024;
+
+    static final class Factory implements DataSource.Factory {
+        private final DataSource.Factory upstreamFactory;
+        private final RequestScheduler scheduler;
+        private final int priority;
+
+        Factory(DataSource.Factory upstreamFactory, RequestScheduler scheduler, int priority) {
+            this.upstreamFactory = upstreamFactory;
+            this.scheduler = scheduler;
+            this.priority = priority;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new PrioritizedDataSource(upstreamFactory.createDataSource(), scheduler, priority);
+        }
+    }
+
+    private final DataSource upstream;
+    private final RequestScheduler scheduler;
+    private final int priority;
+    @Nullable
+    private RequestScheduler.Lease lease;
+
+    private PrioritizedDataSource(DataSource upstream, RequestScheduler scheduler, int priority) {
+        this.upstream = upstream;
+        this.scheduler = scheduler;
+        this.priority = priority;
+    }
+
+    static int classify(DataSpec dataSpec) {
+        if (dataSpec.customData instanceof Integer) {
+            return (Integer) dataSpec.customData;
+        }
+        String path = dataSpec.uri.getPath() != null ? dataSpec.uri.getPath().toLowerCase(Locale.US) : "";
+        if (path.endsWith(".m3u8") || path.endsWith(".m3u") || path.endsWith(".mpd") || path.endsWith("/manifest")) {
+            return RequestScheduler.MANIFEST;
+        }
+        if (path.contains("init")
+                || (dataSpec.position == 0 && dataSpec.length != C.LENGTH_UNSET && dataSpec.length <= INIT_MAX_BYTES)) {
+            return RequestScheduler.INIT;
+        }
+        return RequestScheduler.MEDIA;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        int priority = this.priority != CLASSIFY ? this.priority : classify(dataSpec);
+        try {
+            // Loader cancels a load by interrupting its thread
+            lease = scheduler.acquire(priority);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        return upstream.open(dataSpec.withAdditionalHeaders(
+                Collections.singletonMap(MediaHttp.PRIORITY_HEADER, RequestScheduler.headerFor(priority))));
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return upstream.read(buffer, offset, length);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            upstream.close();
+        } finally {
+            if (lease != null) {
+                scheduler.release(lease);
+                lease = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.plugin;
+
+import android.os.Handler;
+import android.view.Choreographer;
+
+/**
+ * Drives the timeUpdate event for one player.
+ *
+ * The ticker only runs between {@link #start()} and {@link #stop()}, which the plugin ties
+ * to {@code Player.Listener#onIsPlayingChanged}, so nothing is scheduled while playback
+ * is paused, buffering, ended or failed. High rates are aligned to the display frame
+ * through {@link Choreographer}; low rates use plain delayed messages. Must be used on the
+ * UI thread.
+ */
+class ProgressTicker {
+
+    static final float MIN_RATE_HZ = 0.2f;
+    static final float MAX_RATE_HZ = 4f;
+    static final float DEFAULT_RATE_HZ = 1f;
+
+    // Intervals at or below this are aligned to vsync
+    private static final long FRAME_ALIGNED_INTERVAL_MS = 500;
+
+    private final Handler handler;
+    private final Runnable onTick;
+    private final Runnable tickRunnable = this::tick;
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> tick();
+
+    private long intervalMs = Math.round(1000 / DEFAULT_RATE_HZ);
+    private boolean running = false;
+
+    ProgressTicker(Handler handler, Runnable onTick) {
+        this.handler = handler;
+        this.onTick = onTick;
+    }
+
+    /**
+     * Sets the tick rate in Hz, clamped to [{@link #MIN_RATE_HZ}, {@link #MAX_RATE_HZ}].
+     */
+    void setRate(float rateHz) {
+        float clamped = Math.max(MIN_RATE_HZ, Math.min(MAX_RATE_HZ, rateHz));
+        intervalMs = Math.round(1000 / clamped);
+        if (running) {
+            cancel();
+            schedule();
+        }
+    }
+
+    void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        onTick.run();
+        schedule();
+    }
+
+    void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        cancel();
+        // Report where playback actually stopped
+        onTick.run();
+    }
+
+    void release() {
+        running = false;
+        cancel();
+    }
+
+    private void tick() {
+        if (!running) {
+            return;
+        }
+        onTick.run();
+        schedule();
+    }
+
+    private void schedule() {
+        if (intervalMs <= FRAME_ALIGNED_INTERVAL_MS) {
+            Choreographer.getInstance().postFrameCallbackDelayed(frameCallback, intervalMs);
+        } else {
+            handler.postDelayed(tickRunnable, intervalMs);
+        }
+    }
+
+    private void cancel() {
+        handler.removeCallbacks(tickRunnable);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+}
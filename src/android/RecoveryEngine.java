@@ -0,0 +1,231 @@
+package com.example.plugin;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Recovers one player from fatal playback errors instead of leaving it failed.
+ *
+ * Errors are classified from their {@link PlaybackException} code. Network, decoder and
+ * behind-live-window errors are retried: the player is prepared again after an
+ * exponential backoff, from where it stopped or, for live streams, from the live edge.
+ * Each session has a retry budget; it is refilled once playback has been stable for
+ * {@link #STABLE_PLAYBACK_MS} after a recovery. Every error is reported with a structured
+ * payload, and every attempt as a recovery event. Must be used on the player's
+ * application thread.
+ */
+final class RecoveryEngine implements Player.Listener {
+
+    interface Listener {
+        void onRecoveryEvent(String type, JSONObject data);
+    }
+
+    static final String CATEGORY_NETWORK = "network";
+    static final String CATEGORY_DECODER = "decoder";
+    static final String CATEGORY_SOURCE = "source";
+    static final String CATEGORY_BEHIND_LIVE_WINDOW = "behindLiveWindow";
+    static final String CATEGORY_DRM = "drm";
+    static final String CATEGORY_OTHER = "other";
+
+    static final int DEFAULT_MAX_RETRIES = 5;
+
+    // Ready this long after a recovery refills the retry budget
+    private static final long STABLE_PLAYBACK_MS = 30_000;
+
+    private final ExoPlayer player;
+    private final Handler handler;
+    private final Listener listener;
+    private final Runnable retryRunnable = this::retry;
+    private final Runnable stableRunnable = this::onStable;
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long baseDelayMs = BackoffLoadErrorPolicy.BASE_DELAY_MS;
+    private long maxDelayMs = BackoffLoadErrorPolicy.MAX_DELAY_MS;
+
+    private int attempts;
+    private int totalRecoveries;
+    private boolean recovering;
+    @Nullable
+    private PlaybackException pendingError;
+    private long retryStartedAtMs;
+
+    RecoveryEngine(ExoPlayer player, Handler handler, Listener listener) {
+        this.player = player;
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /**
+     * options: {maxRetries, baseDelayMs, maxDelayMs}; missing fields keep their value.
+     */
+    void configure(JSONObject options) {
+        maxRetries = Math.max(0, options.optInt("maxRetries", maxRetries));
+        baseDelayMs = Math.max(1, options.optLong("baseDelayMs", baseDelayMs));
+        maxDelayMs = Math.max(baseDelayMs, options.optLong("maxDelayMs", maxDelayMs));
+    }
+
+    void release() {
+        handler.removeCallbacks(retryRunnable);
+        handler.removeCallbacks(stableRunnable);
+    }
+
+    @Override
+    public void onPlayerError(PlaybackException error) {
+        handler.removeCallbacks(stableRunnable);
+        String category = categoryOf(error);
+        boolean retryable = isRetryable(error, category);
+        boolean willRetry = retryable && attempts < maxRetries;
+        reportError(error, category, willRetry);
+        if (!willRetry) {
+            if (recovering) {
+                recovering = false;
+                reportRecovery("failed", error, category, 0);
+            }
+            return;
+        }
+        attempts++;
+        recovering = true;
+        pendingError = error;
+        long delayMs = BackoffLoadErrorPolicy.backoffDelayMs(attempts, baseDelayMs, maxDelayMs);
+        reportRecovery("retrying", error, category, delayMs);
+        handler.postDelayed(retryRunnable, delayMs);
+    }
+
+    @Override
+    public void onPlaybackStateChanged(int playbackState) {
+        if (playbackState != Player.STATE_READY || !recovering) {
+            return;
+        }
+        recovering = false;
+        totalRecoveries++;
+        PlaybackException error = pendingError;
+        pendingError = null;
+        if (error != null) {
+            reportRecovery("recovered", error, categoryOf(error), 0);
+        }
+        handler.postDelayed(stableRunnable, STABLE_PLAYBACK_MS);
+    }
+
+    private void retry() {
+        if (player.getPlaybackState() != Player.STATE_IDLE) {
+            // Already prepared again from elsewhere, e.g. when the network came back
+            return;
+        }
+        retryStartedAtMs = SystemClock.elapsedRealtime();
+        PlaybackException error = pendingError;
+        if ((error != null && error.errorCode == PlaybackException.ERROR_CODE_BEHIND_LIVE_WINDOW)
+                || player.isCurrentMediaItemLive()) {
+            // A live stream resumes at the live edge; the old position may have expired
+            player.seekToDefaultPosition();
+        }
+        // Otherwise the player still holds the failed position and resumes from it
+        player.prepare();
+    }
+
+    private void onStable() {
+        attempts = 0;
+    }
+
+    static String categoryOf(PlaybackException error) {
+        int code = error.errorCode;
+        if (code == PlaybackException.ERROR_CODE_BEHIND_LIVE_WINDOW) {
+            return CATEGORY_BEHIND_LIVE_WINDOW;
+        }
+        switch (code) {
+            case PlaybackException.ERROR_CODE_IO_UNSPECIFIED:
+            case PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_FAILED:
+            case PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_TIMEOUT:
+            case PlaybackException.ERROR_CODE_IO_BAD_HTTP_STATUS:
+            case PlaybackException.ERROR_CODE_TIMEOUT:
+                return CATEGORY_NETWORK;
+            default:
+                break;
+        }
+        if (code >= 2000 && code < 4000) {
+            // Remaining IO errors (missing file, bad content type, ...) and parsing errors
+            return CATEGORY_SOURCE;
+        }
+        if (code >= 4000 && code < 6000) {
+            // Decoding and audio sink errors
+            return CATEGORY_DECODER;
+        }
+        if (code >= 6000 && code < 7000) {
+            return CATEGORY_DRM;
+        }
+        return CATEGORY_OTHER;
+    }
+
+    private static boolean isRetryable(PlaybackException error, String category) {
+        if (CATEGORY_BEHIND_LIVE_WINDOW.equals(category) || CATEGORY_DECODER.equals(category)) {
+            return true;
+        }
+        if (!CATEGORY_NETWORK.equals(category)) {
+            return false;
+        }
+        int httpStatus = httpStatusOf(error);
+        // Client errors other than timeouts and throttling will not go away by retrying
+        return httpStatus < 400 || httpStatus >= 500 || httpStatus == 408 || httpStatus == 429;
+    }
+
+    private static int httpStatusOf(PlaybackException error) {
+        Throwable cause = error.getCause();
+        if (cause instanceof HttpDataSource.InvalidResponseCodeException) {
+            return ((HttpDataSource.InvalidResponseCodeException) cause).responseCode;
+        }
+        return -1;
+    }
+
+    private JSONObject errorJson(PlaybackException error, String category) throws JSONException {
+        JSONObject errorObj = new JSONObject();
+        errorObj.put("code", error.errorCode);
+        errorObj.put("codeName", error.getErrorCodeName());
+        errorObj.put("category", category);
+        errorObj.put("message", error.getMessage());
+        int httpStatus = httpStatusOf(error);
+        if (httpStatus >= 0) {
+            errorObj.put("httpStatus", httpStatus);
+        }
+        return errorObj;
+    }
+
+    private void reportError(PlaybackException error, String category, boolean willRetry) {
+        try {
+            JSONObject errorObj = errorJson(error, category);
+            errorObj.put("willRetry", willRetry);
+            // Kept for listeners written against the old payload
+            errorObj.put("error", error.getMessage());
+            listener.onRecoveryEvent("error", errorObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void reportRecovery(String phase, PlaybackException error, String category, long delayMs) {
+        try {
+            JSONObject recoveryObj = new JSONObject();
+            recoveryObj.put("phase", phase);
+            recoveryObj.put("attempt", attempts);
+            recoveryObj.put("maxRetries", maxRetries);
+            if ("retrying".equals(phase)) {
+                recoveryObj.put("delayMs", delayMs);
+            } else if ("recovered".equals(phase)) {
+                recoveryObj.put("recoveryMs", SystemClock.elapsedRealtime() - retryStartedAtMs);
+                recoveryObj.put("totalRecoveries", totalRecoveries);
+            }
+            recoveryObj.put("error", errorJson(error, category));
+            listener.onRecoveryEvent("recovery", recoveryObj);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+}
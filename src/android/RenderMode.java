@@ -0,0 +1,59 @@
+package com.example.plugin;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.SurfaceView;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.ui.PlayerView;
+
+/**
+ * Kind of surface a player renders video into.
+ *
+ * A {@link SurfaceView} is composited by the system outside the app's window, which costs
+ * less power and is the only path that supports secure (DRM protected) output. A
+ * TextureView is drawn as part of the view hierarchy, so it can be animated, transformed
+ * and blended like any other view. The surface type is fixed when the PlayerView is
+ * inflated, so pooled players are matched by mode (see {@link PlayerPool}).
+ */
+enum RenderMode {
+
+    SURFACE("surface"),
+    // SurfaceView marked secure: excluded from screenshots and required by some DRM setups
+    SECURE_SURFACE("secureSurface"),
+    TEXTURE("texture");
+
+    // PlayerView only reads surface_type from XML, so the texture variant is inflated
+    private static final String TEXTURE_LAYOUT = "nativeplayer_texture_view";
+
+    final String name;
+
+    RenderMode(String name) {
+        this.name = name;
+    }
+
+    static RenderMode fromOption(@Nullable String option) {
+        for (RenderMode mode : values()) {
+            if (mode.name.equals(option)) {
+                return mode;
+            }
+        }
+        return SURFACE;
+    }
+
+    PlayerView createView(Context context) {
+        if (this == TEXTURE) {
+            int layout = context.getResources().getIdentifier(TEXTURE_LAYOUT, "layout", context.getPackageName());
+            return (PlayerView) LayoutInflater.from(context).inflate(layout, null);
+        }
+        PlayerView playerView = new PlayerView(context);
+        View surfaceView = playerView.getVideoSurfaceView();
+        if (this == SECURE_SURFACE && surfaceView instanceof SurfaceView) {
+            // Must be set before the view is attached to a window
+            ((SurfaceView) surfaceView).setSecure(true);
+        }
+        return playerView;
+    }
+}
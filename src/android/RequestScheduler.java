@@ -0,0 +1,183 @@
+package com.example.plugin;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Admits media HTTP requests by priority class.
+ *
+ * Segment and prefetch transfers share {@code maxActive} slots; a couple more are kept
+ * for init segments, and manifests are never held back, so a playlist refresh never
+ * queues behind segment downloads. Among waiting requests the higher class goes first,
+ * and prefetches only get half the slots.
+ *
+ * A slot is held from open to close of the data source, but for at most
+ * {@code maxHoldMs}. A progressive file or a download keeps its source open for the whole
+ * load, including while the player waits with a full buffer; past the hold it no longer
+ * counts, so it cannot keep other players' segments out indefinitely. Waiting is bounded
+ * by the hold as well. Thread-safe.
+ */
+final class RequestScheduler {
+
+    static final int MANIFEST = 0;
+    static final int INIT = 1;
+    static final int MEDIA = 2;
+    static final int PREFETCH = 3;
+
+    static final int DEFAULT_MAX_ACTIVE = 8;
+    // Longer than a segment transfer normally takes
+    static final long DEFAULT_MAX_HOLD_MS = 5_000;
+
+    private static final int INIT_RESERVED = 2;
+
+    /**
+     * One admitted request, counted until it is released or its hold runs out.
+     */
+    static final class Lease {
+        final long acquiredAtNs = System.nanoTime();
+        boolean counted = true;
+    }
+
+    private final int[] waiting = new int[4];
+    private final long maxHoldNs;
+    // Oldest first, so expired leases are at the head
+    private final ArrayDeque<Lease> held = new ArrayDeque<>();
+    private int maxActive;
+
+    RequestScheduler(int maxActive) {
+        this(maxActive, DEFAULT_MAX_HOLD_MS);
+    }
+
+    RequestScheduler(int maxActive, long maxHoldMs) {
+        this.maxActive = Math.max(1, maxActive);
+        this.maxHoldNs = maxHoldMs * 1_000_000L;
+    }
+
+    synchronized void setMaxActive(int maxActive) {
+        this.maxActive = Math.max(1, maxActive);
+        notifyAll();
+    }
+
+    Lease acquire(int priority) throws InterruptedException {
+        synchronized (this) {
+            waiting[priority]++;
+            try {
+                while (!admits(priority)) {
+                    // Woken by a release, or when the oldest lease runs out
+                    wait(untilNextExpiryMs());
+                }
+            } finally {
+                waiting[priority]--;
+                // Lower classes waiting behind this one may go now
+                notifyAll();
+            }
+            return hold();
+        }
+    }
+
+    @Nullable
+    synchronized Lease tryAcquire(int priority) {
+        return admits(priority) ? hold() : null;
+    }
+
+    synchronized void release(Lease lease) {
+        if (lease.counted) {
+            lease.counted = false;
+            held.remove(lease);
+        }
+        notifyAll();
+    }
+
+    synchronized int activeCount() {
+        expireLeases();
+        return held.size();
+    }
+
+    private Lease hold() {
+        Lease lease = new Lease();
+        held.addLast(lease);
+        return lease;
+    }
+
+    private void expireLeases() {
+        long nowNs = System.nanoTime();
+        while (!held.isEmpty() && nowNs - held.peekFirst().acquiredAtNs >= maxHoldNs) {
+            held.pollFirst().counted = false;
+        }
+    }
+
+    /**
+     * Milliseconds until the oldest lease runs out, or 0 to wait for a release.
+     */
+    private long untilNextExpiryMs() {
+        Lease oldest = held.peekFirst();
+        if (oldest == null) {
+            return 0;
+        }
+        long remainingNs = oldest.acquiredAtNs + maxHoldNs - System.nanoTime();
+        return Math.max(1, (remainingNs + 999_999) / 1_000_000);
+    }
+
+    private boolean admits(int priority) {
+        if (priority == MANIFEST) {
+            return true;
+        }
+        expireLeases();
+        int active = held.size();
+        for (int higher = INIT; higher < priority; higher++) {
+            if (waiting[higher] > 0) {
+                return false;
+            }
+        }
+        switch (priority) {
+            case INIT:
+                return active < maxActive + INIT_RESERVED;
+            case MEDIA:
+                return active < maxActive;
+            default:
+                return active < Math.max(1, maxActive / 2);
+        }
+    }
+
+    static String nameOf(int priority) {
+        switch (priority) {
+            case MANIFEST:
+                return "manifest";
+            case INIT:
+                return "init";
+            case MEDIA:
+                return "media";
+            default:
+                return "prefetch";
+        }
+    }
+
+    /**
+     * Urgency of the class as an RFC 9218 Priority header, which HTTP/2 servers and CDNs
+     * may use to order responses on a shared connection.
+     */
+    static String headerFor(int priority) {
+        switch (priority) {
+            case MANIFEST:
+                return "u=1";
+            case INIT:
+                return "u=2";
+            case MEDIA:
+                return "u=3";
+            default:
+                return "u=5";
+        }
+    }
+
+    static int fromHeader(String header) {
+        if (header != null) {
+            for (int priority = MANIFEST; priority <= PREFETCH; priority++) {
+                if (headerFor(priority).equals(header)) {
+                    return priority;
+                }
+            }
+        }
+        return MEDIA;
+    }
+}
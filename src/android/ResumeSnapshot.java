@@ -0,0 +1,94 @@
+package com.example.plugin;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What is needed to bring a player back after it was stopped or released to free memory.
+ *
+ * The media items are kept as they are, so the restored player asks for the same URLs
+ * and hits the media cache where it can. Track selection parameters carry the user's
+ * overrides, which match the restored tracks again because track groups compare by
+ * their formats; the bandwidth estimate is kept for the report, the shared meter already
+ * seeds the restored player with it.
+ */
+final class ResumeSnapshot {
+
+    final List<MediaItem> mediaItems;
+    final int mediaItemIndex;
+    // C.TIME_UNSET for live items, which resume at the live edge
+    final long positionMs;
+    final boolean playWhenReady;
+    final float volume;
+    final PlaybackParameters playbackParameters;
+    final TrackSelectionParameters trackSelectionParameters;
+    final List<String> selectedTrackIds;
+    final long bitrateEstimate;
+    final long capturedAtMs = SystemClock.elapsedRealtime();
+
+    private ResumeSnapshot(List<MediaItem> mediaItems, int mediaItemIndex, long positionMs, boolean playWhenReady,
+                           float volume, PlaybackParameters playbackParameters,
+                           TrackSelectionParameters trackSelectionParameters, List<String> selectedTrackIds,
+                           long bitrateEstimate) {
+        this.mediaItems = mediaItems;
+        this.mediaItemIndex = mediaItemIndex;
+        this.positionMs = positionMs;
+        this.playWhenReady = playWhenReady;
+        this.volume = volume;
+        this.playbackParameters = playbackParameters;
+        this.trackSelectionParameters = trackSelectionParameters;
+        this.selectedTrackIds = selectedTrackIds;
+        this.bitrateEstimate = bitrateEstimate;
+    }
+
+    static ResumeSnapshot capture(ExoPlayer player, TrackCatalog trackCatalog, long bitrateEstimate) {
+        int count = player.getMediaItemCount();
+        List<MediaItem> mediaItems = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mediaItems.add(player.getMediaItemAt(i));
+        }
+        List<String> selectedTrackIds = new ArrayList<>(3);
+        for (int type : new int[] {C.TRACK_TYPE_VIDEO, C.TRACK_TYPE_AUDIO, C.TRACK_TYPE_TEXT}) {
+            TrackCatalog.Track track = trackCatalog.selected(type);
+            if (track != null) {
+                selectedTrackIds.add(track.id);
+            }
+        }
+        return new ResumeSnapshot(
+                mediaItems,
+                player.getCurrentMediaItemIndex(),
+                player.isCurrentMediaItemLive() ? C.TIME_UNSET : player.getCurrentPosition(),
+                player.getPlayWhenReady(),
+                player.getVolume(),
+                player.getPlaybackParameters(),
+                player.getTrackSelectionParameters(),
+                selectedTrackIds,
+                bitrateEstimate);
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject snapshotObj = new JSONObject();
+        if (mediaItemIndex < mediaItems.size()) {
+            MediaItem mediaItem = mediaItems.get(mediaItemIndex);
+            snapshotObj.put("url", mediaItem.localConfiguration != null
+                    ? mediaItem.localConfiguration.uri.toString() : mediaItem.mediaId);
+        }
+        snapshotObj.put("index", mediaItemIndex);
+        snapshotObj.put("position", positionMs != C.TIME_UNSET ? positionMs / 1000.0 : JSONObject.NULL);
+        snapshotObj.put("tracks", new JSONArray(selectedTrackIds));
+        snapshotObj.put("bitrateEstimate", bitrateEstimate);
+        return snapshotObj;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.plugin;
+
+import android.content.Context;
+import android.net.NetworkCapabilities;
+import android.net.wifi.WifiInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.telephony.TelephonyManager;
+import android.text.TextUtils;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+/**
+ * Bandwidth meter shared by all players that starts each network from its last measured
+ * estimate.
+ *
+ * Measurement is delegated to a {@link DefaultBandwidthMeter}. Until the delegate has
+ * produced a sample on the current network, {@link #getBitrateEstimate()} returns the
+ * estimate stored in {@link BandwidthStore} for it, so the first segments are picked
+ * for the network the user is actually on. Every live sample updates the store.
+ */
+class SeededBandwidthMeter implements BandwidthMeter {
+
+    // Value of WifiInfo.getSSID() when the app may not see the SSID
+    private static final String UNKNOWN_SSID = "<unknown ssid>";
+
+    private final Context context;
+    private final DefaultBandwidthMeter delegate;
+    private final BandwidthStore store;
+
+    private volatile String networkKey = "other";
+    private volatile long seedEstimate = C.LENGTH_UNSET;
+    private volatile boolean sampledOnNetwork = false;
+
+    SeededBandwidthMeter(Context context, BandwidthStore store) {
+        this.context = context;
+        this.store = store;
+        this.delegate = new DefaultBandwidthMeter.Builder(context).build();
+        delegate.addEventListener(new Handler(Looper.getMainLooper()), (elapsedMs, bytesTransferred, bitrateEstimate) -> {
+            sampledOnNetwork = true;
+            store.record(networkKey, bitrateEstimate);
+        });
+    }
+
+    /**
+     * Switches to the network described by {@code capabilities}; called from the plugin's
+     * network callback.
+     */
+    void onNetworkChanged(NetworkCapabilities capabilities) {
+        String key = networkKeyFor(capabilities);
+        if (key.equals(networkKey)) {
+            return;
+        }
+        networkKey = key;
+        seedEstimate = store.get(key);
+        sampledOnNetwork = false;
+    }
+
+    String getNetworkKey() {
+        return networkKey;
+    }
+
+    @Override
+    public long getBitrateEstimate() {
+        long seed = seedEstimate;
+        if (!sampledOnNetwork && seed != C.LENGTH_UNSET) {
+            return seed;
+        }
+        return delegate.getBitrateEstimate();
+    }
+
+    @Nullable
+    @Override
+    public TransferListener getTransferListener() {
+        return delegate.getTransferListener();
+    }
+
+    @Override
+    public void addEventListener(Handler eventHandler, EventListener eventListener) {
+        delegate.addEventListener(eventHandler, eventListener);
+    }
+
+    @Override
+    public void removeEventListener(EventListener eventListener) {
+        delegate.removeEventListener(eventListener);
+    }
+
+    private String networkKeyFor(NetworkCapabilities capabilities) {
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            String ssid = null;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                    && capabilities.getTransportInfo() instanceof WifiInfo) {
+                ssid = ((WifiInfo) capabilities.getTransportInfo()).getSSID();
+            }
+            // Without location permission the SSID is redacted
+            if (TextUtils.isEmpty(ssid) || UNKNOWN_SSID.equals(ssid)) {
+                return "wifi";
+            }
+            return "wifi:" + ssid;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+            String operator = telephonyManager != null ? telephonyManager.getNetworkOperator() : null;
+            return TextUtils.isEmpty(operator) ? "cellular" : "cellular:" + operator;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            return "ethernet";
+        }
+        return "other";
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.plugin;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SeekParameters;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Seeks of one player, coalesced so a burst costs one seek at a time.
+ *
+ * A seek is in flight from the moment it is handed to the player until the first frame
+ * at the new position is rendered, or the player is ready for players without video.
+ * Seeks requested in the meantime only replace the pending target, which is executed
+ * once the current one lands; the targets in between are never loaded or decoded.
+ *
+ * While scrubbing, seeks snap to the closest keyframe, which needs no decoding past it.
+ * Ending the scrub executes one seek in the configured mode to the last target. Seeks
+ * not made through the engine, such as live edge jumps, are reported as they happen.
+ *
+ * A seek that lands where the player already is, typically a scrub target snapped to the
+ * keyframe the player sits on, does not reset the renderers and renders no new first
+ * frame; it completes once the player is ready. A timeout completes any seek whose first
+ * frame never arrives, so a lost completion cannot hold back the pending target.
+ *
+ * The plugin's own keyframe seeks, made to get a picture back quickly, go through the
+ * engine too so they are neither reported as user seeks nor interleaved with one.
+ * Must be used on the player's application thread.
+ */
+final class SeekEngine implements Player.Listener {
+
+    interface Listener {
+        void onSeekStarted(long positionMs, boolean scrubbing);
+
+        /**
+         * @param latencyMs from the seek to its first frame, or {@link C#TIME_UNSET} for seeks
+         *                  made outside the engine
+         * @param coalesced number of requests dropped in favor of this one
+         */
+        void onSeekCompleted(long positionMs, long latencyMs, int coalesced, boolean scrubbing);
+    }
+
+    static final String MODE_EXACT = "exact";
+    static final String MODE_CLOSEST_SYNC = "closestSync";
+    static final String MODE_PREVIOUS_SYNC = "previousSync";
+    static final String MODE_NEXT_SYNC = "nextSync";
+
+    // Seeks to unbuffered positions can wait this long for their segments
+    static final long SEEK_TIMEOUT_MS = 10_000;
+    // Once ready, a reset renderer shows its first frame right away
+    static final long FIRST_FRAME_TIMEOUT_MS = 500;
+
+    private final Handler handler;
+    private final Listener listener;
+    private final Runnable timeoutRunnable = this::onTimeout;
+    @Nullable
+    private ExoPlayer player;
+
+    private SeekParameters seekParameters = SeekParameters.EXACT;
+    private boolean scrubbing;
+    private long lastTargetMs = C.TIME_UNSET;
+
+    private boolean inFlight;
+    private long inFlightTargetMs;
+    // Where the player was when the seek was issued, and where the seek landed
+    private long inFlightFromMs;
+    private long inFlightLandedMs;
+    private long issuedAtMs;
+    private int inFlightCoalesced;
+    private boolean inFlightScrubbing;
+    // Made by the plugin rather than requested by JS, so neither reported nor counted
+    private boolean inFlightInternal;
+    private long pendingTargetMs = C.TIME_UNSET;
+    private int pendingCoalesced;
+    // Discontinuities of our own seeks that the player has not reported yet
+    private int expectedDiscontinuities;
+
+    private int seekCount;
+    private int coalescedCount;
+    private long lastLatencyMs = C.TIME_UNSET;
+    private long maxLatencyMs;
+    private long totalLatencyMs;
+
+    SeekEngine(Handler handler, Listener listener) {
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /**
+     * Resolves a seek mode name, or returns null if it is unknown.
+     */
+    @Nullable
+    static SeekParameters parametersFor(String mode) {
+        switch (mode) {
+            case MODE_EXACT:
+                return SeekParameters.EXACT;
+            case MODE_CLOSEST_SYNC:
+                return SeekParameters.CLOSEST_SYNC;
+            case MODE_PREVIOUS_SYNC:
+                return SeekParameters.PREVIOUS_SYNC;
+            case MODE_NEXT_SYNC:
+                return SeekParameters.NEXT_SYNC;
+            default:
+                return null;
+        }
+    }
+
+    void attach(ExoPlayer player) {
+        this.player = player;
+        player.addListener(this);
+    }
+
+    void release() {
+        if (player != null) {
+            player.removeListener(this);
+            player = null;
+        }
+        handler.removeCallbacks(timeoutRunnable);
+        inFlight = false;
+        pendingTargetMs = C.TIME_UNSET;
+        expectedDiscontinuities = 0;
+    }
+
+    void setSeekParameters(SeekParameters seekParameters) {
+        this.seekParameters = seekParameters;
+    }
+
+    void seekTo(long positionMs) {
+        if (player == null) {
+            return;
+        }
+        lastTargetMs = positionMs;
+        if (inFlight) {
+            if (pendingTargetMs != C.TIME_UNSET) {
+                pendingCoalesced++;
+                coalescedCount++;
+            }
+            pendingTargetMs = positionMs;
+            return;
+        }
+        issue(positionMs, 0);
+    }
+
+    void setScrubbing(boolean scrubbing) {
+        if (this.scrubbing == scrubbing) {
+            return;
+        }
+        this.scrubbing = scrubbing;
+        if (scrubbing) {
+            lastTargetMs = C.TIME_UNSET;
+        } else if (lastTargetMs != C.TIME_UNSET && pendingTargetMs != lastTargetMs) {
+            // The keyframe the scrub landed on is replaced by the target itself; a pending
+            // target is already issued in the configured mode
+            seekTo(lastTargetMs);
+        }
+    }
+
+    /**
+     * Seeks to the keyframe closest to the current position, for example to get a picture
+     * quickly after the video track was enabled again. Seeks already in flight or pending
+     * render a picture of their own and take precedence.
+     */
+    void seekToClosestKeyframe() {
+        if (player == null || inFlight) {
+            return;
+        }
+        issue(player.getCurrentPosition(), 0, SeekParameters.CLOSEST_SYNC, true);
+    }
+
+    private void issue(long positionMs, int coalesced) {
+        issue(positionMs, coalesced, scrubbing ? SeekParameters.CLOSEST_SYNC : seekParameters, false);
+    }
+
+    private void issue(long positionMs, int coalesced, SeekParameters parameters, boolean internal) {
+        ExoPlayer player = this.player;
+        int state = player.getPlaybackState();
+        long fromMs = player.getCurrentPosition();
+        player.setSeekParameters(parameters);
+        expectedDiscontinuities++;
+        player.seekTo(positionMs);
+        if (internal) {
+            // Applied after the seek, commands reach the playback thread in order; seeks the
+            // player makes on its own keep the configured mode
+            player.setSeekParameters(seekParameters);
+        }
+        if (state == Player.STATE_IDLE) {
+            // Nothing is loaded or rendered until the player is prepared
+            return;
+        }
+        inFlight = true;
+        inFlightTargetMs = positionMs;
+        inFlightFromMs = fromMs;
+        inFlightLandedMs = positionMs;
+        inFlightCoalesced = coalesced;
+        inFlightScrubbing = scrubbing;
+        inFlightInternal = internal;
+        issuedAtMs = SystemClock.elapsedRealtime();
+        handler.removeCallbacks(timeoutRunnable);
+        handler.postDelayed(timeoutRunnable, SEEK_TIMEOUT_MS);
+        if (!internal) {
+            listener.onSeekStarted(positionMs, scrubbing);
+        }
+    }
+
+    private void onTimeout() {
+        if (inFlight) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        long latencyMs = SystemClock.elapsedRealtime() - issuedAtMs;
+        handler.removeCallbacks(timeoutRunnable);
+        inFlight = false;
+        if (!inFlightInternal) {
+            seekCount++;
+            lastLatencyMs = latencyMs;
+            maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+            totalLatencyMs += latencyMs;
+            listener.onSeekCompleted(inFlightTargetMs, latencyMs, inFlightCoalesced, inFlightScrubbing);
+        }
+        issuePending();
+    }
+
+    private void issuePending() {
+        if (pendingTargetMs == C.TIME_UNSET || player == null) {
+            return;
+        }
+        long positionMs = pendingTargetMs;
+        int coalesced = pendingCoalesced;
+        pendingTargetMs = C.TIME_UNSET;
+        pendingCoalesced = 0;
+        issue(positionMs, coalesced);
+    }
+
+    private boolean rendersVideo() {
+        return player != null && player.getCurrentTracks().isTypeSelected(C.TRACK_TYPE_VIDEO);
+    }
+
+    @Override
+    public void onPositionDiscontinuity(Player.PositionInfo oldPosition, Player.PositionInfo newPosition, int reason) {
+        if (reason == Player.DISCONTINUITY_REASON_SEEK_ADJUSTMENT && inFlight) {
+            // The seek parameters moved the target, for example to a keyframe
+            inFlightLandedMs = newPosition.positionMs;
+            return;
+        }
+        if (reason != Player.DISCONTINUITY_REASON_SEEK) {
+            return;
+        }
+        if (expectedDiscontinuities > 0) {
+            expectedDiscontinuities--;
+            return;
+        }
+        listener.onSeekStarted(newPosition.positionMs, false);
+        listener.onSeekCompleted(newPosition.positionMs, C.TIME_UNSET, 0, false);
+    }
+
+    @Override
+    public void onRenderedFirstFrame() {
+        if (inFlight && rendersVideo()) {
+            complete();
+        }
+    }
+
+    @Override
+    public void onPlaybackStateChanged(int playbackState) {
+        if (!inFlight) {
+            return;
+        }
+        if (playbackState == Player.STATE_READY) {
+            if (!rendersVideo() || inFlightLandedMs == inFlightFromMs) {
+                // Without a renderer reset no first frame follows
+                complete();
+            } else {
+                handler.removeCallbacks(timeoutRunnable);
+                handler.postDelayed(timeoutRunnable, FIRST_FRAME_TIMEOUT_MS);
+            }
+        } else if (playbackState == Player.STATE_ENDED) {
+            // Sought past the end, no frame follows
+            handler.removeCallbacks(timeoutRunnable);
+            inFlight = false;
+            issuePending();
+        } else if (playbackState == Player.STATE_IDLE) {
+            handler.removeCallbacks(timeoutRunnable);
+            inFlight = false;
+            pendingTargetMs = C.TIME_UNSET;
+            pendingCoalesced = 0;
+        }
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject seeks = new JSONObject();
+        seeks.put("count", seekCount);
+        seeks.put("coalesced", coalescedCount);
+        seeks.put("lastLatencyMs", lastLatencyMs != C.TIME_UNSET ? lastLatencyMs : JSONObject.NULL);
+        seeks.put("maxLatencyMs", maxLatencyMs);
+        seeks.put("meanLatencyMs", seekCount > 0 ? totalLatencyMs / seekCount : JSONObject.NULL);
+        return seeks;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.plugin;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Milestones of one player's startup, from the createPlayer call in JS to its first
+ * rendered frame.
+ *
+ * Each milestone is stamped once, with {@link SystemClock#elapsedRealtimeNanos()}, into a
+ * fixed array; milestones a stream never reaches, such as the manifest of a progressive
+ * file, stay unset. On Android 10 and later every interval between two milestones is also
+ * an async trace section named after the milestone it starts at, so the critical path
+ * shows up in systrace and Perfetto next to ExoPlayer's own sections. Must be used on the
+ * player's application thread.
+ */
+final class StartupTrace implements AnalyticsListener {
+
+    interface Listener {
+        void onStartupCompleted(StartupTrace trace);
+    }
+
+    static final int JS_CALL = 0;
+    static final int BRIDGE = 1;
+    static final int UI_THREAD = 2;
+    static final int PLAYER_ACQUIRED = 3;
+    static final int VIEW_ATTACHED = 4;
+    static final int PREPARED = 5;
+    static final int MANIFEST_LOADED = 6;
+    static final int FIRST_SEGMENT_LOADED = 7;
+    static final int DECODER_INITIALIZED = 8;
+    static final int FIRST_FRAME = 9;
+
+    private static final String[] PHASE_NAMES = {
+            "jsCall", "bridge", "uiThread", "playerAcquired", "viewAttached", "prepared",
+            "manifestLoaded", "firstSegmentLoaded", "decoderInitialized", "firstFrame"
+    };
+    private static final String SECTION_PREFIX = "NativePlayer.startup.";
+
+    final int playerId;
+    final String url;
+    private final Listener listener;
+    private final long[] stampsNs = new long[PHASE_NAMES.length];
+    // Whether the player came warm from the pool rather than being built for this session
+    private boolean warmPlayer;
+    private int openSection = C.INDEX_UNSET;
+    private boolean finished;
+
+    StartupTrace(int playerId, String url, Listener listener) {
+        this.playerId = playerId;
+        this.url = url;
+        this.listener = listener;
+        for (int i = 0; i < stampsNs.length; i++) {
+            stampsNs[i] = C.TIME_UNSET;
+        }
+    }
+
+    static String phaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    void setWarmPlayer(boolean warmPlayer) {
+        this.warmPlayer = warmPlayer;
+    }
+
+    void mark(int phase) {
+        mark(phase, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * Stamps {@code phase} unless it already has a stamp. Stamps taken before the trace
+     * existed, for the bridge hop, are passed in.
+     */
+    void mark(int phase, long atNs) {
+        if (finished || stampsNs[phase] != C.TIME_UNSET) {
+            return;
+        }
+        stampsNs[phase] = atNs;
+        // Earlier milestones happened on other threads before the trace existed, and loads
+        // can complete after a later milestone; sections only move forward
+        if (phase >= UI_THREAD && phase > openSection) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                if (openSection != C.INDEX_UNSET) {
+                    Trace.endAsyncSection(SECTION_PREFIX + PHASE_NAMES[openSection], playerId);
+                }
+                if (phase != FIRST_FRAME) {
+                    Trace.beginAsyncSection(SECTION_PREFIX + PHASE_NAMES[phase], playerId);
+                }
+            }
+            openSection = phase;
+        }
+        if (phase == FIRST_FRAME) {
+            finish();
+            listener.onStartupCompleted(this);
+        }
+    }
+
+    /**
+     * Stops recording, for example when the player is destroyed before its first frame.
+     */
+    void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                && openSection != C.INDEX_UNSET && openSection != FIRST_FRAME) {
+            Trace.endAsyncSection(SECTION_PREFIX + PHASE_NAMES[openSection], playerId);
+        }
+    }
+
+    /**
+     * The earliest milestone, in {@link SystemClock#elapsedRealtime()} milliseconds: the
+     * JS call when its time is known, else when the call reached the bridge or the UI
+     * thread.
+     */
+    long startedAtMs() {
+        for (long stampNs : stampsNs) {
+            if (stampNs != C.TIME_UNSET) {
+                return stampNs / 1_000_000L;
+            }
+        }
+        return SystemClock.elapsedRealtime();
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    boolean isComplete() {
+        return stampsNs[FIRST_FRAME] != C.TIME_UNSET;
+    }
+
+    @Override
+    public void onLoadCompleted(EventTime eventTime, LoadEventInfo loadEventInfo, MediaLoadData mediaLoadData) {
+        if (mediaLoadData.dataType == C.DATA_TYPE_MANIFEST) {
+            mark(MANIFEST_LOADED, nanosOf(eventTime));
+        } else if (mediaLoadData.dataType == C.DATA_TYPE_MEDIA) {
+            mark(FIRST_SEGMENT_LOADED, nanosOf(eventTime));
+        }
+    }
+
+    @Override
+    public void onVideoDecoderInitialized(EventTime eventTime, String decoderName,
+                                          long initializedTimestampMs, long initializationDurationMs) {
+        mark(DECODER_INITIALIZED, nanosOf(eventTime));
+    }
+
+    @Override
+    public void onAudioDecoderInitialized(EventTime eventTime, String decoderName,
+                                          long initializedTimestampMs, long initializationDurationMs) {
+        mark(DECODER_INITIALIZED, nanosOf(eventTime));
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime, Object output, long renderTimeMs) {
+        mark(FIRST_FRAME, nanosOf(eventTime));
+    }
+
+    private static long nanosOf(EventTime eventTime) {
+        // Taken on the playback thread when it happened, rather than when it is delivered
+        return eventTime.realtimeMs * 1_000_000L;
+    }
+
+    /**
+     * {playerId, url, complete, warmPlayer, totalMs, phases: [{phase, atMs, durationMs}]}.
+     * {@code atMs} counts from the earliest milestone, {@code durationMs} from the previous
+     * one that was reached.
+     */
+    JSONObject toJson() throws JSONException {
+        long originNs = C.TIME_UNSET;
+        long lastNs = C.TIME_UNSET;
+        JSONArray phases = new JSONArray();
+        for (int i = 0; i < stampsNs.length; i++) {
+            long stampNs = stampsNs[i];
+            if (stampNs == C.TIME_UNSET) {
+                continue;
+            }
+            if (originNs == C.TIME_UNSET) {
+                originNs = stampNs;
+                lastNs = stampNs;
+            }
+            JSONObject phaseObj = new JSONObject();
+            phaseObj.put("phase", PHASE_NAMES[i]);
+            phaseObj.put("atMs", millis(stampNs - originNs));
+            // Analytics stamps have millisecond precision and can precede a finer one
+            phaseObj.put("durationMs", millis(Math.max(0, stampNs - lastNs)));
+            phases.put(phaseObj);
+            lastNs = Math.max(lastNs, stampNs);
+        }
+        JSONObject traceObj = new JSONObject();
+        traceObj.put("playerId", playerId);
+        traceObj.put("url", url);
+        traceObj.put("complete", isComplete());
+        traceObj.put("warmPlayer", warmPlayer);
+        traceObj.put("totalMs", isComplete() ? millis(stampsNs[FIRST_FRAME] - originNs) : JSONObject.NULL);
+        traceObj.put("phases", phases);
+        return traceObj;
+    }
+
+    private static double millis(long nanos) {
+        // Microsecond resolution is plenty and keeps the JSON short
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.plugin;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link StartupTrace} of the last {@link #CAPACITY} player sessions in a ring,
+ * and carries the bridge stamps of createPlayer calls over to the UI thread.
+ *
+ * A createPlayer call is stamped when it reaches the plugin on the bridge thread. The JS
+ * call itself is dated with the wall clock, the only clock both sides share, and moved
+ * onto the monotonic clock by the time the bridge hop took. Thread-safe.
+ */
+final class StartupTracer {
+
+    static final int CAPACITY = 32;
+
+    private static final class BridgeStamps {
+        final long jsCallNs;
+        final long receivedNs;
+
+        BridgeStamps(long jsCallNs, long receivedNs) {
+            this.jsCallNs = jsCallNs;
+            this.receivedNs = receivedNs;
+        }
+    }
+
+    // Keyed by the callback id of the createPlayer call
+    private final Map<String, BridgeStamps> pending = new ConcurrentHashMap<>();
+    private final StartupTrace[] ring = new StartupTrace[CAPACITY];
+    private int next;
+    private int size;
+
+    /**
+     * @param jsCalledAtMs {@code Date.now()} when JS called createPlayer, or 0 if unknown
+     */
+    void onCommandReceived(String callbackId, long jsCalledAtMs) {
+        long receivedNs = SystemClock.elapsedRealtimeNanos();
+        long jsCallNs = C.TIME_UNSET;
+        if (jsCalledAtMs > 0) {
+            long bridgeMs = Math.max(0, System.currentTimeMillis() - jsCalledAtMs);
+            jsCallNs = receivedNs - bridgeMs * 1_000_000L;
+        }
+        pending.put(callbackId, new BridgeStamps(jsCallNs, receivedNs));
+    }
+
+    /**
+     * Starts the trace of a session on the UI thread, with the stamps of its createPlayer
+     * call if it came through the bridge rather than a batch.
+     */
+    StartupTrace begin(int playerId, String url, String callbackId, StartupTrace.Listener listener) {
+        StartupTrace trace = new StartupTrace(playerId, url, listener);
+        BridgeStamps stamps = pending.remove(callbackId);
+        if (stamps != null) {
+            if (stamps.jsCallNs != C.TIME_UNSET) {
+                trace.mark(StartupTrace.JS_CALL, stamps.jsCallNs);
+            }
+            trace.mark(StartupTrace.BRIDGE, stamps.receivedNs);
+        }
+        trace.mark(StartupTrace.UI_THREAD);
+        return trace;
+    }
+
+    /**
+     * Drops the stamps of a createPlayer call that did not get as far as
+     * {@link #begin}, for example because its options were rejected.
+     */
+    void discard(String callbackId) {
+        pending.remove(callbackId);
+    }
+
+    /**
+     * Adds a finished trace, evicting the oldest once the ring is full.
+     */
+    synchronized void record(StartupTrace trace) {
+        ring[next] = trace;
+        next = (next + 1) % CAPACITY;
+        size = Math.min(size + 1, CAPACITY);
+    }
+
+    /**
+     * The last {@code count} traces, newest first.
+     */
+    synchronized JSONArray recent(int count) throws JSONException {
+        JSONArray traces = new JSONArray();
+        int n = Math.min(Math.max(0, count), size);
+        for (int i = 1; i <= n; i++) {
+            traces.put(ring[(next - i + CAPACITY) % CAPACITY].toJson());
+        }
+        return traces;
+    }
+
+    /**
+     * Writes the last {@code count} traces to {@code file} as {dumpedAt, traces}. Blocks on
+     * file I/O.
+     */
+    JSONObject dump(File file, int count) throws IOException, JSONException {
+        JSONArray traces = recent(count);
+        JSONObject dumpObj = new JSONObject();
+        dumpObj.put("dumpedAt", System.currentTimeMillis());
+        dumpObj.put("traces", traces);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(dumpObj.toString(2));
+        }
+        JSONObject resultObj = new JSONObject();
+        resultObj.put("path", file.getAbsolutePath());
+        resultObj.put("count", traces.length());
+        return resultObj;
+    }
+
+    static File defaultDumpFile(@Nullable File externalFilesDir, File filesDir) {
+        // Reachable with adb pull without root when external storage is mounted
+        return new File(externalFilesDir != null ? externalFilesDir : filesDir, "nativeplayer-startup.json");
+    }
+}
@@ -0,0 +1,471 @@
+package com.example.plugin;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaDataSource;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Process;
+import android.util.Base64;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Extracts scaled JPEG frames for seek previews.
+ *
+ * Frames are decoded with {@link MediaMetadataRetriever} on a small pool of background
+ * threads, never on the main looper, and kept as encoded bytes in an LRU cache bounded in
+ * bytes. Remote URLs are read through the same data source chain as playback, so frames
+ * come from the media or download cache when the bytes are there. Explicit requests are
+ * served before prefetches, and a newer prefetch supersedes the ones still queued.
+ * Progressive files only; HLS/DASH manifests cannot be opened by the retriever.
+ */
+final class ThumbnailEngine {
+
+    interface Callback {
+        void onThumbnail(@Nullable byte[] jpeg, @Nullable Exception error);
+    }
+
+    /**
+     * Decodes one frame of a URL, on a worker thread.
+     */
+    interface FrameSource {
+        @Nullable
+        Bitmap frameAt(String url, long timeUs, int width, int height) throws IOException;
+    }
+
+    static final int DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+    static final int DEFAULT_QUALITY = 70;
+
+    private static final int THREADS = 2;
+    // Each open retriever holds a demuxer and often a decoder
+    private static final int MAX_OPEN_SOURCES = 2;
+    // Requests within the same bucket share one cached frame
+    private static final long BUCKET_MS = 100;
+    private static final String FILE_DIRECTORY = "nativeplayer-thumbnails";
+
+    private final Context context;
+    private final ThreadPoolExecutor executor;
+    private final LruCache<String, byte[]> cache;
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+    private final Map<String, Source> sources = new LinkedHashMap<String, Source>(MAX_OPEN_SOURCES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Source> eldest) {
+            if (size() > MAX_OPEN_SOURCES) {
+                eldest.getValue().evict();
+                return true;
+            }
+            return false;
+        }
+    };
+    private final AtomicInteger prefetchGeneration = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile DataSource.Factory dataSourceFactory;
+    private volatile FrameSource frameSource = (url, timeUs, width, height) -> sourceFor(url).frameAt(timeUs, width, height);
+
+    ThumbnailEngine(Context context, DataSource.Factory dataSourceFactory) {
+        this.context = context.getApplicationContext();
+        this.dataSourceFactory = dataSourceFactory;
+        this.cache = new LruCache<String, byte[]>(DEFAULT_MAX_BYTES) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+        };
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "NativePlayerThumbnails-" + threadCount.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Used for URLs opened from now on, for example after the media cache was toggled.
+     */
+    void setDataSourceFactory(DataSource.Factory dataSourceFactory) {
+        this.dataSourceFactory = dataSourceFactory;
+    }
+
+    /**
+     * Replaces the retriever, which has no codecs to decode with under Robolectric.
+     */
+    @VisibleForTesting
+    void setFrameSource(FrameSource frameSource) {
+        this.frameSource = frameSource;
+    }
+
+    void setMaxBytes(int maxBytes) {
+        cache.resize(Math.max(1, maxBytes));
+    }
+
+    /**
+     * Drops the cached frames; decoding continues normally.
+     */
+    void trimMemory() {
+        cache.evictAll();
+    }
+
+    /**
+     * Delivers the frame nearest to {@code timeMs}, fitted into {@code width} x
+     * {@code height} (either may be 0 to keep the source size), on a background thread.
+     */
+    void get(String url, long timeMs, int width, int height, int quality, Callback callback) {
+        submit(url, timeMs, width, height, quality, /* generation= */ -1, callback);
+    }
+
+    /**
+     * Warms the cache with {@code count} frames on each side of {@code centerMs}, nearest
+     * first. Frames of an earlier prefetch that have not started yet are dropped.
+     */
+    void prefetch(String url, long centerMs, long intervalMs, int count, int width, int height, int quality) {
+        int generation = prefetchGeneration.incrementAndGet();
+        submit(url, centerMs, width, height, quality, generation, null);
+        for (int i = 1; i <= count; i++) {
+            submit(url, centerMs + i * intervalMs, width, height, quality, generation, null);
+            if (centerMs - i * intervalMs >= 0) {
+                submit(url, centerMs - i * intervalMs, width, height, quality, generation, null);
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads and closes every open file. Pending callbacks are dropped.
+     */
+    void release() {
+        executor.shutdownNow();
+        synchronized (inFlight) {
+            inFlight.clear();
+        }
+        cache.evictAll();
+        synchronized (sources) {
+            for (Source source : sources.values()) {
+                source.evict();
+            }
+            sources.clear();
+        }
+    }
+
+    static String toDataUrl(byte[] jpeg) {
+        return "data:image/jpeg;base64," + Base64.encodeToString(jpeg, Base64.NO_WRAP);
+    }
+
+    /**
+     * Writes {@code jpeg} into the app's cache directory and returns the file. Identical
+     * frames map to the same file.
+     */
+    File toFile(byte[] jpeg) throws IOException {
+        File directory = new File(context.getCacheDir(), FILE_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File file = new File(directory, Integer.toHexString(Arrays.hashCode(jpeg)) + "-" + jpeg.length + ".jpg");
+        if (!file.exists()) {
+            try (FileOutputStream output = new FileOutputStream(file)) {
+                output.write(jpeg);
+            }
+        }
+        return file;
+    }
+
+    private void submit(String url, long timeMs, int width, int height, int quality, int generation,
+                        @Nullable Callback callback) {
+        long bucketMs = timeMs / BUCKET_MS * BUCKET_MS;
+        String key = url + "@" + bucketMs + "/" + width + "x" + height + "/" + quality;
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            if (callback != null) {
+                callback.onThumbnail(cached, null);
+            }
+            return;
+        }
+        synchronized (inFlight) {
+            List<Callback> waiting = inFlight.get(key);
+            if (waiting != null) {
+                if (callback != null) {
+                    waiting.add(callback);
+                }
+                return;
+            }
+            waiting = new ArrayList<>(1);
+            if (callback != null) {
+                waiting.add(callback);
+            }
+            inFlight.put(key, waiting);
+        }
+        executor.execute(new Task(key, url, bucketMs, width, height, quality, generation));
+    }
+
+    private void complete(String key, @Nullable byte[] jpeg, @Nullable Exception error) {
+        List<Callback> waiting;
+        synchronized (inFlight) {
+            waiting = inFlight.remove(key);
+        }
+        if (waiting == null) {
+            return;
+        }
+        for (Callback callback : waiting) {
+            callback.onThumbnail(jpeg, error);
+        }
+    }
+
+    private Source sourceFor(String url) {
+        synchronized (sources) {
+            Source source = sources.get(url);
+            if (source == null) {
+                source = new Source(url);
+                sources.put(url, source);
+            }
+            return source;
+        }
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+        final String key;
+        final String url;
+        final long timeMs;
+        final int width;
+        final int height;
+        final int quality;
+        final int generation;
+        final long order = sequence.incrementAndGet();
+
+        Task(String key, String url, long timeMs, int width, int height, int quality, int generation) {
+            this.key = key;
+            this.url = url;
+            this.timeMs = timeMs;
+            this.width = width;
+            this.height = height;
+            this.quality = quality;
+            this.generation = generation;
+        }
+
+        @Override
+        public void run() {
+            if (generation >= 0 && generation != prefetchGeneration.get()) {
+                synchronized (inFlight) {
+                    List<Callback> waiting = inFlight.get(key);
+                    if (waiting != null && waiting.isEmpty()) {
+                        // Superseded prefetch nobody asked for in the meantime
+                        inFlight.remove(key);
+                        return;
+                    }
+                }
+            }
+            try {
+                Bitmap frame = frameSource.frameAt(url, timeMs * 1000, width, height);
+                if (frame == null) {
+                    throw new IOException("No frame at " + timeMs + " ms in " + url);
+                }
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                frame.compress(Bitmap.CompressFormat.JPEG, quality, output);
+                frame.recycle();
+                byte[] jpeg = output.toByteArray();
+                cache.put(key, jpeg);
+                complete(key, jpeg, null);
+            } catch (IOException | RuntimeException e) {
+                complete(key, null, e);
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            // Explicit requests (generation -1) first, then newest prefetch, then FIFO
+            if (generation != other.generation) {
+                if (generation < 0 || other.generation < 0) {
+                    return generation < 0 ? -1 : 1;
+                }
+                return Integer.compare(other.generation, generation);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * One opened media file. A retriever is not thread-safe, so frames of the same URL are
+     * decoded one at a time.
+     */
+    private final class Source {
+        final String url;
+        private MediaMetadataRetriever retriever;
+        private boolean evicted;
+
+        Source(String url) {
+            this.url = url;
+        }
+
+        synchronized Bitmap frameAt(long timeUs, int width, int height) throws IOException {
+            if (retriever == null) {
+                retriever = open(url);
+            }
+            try {
+                return decode(retriever, timeUs, width, height);
+            } finally {
+                if (evicted) {
+                    close();
+                }
+            }
+        }
+
+        synchronized void evict() {
+            evicted = true;
+            close();
+        }
+
+        private void close() {
+            if (retriever != null) {
+                release(retriever);
+                retriever = null;
+            }
+        }
+    }
+
+    private MediaMetadataRetriever open(String url) throws IOException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        try {
+            if (scheme == null) {
+                retriever.setDataSource(url);
+            } else if (!"http".equals(scheme) && !"https".equals(scheme)) {
+                retriever.setDataSource(context, uri);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                retriever.setDataSource(new DataSourceMediaDataSource(dataSourceFactory.createDataSource(), uri));
+            } else {
+                retriever.setDataSource(url, new HashMap<>());
+            }
+        } catch (RuntimeException e) {
+            release(retriever);
+            throw new IOException("Cannot open " + url, e);
+        }
+        return retriever;
+    }
+
+    private static void release(MediaMetadataRetriever retriever) {
+        try {
+            retriever.release();
+        } catch (IOException e) {
+            // Declared since API 29, where the retriever became AutoCloseable
+            e.printStackTrace();
+        }
+    }
+
+    @Nullable
+    private static Bitmap decode(MediaMetadataRetriever retriever, long timeUs, int width, int height) {
+        int option = MediaMetadataRetriever.OPTION_CLOSEST_SYNC;
+        if (width <= 0 && height <= 0) {
+            return retriever.getFrameAtTime(timeUs, option);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1 && width > 0 && height > 0) {
+            // Scaled while decoding, so the full size frame is never allocated
+            return retriever.getScaledFrameAtTime(timeUs, option, width, height);
+        }
+        Bitmap frame = retriever.getFrameAtTime(timeUs, option);
+        if (frame == null) {
+            return null;
+        }
+        float scale = Math.min(
+                width > 0 ? (float) width / frame.getWidth() : Float.MAX_VALUE,
+                height > 0 ? (float) height / frame.getHeight() : Float.MAX_VALUE);
+        Bitmap scaled = Bitmap.createScaledBitmap(frame,
+                Math.max(1, Math.round(frame.getWidth() * scale)),
+                Math.max(1, Math.round(frame.getHeight() * scale)),
+                true);
+        if (scaled != frame) {
+            frame.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * Random-access view of an ExoPlayer {@link DataSource} for the retriever. Sequential
+     * reads continue the open request; a jump reopens it at the new position.
+     */
+    @RequiresApi(Build.VERSION_CODES.M)
+    @VisibleForTesting
+    static final class DataSourceMediaDataSource extends MediaDataSource {
+
+        private final DataSource dataSource;
+        private final Uri uri;
+        private boolean opened;
+        private long readPosition;
+        private long size = C.LENGTH_UNSET;
+
+        DataSourceMediaDataSource(DataSource dataSource, Uri uri) {
+            this.dataSource = dataSource;
+            this.uri = uri;
+        }
+
+        @Override
+        public synchronized int readAt(long position, byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (size != C.LENGTH_UNSET && position >= size) {
+                return -1;
+            }
+            if (!opened || position != readPosition) {
+                openAt(position);
+            }
+            int read = dataSource.read(buffer, offset, length);
+            if (read == C.RESULT_END_OF_INPUT) {
+                return -1;
+            }
+            readPosition += read;
+            return read;
+        }
+
+        @Override
+        public synchronized long getSize() throws IOException {
+            if (size == C.LENGTH_UNSET && !opened) {
+                openAt(0);
+            }
+            return size;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (opened) {
+                opened = false;
+                dataSource.close();
+            }
+        }
+
+        private void openAt(long position) throws IOException {
+            close();
+            long length = dataSource.open(new DataSpec.Builder().setUri(uri).setPosition(position).build());
+            opened = true;
+            readPosition = position;
+            if (size == C.LENGTH_UNSET && length != C.LENGTH_UNSET) {
+                size = position + length;
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.plugin;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Tracks;
+import com.google.android.exoplayer2.trackselection.TrackSelectionOverride;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
+import com.google.android.exoplayer2.util.Util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexed snapshot of a player's tracks, rebuilt once per {@code onTracksChanged}.
+ *
+ * Tracks get stable ids of the form {@code <type>:<group>.<track>} (for example
+ * {@code v:0.2}). Lookups by id, by video quality ({@code "720p"}) and by language are
+ * hash lookups, so selection calls never walk the track list.
+ */
+final class TrackCatalog {
+
+    static final TrackCatalog EMPTY = new TrackCatalog(Tracks.EMPTY);
+
+    static final class Track {
+        final String id;
+        final int type;
+        final Tracks.Group group;
+        final int index;
+        final Format format;
+        final boolean selected;
+        final boolean supported;
+
+        Track(String id, int type, Tracks.Group group, int index) {
+            this.id = id;
+            this.type = type;
+            this.group = group;
+            this.index = index;
+            this.format = group.getTrackFormat(index);
+            this.selected = group.isTrackSelected(index);
+            this.supported = group.isTrackSupported(index);
+        }
+
+        TrackSelectionOverride toOverride() {
+            return new TrackSelectionOverride(group.getMediaTrackGroup(), index);
+        }
+
+        /**
+         * Pins this track, enabling its track type if it was disabled.
+         */
+        TrackSelectionParameters applyTo(TrackSelectionParameters parameters) {
+            return parameters.buildUpon()
+                    .setTrackTypeDisabled(type, false)
+                    .setOverrideForType(toOverride())
+                    .build();
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject trackObj = new JSONObject();
+            trackObj.put("id", id);
+            trackObj.put("selected", selected);
+            trackObj.put("supported", supported);
+            putIfSet(trackObj, "bitrate", format.bitrate);
+            putIfSet(trackObj, "codecs", format.codecs);
+            putIfSet(trackObj, "mimeType", format.sampleMimeType);
+            putIfSet(trackObj, "language", format.language);
+            putIfSet(trackObj, "label", format.label);
+            if (type == C.TRACK_TYPE_VIDEO) {
+                putIfSet(trackObj, "width", format.width);
+                putIfSet(trackObj, "height", format.height);
+                if (format.frameRate != Format.NO_VALUE) {
+                    trackObj.put("frameRate", format.frameRate);
+                }
+            } else if (type == C.TRACK_TYPE_AUDIO) {
+                putIfSet(trackObj, "channelCount", format.channelCount);
+                putIfSet(trackObj, "sampleRate", format.sampleRate);
+            }
+            return trackObj;
+        }
+
+        private static void putIfSet(JSONObject obj, String key, int value) throws JSONException {
+            if (value != Format.NO_VALUE) {
+                obj.put(key, value);
+            }
+        }
+
+        private static void putIfSet(JSONObject obj, String key, @Nullable String value) throws JSONException {
+            if (value != null) {
+                obj.put(key, value);
+            }
+        }
+    }
+
+    private final List<Track> video = new ArrayList<>();
+    private final List<Track> audio = new ArrayList<>();
+    private final List<Track> text = new ArrayList<>();
+    private final Map<String, Track> byId = new HashMap<>();
+    private final Map<String, Track> videoByQuality = new HashMap<>();
+    private final Map<String, List<Track>> audioByLanguage = new HashMap<>();
+    private final Map<String, List<Track>> textByLanguage = new HashMap<>();
+
+    TrackCatalog(Tracks tracks) {
+        List<Tracks.Group> groups = tracks.getGroups();
+        for (int g = 0; g < groups.size(); g++) {
+            Tracks.Group group = groups.get(g);
+            int type = group.getType();
+            String prefix;
+            List<Track> list;
+            if (type == C.TRACK_TYPE_VIDEO) {
+                prefix = "v:";
+                list = video;
+            } else if (type == C.TRACK_TYPE_AUDIO) {
+                prefix = "a:";
+                list = audio;
+            } else if (type == C.TRACK_TYPE_TEXT) {
+                prefix = "t:";
+                list = text;
+            } else {
+                continue;
+            }
+            for (int i = 0; i < group.length; i++) {
+                Track track = new Track(prefix + g + "." + i, type, group, i);
+                list.add(track);
+                byId.put(track.id, track);
+                index(track);
+            }
+        }
+        Collections.sort(video, (lhs, rhs) -> Integer.compare(rhs.format.bitrate, lhs.format.bitrate));
+    }
+
+    private void index(Track track) {
+        Format format = track.format;
+        if (track.type == C.TRACK_TYPE_VIDEO) {
+            if (format.height == Format.NO_VALUE || !track.supported) {
+                return;
+            }
+            // Several renditions can share a height; keep the highest bitrate one
+            String quality = format.height + "p";
+            Track current = videoByQuality.get(quality);
+            if (current == null || format.bitrate > current.format.bitrate) {
+                videoByQuality.put(quality, track);
+            }
+        } else if (format.language != null) {
+            Map<String, List<Track>> byLanguage = track.type == C.TRACK_TYPE_AUDIO ? audioByLanguage : textByLanguage;
+            String language = Util.normalizeLanguageCode(format.language);
+            List<Track> tracks = byLanguage.get(language);
+            if (tracks == null) {
+                tracks = new ArrayList<>(1);
+                byLanguage.put(language, tracks);
+            }
+            tracks.add(track);
+        }
+    }
+
+    @Nullable
+    Track byId(String id) {
+        return byId.get(id);
+    }
+
+    @Nullable
+    Track videoForQuality(String quality) {
+        return videoByQuality.get(quality);
+    }
+
+    boolean hasTracks(int type) {
+        return !tracksOf(type).isEmpty();
+    }
+
+    boolean hasLanguage(int type, String language) {
+        Map<String, List<Track>> byLanguage = type == C.TRACK_TYPE_AUDIO ? audioByLanguage : textByLanguage;
+        return byLanguage.containsKey(Util.normalizeLanguageCode(language));
+    }
+
+    @Nullable
+    Track selected(int type) {
+        for (Track track : tracksOf(type)) {
+            if (track.selected) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject catalog = new JSONObject();
+        catalog.put("video", toJson(video));
+        catalog.put("audio", toJson(audio));
+        catalog.put("text", toJson(text));
+        JSONArray qualities = new JSONArray();
+        for (Track track : video) {
+            String quality = track.format.height + "p";
+            if (videoByQuality.get(quality) == track) {
+                qualities.put(quality);
+            }
+        }
+        catalog.put("qualities", qualities);
+        return catalog;
+    }
+
+    private List<Track> tracksOf(int type) {
+        return type == C.TRACK_TYPE_VIDEO ? video : type == C.TRACK_TYPE_AUDIO ? audio : text;
+    }
+
+    private static JSONArray toJson(List<Track> tracks) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (Track track : tracks) {
+            array.put(track.toJson());
+        }
+        return array;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.plugin;
+
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+
+/**
+ * Load control of a {@link BufferProfile} whose buffer can be cut down under memory
+ * pressure.
+ *
+ * While trimmed, loading stops once {@code trimmedBufferMs} are buffered instead of the
+ * profile's maximum, and the allocator is asked to hand back the memory it keeps for
+ * reuse. Media that is already buffered stays until it is played or the player is
+ * stopped. Trimming is set on the UI thread and read on the playback thread.
+ */
+final class TrimmableLoadControl implements LoadControl {
+
+    static final int TRIMMED_BUFFER_MS = 5_000;
+
+    private final LoadControl delegate;
+    private final long trimmedBufferUs;
+    private volatile boolean trimmed;
+
+    TrimmableLoadControl(LoadControl delegate, long trimmedBufferMs) {
+        this.delegate = delegate;
+        this.trimmedBufferUs = trimmedBufferMs * 1000;
+    }
+
+    void setTrimmed(boolean trimmed) {
+        this.trimmed = trimmed;
+        if (trimmed) {
+            delegate.getAllocator().trim();
+        }
+    }
+
+    boolean isTrimmed() {
+        return trimmed;
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long playbackPositionUs, long bufferedDurationUs, float playbackSpeed) {
+        if (trimmed && bufferedDurationUs >= trimmedBufferUs) {
+            return false;
+        }
+        return delegate.shouldContinueLoading(playbackPositionUs, bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed, boolean rebuffering, long targetLiveOffsetUs) {
+        if (trimmed && bufferedDurationUs >= trimmedBufferUs) {
+            // Loading stopped at the trimmed size, which may be below the start threshold
+            return true;
+        }
+        return delegate.shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering, targetLiveOffsetUs);
+    }
+
+    @Override
+    public void onPrepared() {
+        delegate.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups, ExoTrackSelection[] trackSelections) {
+        delegate.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        delegate.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        delegate.onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return delegate.getAllocator();
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return delegate.getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return delegate.retainBackBufferFromKeyframe();
+    }
+}
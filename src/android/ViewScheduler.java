@@ -0,0 +1,136 @@
+package com.example.plugin;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares decoders and bandwidth among the tiles of a multi-view mosaic.
+ *
+ * Tiles are ordered by priority (focused, visible, offscreen), then by creation. Each of
+ * the first {@code decoderSlots} tiles that are on screen decodes and plays; every other
+ * tile is demoted to a still: paused on its last frame with its video track disabled, so
+ * its decoder is released. The bandwidth budget is split among the decoding tiles by
+ * weight, the focused tile counting {@link #FOCUSED_WEIGHT} times a visible one, and
+ * becomes each tile's video bitrate cap. Only the focused tile keeps its audio.
+ *
+ * This class only decides; the plugin applies the assignments to the players.
+ */
+final class ViewScheduler {
+
+    static final String FOCUSED = "focused";
+    static final String VISIBLE = "visible";
+    static final String OFFSCREEN = "offscreen";
+
+    static final int DEFAULT_DECODER_SLOTS = 4;
+    static final int FOCUSED_WEIGHT = 4;
+
+    static final class Assignment {
+        final String priority;
+        final boolean decodes;
+        final boolean audible;
+        // Integer.MAX_VALUE when the budget is unknown
+        final int maxBitrate;
+
+        Assignment(String priority, boolean decodes, boolean audible, int maxBitrate) {
+            this.priority = priority;
+            this.decodes = decodes;
+            this.audible = audible;
+            this.maxBitrate = maxBitrate;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject assignmentObj = new JSONObject();
+            assignmentObj.put("priority", priority);
+            assignmentObj.put("state", decodes ? "playing" : "still");
+            assignmentObj.put("audio", audible);
+            assignmentObj.put("maxBitrate", maxBitrate != Integer.MAX_VALUE ? maxBitrate : JSONObject.NULL);
+            return assignmentObj;
+        }
+    }
+
+    private int decoderSlots = DEFAULT_DECODER_SLOTS;
+    private long budgetBps;
+
+    /**
+     * options: {decoderSlots, bandwidthBps}; a {@code bandwidthBps} of 0 uses the bandwidth
+     * estimate instead.
+     */
+    void configure(JSONObject options) {
+        decoderSlots = Math.max(1, options.optInt("decoderSlots", decoderSlots));
+        budgetBps = Math.max(0, options.optLong("bandwidthBps", budgetBps));
+    }
+
+    int getDecoderSlots() {
+        return decoderSlots;
+    }
+
+    /**
+     * The configured budget, or {@code estimateBps} when none is set.
+     */
+    long budgetFor(long estimateBps) {
+        return budgetBps > 0 ? budgetBps : estimateBps;
+    }
+
+    static boolean isPriority(@Nullable String priority) {
+        return FOCUSED.equals(priority) || VISIBLE.equals(priority) || OFFSCREEN.equals(priority);
+    }
+
+    /**
+     * Assigns every tile, in schedule order.
+     */
+    Map<PlayerSession, Assignment> schedule(Collection<PlayerSession> tiles, long budgetBps) {
+        List<PlayerSession> ordered = new ArrayList<>(tiles);
+        Collections.sort(ordered, (a, b) -> {
+            int byRank = Integer.compare(rankOf(a.viewPriority), rankOf(b.viewPriority));
+            return byRank != 0 ? byRank : Integer.compare(a.id, b.id);
+        });
+
+        boolean[] decodes = new boolean[ordered.size()];
+        int slotsUsed = 0;
+        int totalWeight = 0;
+        for (int i = 0; i < ordered.size(); i++) {
+            String priority = ordered.get(i).viewPriority;
+            if (!OFFSCREEN.equals(priority) && slotsUsed < decoderSlots) {
+                decodes[i] = true;
+                slotsUsed++;
+                totalWeight += weightOf(priority);
+            }
+        }
+
+        Map<PlayerSession, Assignment> assignments = new LinkedHashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            PlayerSession tile = ordered.get(i);
+            int maxBitrate = Integer.MAX_VALUE;
+            if (decodes[i] && budgetBps > 0) {
+                maxBitrate = (int) Math.min(Integer.MAX_VALUE, budgetBps * weightOf(tile.viewPriority) / totalWeight);
+            }
+            assignments.put(tile, new Assignment(tile.viewPriority, decodes[i],
+                    decodes[i] && FOCUSED.equals(tile.viewPriority), maxBitrate));
+        }
+        return assignments;
+    }
+
+    private static int rankOf(String priority) {
+        switch (priority) {
+            case FOCUSED:
+                return 0;
+            case VISIBLE:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    private static int weightOf(String priority) {
+        return FOCUSED.equals(priority) ? FOCUSED_WEIGHT : 1;
+    }
+}
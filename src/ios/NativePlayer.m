@@ -33,8 +33,13 @@
                                                object:nil];
 }
 
-- (void)createPlayer:(CDVInvokedUrlCommand*)command {
+- (void)registerEventListener:(CDVInvokedUrlCommand*)command {
     self.callbackId = command.callbackId;
+}
+
+// iOS hosts a single player; it always reports player id 1 and ignores the id argument
+// that every per-player action receives first.
+- (void)createPlayer:(CDVInvokedUrlCommand*)command {
     NSString* url = [command.arguments objectAtIndex:0];
     self.divId = [command.arguments objectAtIndex:1];
 
@@ -49,9 +54,8 @@
         [self updatePlayerPosition];
         [self setupPictureInPicture];
 
-        CDVPluginResult* pluginResult = [CDVPluginResult resultWithStatus:CDVCommandStatus_OK];
-        [pluginResult setKeepCallbackAsBool:YES];
-        [self.commandDelegate sendPluginResult:pluginResult callbackId:self.callbackId];
+        CDVPluginResult* pluginResult = [CDVPluginResult resultWithStatus:CDVCommandStatus_OK messageAsInt:1];
+        [self.commandDelegate sendPluginResult:pluginResult callbackId:command.callbackId];
     });
 }
 
@@ -148,11 +152,15 @@
 }
 
 - (void)sendEventWithName:(NSString *)name body:(NSDictionary *)body {
+    if (!self.callbackId) {
+        return;
+    }
     if (!body) {
         body = @{};
     }
     NSMutableDictionary *event = [NSMutableDictionary dictionaryWithDictionary:body];
     [event setObject:name forKey:@"type"];
+    [event setObject:@1 forKey:@"playerId"];
 
     CDVPluginResult* pluginResult = [CDVPluginResult resultWithStatus:CDVCommandStatus_OK messageAsDictionary:event];
     [pluginResult setKeepCallbackAsBool:YES];
@@ -213,21 +221,21 @@
 }
 
 - (void)seekTo:(CDVInvokedUrlCommand*)command {
-    NSNumber* position = [command.arguments objectAtIndex:0];
+    NSNumber* position = [command.arguments objectAtIndex:1];
     [self.player seekToTime:CMTimeMakeWithSeconds([position doubleValue], NSEC_PER_SEC)];
     CDVPluginResult* pluginResult = [CDVPluginResult resultWithStatus:CDVCommandStatus_OK];
     [self.commandDelegate sendPluginResult:pluginResult callbackId:command.callbackId];
 }
 
 - (void)setVolume:(CDVInvokedUrlCommand*)command {
-    NSNumber* volume = [command.arguments objectAtIndex:0];
+    NSNumber* volume = [command.arguments objectAtIndex:1];
     self.player.volume = [volume floatValue];
     CDVPluginResult* pluginResult = [CDVPluginResult resultWithStatus:CDVCommandStatus_OK];
     [self.commandDelegate sendPluginResult:pluginResult callbackId:command.callbackId];
 }
 
 - (void)setRate:(CDVInvokedUrlCommand*)command {
-    NSNumber* rate = [command.arguments objectAtIndex:0];
+    NSNumber* rate = [command.arguments objectAtIndex:1];
     self.player.rate = [rate floatValue];
     CDVPluginResult* pluginResult = [CDVPluginResult resultWithStatus:CDVCommandStatus_OK];
     [self.commandDelegate sendPluginResult:pluginResult callbackId:command.callbackId];
@@ -258,7 +266,7 @@
 }
 
 - (void)setPreferredAudioLanguage:(CDVInvokedUrlCommand*)command {
-    NSString* language = [command.arguments objectAtIndex:0];
+    NSString* language = [command.arguments objectAtIndex:1];
     AVMediaSelectionGroup *audioGroup = [self.player.currentItem.asset mediaSelectionGroupForMediaCharacteristic:AVMediaCharacteristicAudible];
     AVMediaSelectionOption *languageOption = [AVMediaSelectionGroup mediaSelectionOptionWithPropertyList:language inMediaSelectionGroup:audioGroup];
     if (languageOption) {
@@ -269,7 +277,7 @@
 }
 
 - (void)setPreferredTextLanguage:(CDVInvokedUrlCommand*)command {
-    NSString* language = [command.arguments objectAtIndex:0];
+    NSString* language = [command.arguments objectAtIndex:1];
     AVMediaSelectionGroup *subtitleGroup = [self.player.currentItem.asset mediaSelectionGroupForMediaCharacteristic:AVMediaCharacteristicLegible];
     AVMediaSelectionOption *languageOption = [AVMediaSelectionGroup mediaSelectionOptionWithPropertyList:language inMediaSelectionGroup:subtitleGroup];
     if (languageOption) {
@@ -280,7 +288,7 @@
 }
 
 - (void)enableSubtitles:(CDVInvokedUrlCommand*)command {
-    BOOL enable = [[command.arguments objectAtIndex:0] boolValue];
+    BOOL enable = [[command.arguments objectAtIndex:1] boolValue];
     AVMediaSelectionGroup *subtitleGroup = [self.player.currentItem.asset mediaSelectionGroupForMediaCharacteristic:AVMediaCharacteristicLegible];
     if (enable) {
         AVMediaSelectionOption *option = subtitleGroup.options.firstObject;
@@ -293,7 +301,7 @@
 }
 
 - (void)setVideoQuality:(CDVInvokedUrlCommand*)command {
-    NSString* quality = [command.arguments objectAtIndex:0];
+    NSString* quality = [command.arguments objectAtIndex:1];
     AVPlayerItem *playerItem = self.player.currentItem;
     NSArray *videoAssetTracks = [playerItem.asset tracksWithMediaType:AVMediaTypeVideo];
     if (videoAssetTracks.count > 0) {
@@ -321,7 +329,7 @@
 }
 
 - (void)setBackgroundPlayback:(CDVInvokedUrlCommand*)command {
-    BOOL enabled = [[command.arguments objectAtIndex:0] boolValue];
+    BOOL enabled = [[command.arguments objectAtIndex:1] boolValue];
     NSError *error = nil;
     if (enabled) {
         [[AVAudioSession sharedInstance] setCategory:AVAudioSessionCategoryPlayback error:&error];
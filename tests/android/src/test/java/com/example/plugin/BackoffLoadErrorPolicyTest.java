@@ -0,0 +1,36 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.C;
+
+import org.junit.Test;
+
+public class BackoffLoadErrorPolicyTest {
+
+    @Test
+    public void delayStaysInTheUpperHalfOfTheCeiling() {
+        for (int attempt = 1; attempt <= 8; attempt++) {
+            long ceiling = Math.min(16_000, 500L << (attempt - 1));
+            for (int i = 0; i < 100; i++) {
+                long delay = BackoffLoadErrorPolicy.backoffDelayMs(attempt, 500, 16_000);
+                assertTrue(delay >= ceiling / 2 && delay <= ceiling);
+            }
+        }
+    }
+
+    @Test
+    public void delayIsCappedForLargeAttempts() {
+        long delay = BackoffLoadErrorPolicy.backoffDelayMs(1000, 500, 16_000);
+
+        assertTrue(delay >= 8_000 && delay <= 16_000);
+    }
+
+    @Test
+    public void retriesForeverWhileOffline() {
+        BackoffLoadErrorPolicy policy = new BackoffLoadErrorPolicy(() -> false);
+
+        assertEquals(Integer.MAX_VALUE, policy.getMinimumLoadableRetryCount(C.DATA_TYPE_MEDIA));
+    }
+}
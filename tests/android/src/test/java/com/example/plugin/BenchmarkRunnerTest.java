@@ -0,0 +1,73 @@
+package com.example.plugin;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.json.JSONArray;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the JMH suite inside the Robolectric runtime; only enabled with -Pjmh.
+ *
+ * Benchmarks run in-process (no forks) so they share the plugin set up here. JMH drives
+ * them from its own threads, while this thread keeps the main looper running, so event
+ * flushes and layout frames posted by the benchmarks are drained as they would be on a
+ * device. The GC profiler reports allocation per operation.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkRunnerTest {
+
+    static NativePlayerHarness harness;
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        String include = System.getProperty("nativeplayer.jmh");
+        Assume.assumeTrue("Enabled with -Pjmh", include != null);
+
+        harness = new NativePlayerHarness();
+        harness.plugin.execute("registerEventListener", new JSONArray(), new DiscardingCallbackContext());
+
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(include)
+                .forks(0)
+                .addProfiler(GCProfiler.class);
+        String results = System.getProperty("nativeplayer.jmh.results");
+        if (results != null) {
+            new File(results).getParentFile().mkdirs();
+            options.resultFormat(ResultFormatType.JSON).result(results);
+        }
+        Options built = options.build();
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread runner = new Thread(() -> {
+            try {
+                new Runner(built).run();
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        }, "jmh-runner");
+        runner.start();
+        while (runner.isAlive()) {
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+            runner.join(1);
+        }
+        harness.destroy();
+        harness = null;
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class CommandQueueTest {
+
+    private final CommandQueue queue = new CommandQueue(Looper.getMainLooper());
+    private final List<String> ran = new ArrayList<>();
+
+    @Test
+    public void runsCommandsInOrderOnTheLooper() {
+        queue.post(() -> ran.add("a"));
+        queue.postAll(Arrays.asList(() -> ran.add("b"), () -> ran.add("c")));
+        queue.post(() -> ran.add("d"));
+        assertTrue(ran.isEmpty());
+
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), ran);
+    }
+
+    @Test
+    public void drainsABurstInOneMessage() {
+        for (int i = 0; i < 10; i++) {
+            queue.post(() -> ran.add("x"));
+        }
+
+        shadowOf(Looper.getMainLooper()).runOneTask();
+
+        assertEquals(10, ran.size());
+    }
+
+    @Test
+    public void commandsPostedWhileDrainingRunInTheSameDrain() {
+        queue.post(() -> {
+            ran.add("a");
+            queue.post(() -> ran.add("b"));
+        });
+
+        shadowOf(Looper.getMainLooper()).runOneTask();
+
+        assertEquals(Arrays.asList("a", "b"), ran);
+    }
+
+    @Test
+    public void clearDropsPendingCommands() {
+        queue.post(() -> ran.add("a"));
+        queue.clear();
+        queue.post(() -> ran.add("b"));
+
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(Arrays.asList("b"), ran);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.plugin;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting from {@code execute} to an action: the table lookup, argument parsing
+ * and the result sent back. Uses actions that run on the bridge thread, so the numbers
+ * do not include the hop to the main looper.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DispatchBenchmark {
+
+    private NativePlayer plugin;
+    private CallbackContext callbackContext;
+    private JSONArray layoutArgs;
+    private JSONArray intervalArgs;
+    private JSONArray noArgs;
+
+    @Setup
+    public void setUp() throws JSONException {
+        plugin = BenchmarkRunnerTest.harness.plugin;
+        callbackContext = new DiscardingCallbackContext();
+        JSONArray rect = new JSONArray().put(1).put(0).put(120).put(360).put(640);
+        layoutArgs = new JSONArray().put(new JSONArray().put(rect));
+        intervalArgs = new JSONArray().put(0);
+        noArgs = new JSONArray();
+    }
+
+    /**
+     * The per-frame layout push from the JS observer.
+     */
+    @Benchmark
+    public boolean updateLayout() {
+        return plugin.execute("updateLayout", layoutArgs, callbackContext);
+    }
+
+    @Benchmark
+    public boolean actionWithResult() {
+        return plugin.execute("setEventBatchInterval", intervalArgs, callbackContext);
+    }
+
+    @Benchmark
+    public boolean unknownAction() {
+        return plugin.execute("noSuchAction", noArgs, callbackContext);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.plugin;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per event of building a payload, queueing it through {@code sendEvent}, and
+ * serializing a flushed batch for the bridge.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventBenchmark {
+
+    private static final int BATCH_SIZE = 32;
+
+    private NativePlayer plugin;
+    private PlayerSession session;
+    private long positionMs;
+
+    @Setup
+    public void setUp() {
+        plugin = BenchmarkRunnerTest.harness.plugin;
+        session = new PlayerSession(1, "player", BufferProfile.DEFAULT, RenderMode.SURFACE);
+    }
+
+    /**
+     * A coalesced event with a payload, as sent by the timeUpdate ticker.
+     */
+    @Benchmark
+    public void timeUpdate() throws JSONException {
+        positionMs += 250;
+        JSONObject progressObj = new JSONObject();
+        progressObj.put("currentTime", positionMs / 1000.0);
+        progressObj.put("duration", 600.0);
+        plugin.sendEvent(session, "timeUpdate", progressObj);
+    }
+
+    /**
+     * A discrete event without payload; every one of them reaches JS.
+     */
+    @Benchmark
+    public void discreteEvent() {
+        plugin.sendEvent(session, "seeked", null);
+    }
+
+    /**
+     * What a flush does with a batch of timeUpdate events.
+     */
+    @Benchmark
+    public PluginResult batchSerialization() throws JSONException {
+        JSONArray batch = new JSONArray();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            JSONObject event = new JSONObject();
+            event.put("currentTime", i / 4.0);
+            event.put("duration", 600.0);
+            event.put("type", "timeUpdate");
+            event.put("playerId", i);
+            batch.put(event);
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, batch);
+        result.setKeepCallback(true);
+        return result;
+    }
+}
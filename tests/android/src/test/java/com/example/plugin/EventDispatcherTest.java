@@ -0,0 +1,94 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class EventDispatcherTest {
+
+    private final EventDispatcher events = new EventDispatcher();
+    private final RecordingCallbackContext callback = new RecordingCallbackContext();
+
+    @Before
+    public void setUp() {
+        events.setCallbackContext(callback);
+        events.setFlushInterval(50);
+    }
+
+    @Test
+    public void wantsNothingWithoutAListener() {
+        EventDispatcher noListener = new EventDispatcher();
+
+        assertFalse(noListener.wants("play"));
+    }
+
+    @Test
+    public void wantsOnlySubscribedTypes() {
+        events.setSubscriptions(Arrays.asList("play", "pause"));
+
+        assertTrue(events.wants("play"));
+        assertFalse(events.wants("timeUpdate"));
+    }
+
+    @Test
+    public void coalescesStateEventsPerScope() throws Exception {
+        events.post("timeUpdate", "1", event("timeUpdate", 1));
+        events.post("play", "1", event("play", 0));
+        events.post("timeUpdate", "2", event("timeUpdate", 5));
+        events.post("timeUpdate", "1", event("timeUpdate", 2));
+
+        flush();
+
+        assertEquals(1, callback.results.size());
+        PluginResult result = callback.last();
+        assertTrue(result.getKeepCallback());
+        JSONArray batch = new JSONArray(result.getMessage());
+        assertEquals(3, batch.length());
+        assertEquals("play", batch.getJSONObject(0).getString("type"));
+        assertEquals(5, batch.getJSONObject(1).getInt("value"));
+        assertEquals(2, batch.getJSONObject(2).getInt("value"));
+    }
+
+    @Test
+    public void keepsEveryDiscreteEvent() throws Exception {
+        events.post("seeking", "1", event("seeking", 1));
+        events.post("seeking", "1", event("seeking", 2));
+
+        flush();
+
+        assertEquals(2, new JSONArray(callback.message()).length());
+    }
+
+    @Test
+    public void clearDropsQueuedEvents() throws Exception {
+        events.post("play", "1", event("play", 0));
+        events.clear();
+
+        flush();
+
+        assertTrue(callback.results.isEmpty());
+    }
+
+    private void flush() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(50));
+    }
+
+    private static JSONObject event(String type, int value) throws Exception {
+        return new JSONObject().put("type", type).put("value", value);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.plugin;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.apache.cordova.CordovaInterfaceImpl;
+
+/**
+ * CordovaInterface backed by a Robolectric activity. Work a plugin hands to the Cordova
+ * thread pool runs inline on the calling thread, so tests stay deterministic.
+ */
+class FakeCordovaInterface extends CordovaInterfaceImpl {
+
+    FakeCordovaInterface(AppCompatActivity activity) {
+        super(activity, MoreExecutors.newDirectExecutorService());
+    }
+}
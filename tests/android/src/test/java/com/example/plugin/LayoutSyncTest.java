@@ -0,0 +1,84 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.google.android.exoplayer2.ui.PlayerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+// A density of 3, as on most current phones
+@Config(qualifiers = "xxhdpi")
+public class LayoutSyncTest {
+
+    private final Map<Integer, PlayerSession> sessions = new HashMap<>();
+    private final List<PlayerSession> resized = new ArrayList<>();
+    private PlayerSession session;
+    private LayoutSync layoutSync;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.getApplication();
+        FrameLayout parent = new FrameLayout(context);
+        View webView = new View(context);
+        parent.addView(webView);
+        // The WebView sits below a 40 px toolbar
+        webView.layout(0, 40, 1080, 1920);
+        session = new PlayerSession(1, "player", BufferProfile.DEFAULT, RenderMode.SURFACE);
+        session.playerView = new PlayerView(context);
+        parent.addView(session.playerView, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+        sessions.put(session.id, session);
+        layoutSync = new LayoutSync(webView, sessions, resized::add);
+    }
+
+    @Test
+    public void cssPixelsAreScaledToTheDisplayAndOffsetByTheWebView() {
+        assertEquals(3.0f, session.playerView.getResources().getDisplayMetrics().density, 0.0f);
+
+        layoutSync.post(session.id, 10, 20, 320, 180);
+        frame();
+
+        assertEquals(30, session.playerView.getTranslationX(), 0.0f);
+        assertEquals(40 + 60, session.playerView.getTranslationY(), 0.0f);
+        assertEquals(960, session.playerView.getLayoutParams().width);
+        assertEquals(540, session.playerView.getLayoutParams().height);
+        assertEquals(1, resized.size());
+    }
+
+    @Test
+    public void burstIsAppliedOnceWithTheLatestRect() {
+        layoutSync.post(session.id, 0, 0, 100, 100);
+        layoutSync.post(session.id, 0, 50, 100, 100);
+        frame();
+        layoutSync.post(session.id, 0, 100, 100, 100);
+        frame();
+
+        assertEquals(40 + 300, session.playerView.getTranslationY(), 0.0f);
+        // Scrolling only moves the view
+        assertEquals(1, resized.size());
+        assertTrue(resized.contains(session));
+    }
+
+    private static void frame() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+    }
+}
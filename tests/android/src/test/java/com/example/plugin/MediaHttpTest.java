@@ -0,0 +1,116 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+@RunWith(RobolectricTestRunner.class)
+public class MediaHttpTest {
+
+    private final MockWebServer server = new MockWebServer();
+    private final List<HttpMetrics.Sample> samples = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void http1ConnectionIsReusedAcrossRequests() throws Exception {
+        MediaHttp http = start(Protocol.HTTP_1_1);
+
+        load(http, "/live/index.m3u8");
+        load(http, "/live/segment1.ts");
+
+        RecordedRequest manifest = server.takeRequest();
+        RecordedRequest segment = server.takeRequest();
+        assertEquals("u=1", manifest.getHeader(MediaHttp.PRIORITY_HEADER));
+        assertEquals("u=3", segment.getHeader(MediaHttp.PRIORITY_HEADER));
+        // Second request on the first connection
+        assertEquals(1, segment.getSequenceNumber());
+        awaitSamples(2);
+        assertFalse(samples.get(0).reused);
+        assertTrue(samples.get(1).reused);
+        assertEquals(RequestScheduler.MEDIA, samples.get(1).priority);
+    }
+
+    @Test
+    public void http2IsReportedPerRequestAndInTheTotals() throws Exception {
+        MediaHttp http = start(Protocol.H2_PRIOR_KNOWLEDGE);
+
+        load(http, "/vod/init.mp4");
+
+        awaitSamples(1);
+        HttpMetrics.Sample sample = samples.get(0);
+        assertEquals(RequestScheduler.INIT, sample.priority);
+        assertEquals("h2_prior_knowledge", sample.protocol);
+        assertEquals(4, sample.bytes);
+        JSONObject init = http.getStats().getJSONObject("requests").getJSONObject("init");
+        assertEquals(1, init.getInt("requests"));
+        assertEquals(1, init.getInt("http2"));
+    }
+
+    @Test
+    public void forcedClassOverridesTheGuess() throws Exception {
+        MediaHttp http = start(Protocol.HTTP_1_1);
+
+        DataSource dataSource = http.getDataSourceFactory(RequestScheduler.PREFETCH).createDataSource();
+        dataSource.open(new DataSpec(Uri.parse(server.url("/next/index.m3u8").toString())));
+        dataSource.close();
+
+        assertEquals("u=5", server.takeRequest().getHeader(MediaHttp.PRIORITY_HEADER));
+    }
+
+    private MediaHttp start(Protocol protocol) throws Exception {
+        server.setProtocols(Collections.singletonList(protocol));
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody("data"));
+        }
+        server.start();
+        MediaHttp http = new MediaHttp(new OkHttpClient.Builder()
+                .protocols(Collections.singletonList(protocol)));
+        http.setListener(samples::add);
+        return http;
+    }
+
+    private void load(MediaHttp http, String path) throws Exception {
+        DataSource dataSource = http.getDataSourceFactory().createDataSource();
+        try {
+            dataSource.open(new DataSpec(Uri.parse(server.url(path).toString())));
+            DataSourceUtil.readToEnd(dataSource);
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    private void awaitSamples(int count) throws InterruptedException {
+        // Calls end on OkHttp's threads once the body is closed
+        long deadline = System.currentTimeMillis() + 2000;
+        while (samples.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, samples.size());
+    }
+}
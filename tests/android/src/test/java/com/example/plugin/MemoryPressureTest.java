@@ -0,0 +1,26 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+public class MemoryPressureTest {
+
+    @Test
+    public void stagesGrowWithTheTrimLevel() {
+        assertEquals(MemoryPressure.NONE, MemoryPressure.stageFor(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(MemoryPressure.SHRINK_BUFFERS, MemoryPressure.stageFor(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(MemoryPressure.SHRINK_BUFFERS, MemoryPressure.stageFor(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(MemoryPressure.RELEASE_DECODERS, MemoryPressure.stageFor(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+        assertEquals(MemoryPressure.RELEASE_PLAYERS, MemoryPressure.stageFor(ComponentCallbacks2.TRIM_MEMORY_MODERATE));
+        assertEquals(MemoryPressure.RELEASE_PLAYERS, MemoryPressure.stageFor(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    public void criticalWhileRunningReleasesDecoders() {
+        // Numerically below UI_HIDDEN, but the foreground process is about to be killed
+        assertEquals(MemoryPressure.RELEASE_DECODERS, MemoryPressure.stageFor(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL));
+    }
+}
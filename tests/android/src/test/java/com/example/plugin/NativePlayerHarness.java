@@ -0,0 +1,100 @@
+package com.example.plugin;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import org.apache.cordova.CordovaPreferences;
+import org.apache.cordova.CordovaWebView;
+import org.apache.cordova.CordovaWebViewEngine;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * A NativePlayer plugin initialized the way Cordova does it, inside a Robolectric
+ * activity. The WebView is a mock whose view sits in a FrameLayout, where players are
+ * attached; JavaScript evaluated by the plugin is ignored.
+ */
+class NativePlayerHarness {
+
+    final ActivityController<AppCompatActivity> activityController;
+    final AppCompatActivity activity;
+    final CordovaWebView webView;
+    final NativePlayer plugin;
+
+    NativePlayerHarness() {
+        activityController = Robolectric.buildActivity(AppCompatActivity.class);
+        activity = activityController.get();
+        activity.setTheme(androidx.appcompat.R.style.Theme_AppCompat_Light_NoActionBar);
+        activityController.setup();
+
+        FrameLayout root = new FrameLayout(activity);
+        View webViewView = new View(activity);
+        root.addView(webViewView);
+        webView = mock(CordovaWebView.class);
+        when(webView.getView()).thenReturn(webViewView);
+        when(webView.getContext()).thenReturn(activity);
+        when(webView.getEngine()).thenReturn(mock(CordovaWebViewEngine.class));
+
+        plugin = new NativePlayer();
+        plugin.privateInitialize("NativePlayer", new FakeCordovaInterface(activity), webView, new CordovaPreferences());
+    }
+
+    /**
+     * Sends an action as Cordova's bridge would, without running the queued commands.
+     */
+    RecordingCallbackContext send(String action, Object... args) throws JSONException {
+        RecordingCallbackContext callbackContext = new RecordingCallbackContext();
+        if (!plugin.execute(action, new JSONArray(Arrays.asList(args)), callbackContext)) {
+            throw new IllegalArgumentException("Unhandled action " + action);
+        }
+        return callbackContext;
+    }
+
+    /**
+     * Sends an action and runs the main looper until it is idle.
+     */
+    RecordingCallbackContext execute(String action, Object... args) throws JSONException {
+        RecordingCallbackContext callbackContext = send(action, args);
+        idle();
+        return callbackContext;
+    }
+
+    void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    /**
+     * Runs the main looper until the condition holds, for work that also runs on real
+     * threads: players, loads and downloads. Timers on the looper fire as the clock
+     * advances.
+     */
+    static void runUntil(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out");
+            }
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(10));
+            Thread.sleep(5);
+        }
+    }
+
+    void destroy() {
+        plugin.onDestroy();
+        activityController.destroy();
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.plugin;
+
+import static com.example.plugin.NativePlayerHarness.runUntil;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ui.PlayerView;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NativePlayerTest {
+
+    private NativePlayerHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = new NativePlayerHarness();
+    }
+
+    @After
+    public void tearDown() {
+        harness.destroy();
+    }
+
+    @Test
+    public void unknownActionIsNotHandled() throws Exception {
+        assertFalse(harness.plugin.execute("noSuchAction", new JSONArray(), new RecordingCallbackContext()));
+    }
+
+    @Test
+    public void unknownPlayerIdFails() throws Exception {
+        RecordingCallbackContext callback = harness.execute("play", 42);
+
+        assertTrue(callback.failed());
+        assertEquals("\"Unknown player id: 42\"", callback.message());
+    }
+
+    @Test
+    public void malformedArgumentsFailInsteadOfThrowing() throws Exception {
+        RecordingCallbackContext callback = harness.execute("setEventBatchInterval");
+
+        assertTrue(callback.failed());
+    }
+
+    @Test
+    public void playerCommandsRunOnTheQueueAndSettle() throws Exception {
+        int playerId = createPlayer();
+
+        RecordingCallbackContext callback = harness.send("setRate", playerId, 1.5);
+        assertNull(callback.last());
+
+        harness.idle();
+        assertTrue(callback.succeeded());
+    }
+
+    @Test
+    public void executeBatchReportsEveryCommandInOrder() throws Exception {
+        int playerId = createPlayer();
+        JSONArray batch = new JSONArray()
+                .put(command("setVolume", playerId, 0.5))
+                .put(command("getPosition", playerId))
+                .put(command("play", 99))
+                .put(command("updateLayout", new JSONArray()));
+
+        RecordingCallbackContext callback = harness.execute("executeBatch", batch);
+
+        assertTrue(callback.succeeded());
+        JSONArray results = new JSONArray(callback.message());
+        assertEquals(4, results.length());
+        assertTrue(results.getJSONObject(0).getBoolean("ok"));
+        assertTrue(results.getJSONObject(1).getBoolean("ok"));
+        assertEquals("0.0", results.getJSONObject(1).getString("result"));
+        assertFalse(results.getJSONObject(2).getBoolean("ok"));
+        assertEquals("Unknown player id: 99", results.getJSONObject(2).getString("error"));
+        assertFalse(results.getJSONObject(3).getBoolean("ok"));
+    }
+
+    @Test
+    public void emptyBatchSucceeds() throws Exception {
+        RecordingCallbackContext callback = harness.execute("executeBatch", new JSONArray());
+
+        assertTrue(callback.succeeded());
+        assertEquals(0, new JSONArray(callback.message()).length());
+    }
+
+    @Test
+    public void preloadWindowFailsWithoutTheMediaCache() throws Exception {
+        int playerId = createPlayer();
+
+        RecordingCallbackContext callback = harness.execute("setPreloadWindow", playerId, 5, 1024);
+
+        assertTrue(callback.failed());
+        assertEquals("\"Media cache disabled\"", callback.message());
+    }
+
+    @Test
+    public void fullscreenPlayerCoversTheContainerUntilItLeaves() throws Exception {
+        int playerId = createPlayer();
+        createPlayer();
+        ViewGroup container = (ViewGroup) harness.webView.getView().getParent();
+        PlayerView playerView = (PlayerView) container.getChildAt(1);
+        harness.execute("updateLayout", new JSONArray().put(new JSONArray().put(playerId).put(10).put(20).put(160).put(90)));
+        frame();
+
+        assertTrue(harness.execute("toggleFullscreen", playerId).succeeded());
+        assertSame(playerView, container.getChildAt(container.getChildCount() - 1));
+        assertEquals(0, playerView.getTranslationY(), 0.0f);
+        assertEquals(ViewGroup.LayoutParams.MATCH_PARENT, playerView.getLayoutParams().height);
+        // The placeholder scrolled underneath
+        harness.execute("updateLayout", new JSONArray().put(new JSONArray().put(playerId).put(10).put(60).put(160).put(90)));
+        frame();
+        assertEquals(0, playerView.getTranslationY(), 0.0f);
+
+        assertTrue(harness.execute("toggleFullscreen", playerId).succeeded());
+        harness.execute("updateLayout", new JSONArray().put(new JSONArray().put(playerId).put(10).put(60).put(160).put(90)));
+        frame();
+        float density = playerView.getResources().getDisplayMetrics().density;
+        assertEquals(Math.round(60 * density), playerView.getTranslationY(), 0.0f);
+        assertEquals(Math.round(90 * density), playerView.getLayoutParams().height);
+    }
+
+    @Test
+    public void destroyedPlayerNoLongerAcceptsCommands() throws Exception {
+        int playerId = createPlayer();
+
+        assertTrue(harness.execute("destroy", playerId).succeeded());
+        assertTrue(harness.execute("play", playerId).failed());
+    }
+
+    @Test
+    public void playerReleasedUnderMemoryPressureIsRestoredOnItsNextCommand() throws Exception {
+        RecordingCallbackContext listener = harness.execute("registerEventListener");
+        String url = adtsDataUrl();
+        int playerId = createPlayer(url, new JSONObject());
+        assertTrue(harness.execute("setVolume", playerId, 0.25).succeeded());
+        runUntil(() -> !events(listener, "ready").isEmpty());
+
+        harness.plugin.applyMemoryPressure(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertTrue(harness.execute("getPosition", playerId).succeeded());
+        runUntil(() -> !events(listener, "restore").isEmpty());
+
+        JSONObject restoreObj = events(listener, "restore").get(0);
+        assertEquals(playerId, restoreObj.getInt("playerId"));
+        assertEquals("released", restoreObj.getString("from"));
+        assertEquals(url, restoreObj.getJSONObject("snapshot").getString("url"));
+        // The released player was replaced; its volume came back from the snapshot
+        ViewGroup container = (ViewGroup) harness.webView.getView().getParent();
+        PlayerView playerView = (PlayerView) container.getChildAt(container.getChildCount() - 1);
+        assertEquals(0.25f, playerView.getPlayer().getVolume(), 0.001f);
+    }
+
+    @Test
+    public void preferredLanguageMustMatchAKnownTrack() throws Exception {
+        RecordingCallbackContext listener = harness.execute("registerEventListener");
+        int playerId = createPlayer(adtsDataUrl(), new JSONObject());
+        // The asset does not exist, so its tracks never become known
+        assertTrue(harness.execute("setPreferredAudioLanguage", createPlayer(), "fr").succeeded());
+        runUntil(() -> !events(listener, "ready").isEmpty());
+
+        // The stream's only audio track has no language
+        RecordingCallbackContext audio = harness.execute("setPreferredAudioLanguage", playerId, "fr");
+        assertTrue(audio.failed());
+        assertEquals("\"No audio track in language: fr\"", audio.message());
+        // Nor any text track to check against
+        assertTrue(harness.execute("setPreferredTextLanguage", playerId, "fr").succeeded());
+    }
+
+    @Test
+    public void negativeBufferDurationFailsCreatePlayer() throws Exception {
+        JSONObject options = new JSONObject().put("bufferProfile", new JSONObject().put("bufferForPlaybackMs", -500));
+
+        RecordingCallbackContext callback = harness.execute("createPlayer", "asset:///video.mp4", "player", options);
+
+        assertTrue(callback.failed());
+        assertEquals("\"bufferProfile.bufferForPlaybackMs must not be negative: -500\"", callback.message());
+        assertEquals(1, ((ViewGroup) harness.webView.getView().getParent()).getChildCount());
+    }
+
+    @Test
+    public void tileDemotedToAStillKeepsItsFrameVisible() throws Exception {
+        assertTrue(harness.execute("configureMultiView", new JSONObject().put("decoderSlots", 1)).succeeded());
+        createPlayer(new JSONObject().put("viewPriority", "focused"));
+        createPlayer(new JSONObject().put("viewPriority", "visible"));
+
+        ViewGroup container = (ViewGroup) harness.webView.getView().getParent();
+        PlayerView focused = (PlayerView) container.getChildAt(1);
+        PlayerView still = (PlayerView) container.getChildAt(2);
+        assertTrue(still.getPlayer().getTrackSelectionParameters().disabledTrackTypes.contains(C.TRACK_TYPE_VIDEO));
+        assertFalse(still.getPlayer().getPlayWhenReady());
+        // The shutter PlayerView closes over the disabled video track lets the last frame through
+        assertEquals(Color.TRANSPARENT, shutterColor(still));
+        assertEquals(Color.TRANSPARENT, shutterColor(focused));
+    }
+
+    @Test
+    public void promotedTileKeepsThePlayStateTheUserChose() throws Exception {
+        assertTrue(harness.execute("configureMultiView", new JSONObject().put("decoderSlots", 2)).succeeded());
+        int first = createPlayer(new JSONObject().put("viewPriority", "focused"));
+        int paused = createPlayer(new JSONObject().put("viewPriority", "visible"));
+        ViewGroup container = (ViewGroup) harness.webView.getView().getParent();
+        PlayerView firstView = (PlayerView) container.getChildAt(1);
+        PlayerView pausedView = (PlayerView) container.getChildAt(2);
+        assertTrue(harness.execute("play", first).succeeded());
+        assertTrue(harness.execute("pause", paused).succeeded());
+
+        // The new focused tile pushes the paused one out of the decoder slots
+        int focused = createPlayer(new JSONObject().put("viewPriority", "focused"));
+        assertFalse(pausedView.getPlayer().getPlayWhenReady());
+        assertTrue(harness.execute("destroy", focused).succeeded());
+
+        assertFalse(pausedView.getPlayer().getTrackSelectionParameters().disabledTrackTypes.contains(C.TRACK_TYPE_VIDEO));
+        assertFalse(pausedView.getPlayer().getPlayWhenReady());
+        assertTrue(firstView.getPlayer().getPlayWhenReady());
+    }
+
+    @Test
+    public void onlyPlayersThatWerePlayingResumeWithTheApp() throws Exception {
+        int playing = createPlayer();
+        int paused = createPlayer();
+        ViewGroup container = (ViewGroup) harness.webView.getView().getParent();
+        PlayerView playingView = (PlayerView) container.getChildAt(1);
+        PlayerView pausedView = (PlayerView) container.getChildAt(2);
+        assertTrue(harness.execute("play", playing).succeeded());
+        assertTrue(harness.execute("pause", paused).succeeded());
+
+        harness.plugin.onPause(false);
+        assertFalse(playingView.getPlayer().getPlayWhenReady());
+        harness.plugin.onResume(false);
+
+        assertTrue(playingView.getPlayer().getPlayWhenReady());
+        assertFalse(pausedView.getPlayer().getPlayWhenReady());
+    }
+
+    @Test
+    public void playOnAStillTakesEffectOnPromotion() throws Exception {
+        assertTrue(harness.execute("configureMultiView", new JSONObject().put("decoderSlots", 1)).succeeded());
+        int focused = createPlayer(new JSONObject().put("viewPriority", "focused"));
+        int still = createPlayer(new JSONObject().put("viewPriority", "visible"));
+        PlayerView stillView = (PlayerView) ((ViewGroup) harness.webView.getView().getParent()).getChildAt(2);
+
+        assertTrue(harness.execute("play", still).succeeded());
+        assertFalse(stillView.getPlayer().getPlayWhenReady());
+        assertTrue(harness.execute("destroy", focused).succeeded());
+
+        assertTrue(stillView.getPlayer().getPlayWhenReady());
+    }
+
+    private int createPlayer() throws Exception {
+        return createPlayer(new JSONObject());
+    }
+
+    private int createPlayer(JSONObject options) throws Exception {
+        return createPlayer("asset:///video.mp4", options);
+    }
+
+    private int createPlayer(String url, JSONObject options) throws Exception {
+        RecordingCallbackContext callback = harness.execute("createPlayer", url, "player", options);
+        assertTrue(callback.succeeded());
+        return Integer.parseInt(callback.message());
+    }
+
+    private static int shutterColor(PlayerView playerView) {
+        View shutter = playerView.findViewById(com.google.android.exoplayer2.ui.R.id.exo_shutter);
+        return ((ColorDrawable) shutter.getBackground()).getColor();
+    }
+
+    /**
+     * About 12 s of silent-looking AAC in ADTS frames. Robolectric has no AAC decoder, so
+     * no track is selected and the player gets ready as soon as the file is read.
+     */
+    private static String adtsDataUrl() {
+        byte[] frame = {(byte) 0xFF, (byte) 0xF1, 0x50, (byte) 0x80, 0x02, 0x1F, (byte) 0xFC,
+                0, 0, 0, 0, 0, 0, 0, 0, 0};
+        byte[] stream = new byte[frame.length * 500];
+        for (int i = 0; i < 500; i++) {
+            System.arraycopy(frame, 0, stream, i * frame.length, frame.length);
+        }
+        return "data:audio/aac;base64," + Base64.getEncoder().encodeToString(stream);
+    }
+
+    private static List<JSONObject> events(RecordingCallbackContext listener, String type) throws Exception {
+        List<JSONObject> matching = new ArrayList<>();
+        for (PluginResult result : new ArrayList<>(listener.results)) {
+            JSONArray batch = new JSONArray(result.getMessage());
+            for (int i = 0; i < batch.length(); i++) {
+                if (type.equals(batch.getJSONObject(i).getString("type"))) {
+                    matching.add(batch.getJSONObject(i));
+                }
+            }
+        }
+        return matching;
+    }
+
+    private static void frame() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+    }
+
+    private static JSONArray command(String action, Object... args) {
+        JSONArray argsArray = new JSONArray();
+        for (Object arg : args) {
+            argsArray.put(arg);
+        }
+        return new JSONArray().put(action).put(argsArray);
+    }
+}
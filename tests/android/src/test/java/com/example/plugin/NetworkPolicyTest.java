@@ -0,0 +1,71 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.net.NetworkCapabilities;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowNetworkCapabilities;
+
+@RunWith(RobolectricTestRunner.class)
+public class NetworkPolicyTest {
+
+    private final NetworkPolicy policy = new NetworkPolicy();
+
+    @Test
+    public void firstMatchingRuleCaps() throws Exception {
+        policy.setRules(new JSONArray()
+                .put(new JSONObject().put("network", "wifi").put("maxHeight", 1080))
+                .put(new JSONObject().put("network", "cellular").put("maxHeight", 480).put("maxBitrate", 1_000_000)));
+
+        NetworkPolicy.Decision decision = policy.onCapabilitiesChanged(capabilities(NetworkCapabilities.TRANSPORT_CELLULAR, 5000));
+
+        assertEquals("cellular", decision.network);
+        assertEquals(1, decision.ruleIndex);
+        assertEquals(480, decision.maxHeight);
+        assertEquals(1_000_000, decision.maxBitrate);
+    }
+
+    @Test
+    public void unchangedDecisionIsNotReported() throws Exception {
+        policy.setRules(new JSONArray().put(new JSONObject().put("network", "wifi").put("maxHeight", 1080)));
+        policy.onCapabilitiesChanged(capabilities(NetworkCapabilities.TRANSPORT_WIFI, 20_000));
+
+        assertNull(policy.onCapabilitiesChanged(capabilities(NetworkCapabilities.TRANSPORT_WIFI, 30_000)));
+    }
+
+    @Test
+    public void noMatchingRuleLeavesVideoUncapped() throws Exception {
+        NetworkPolicy.Decision decision = policy.setRules(new JSONArray()
+                .put(new JSONObject().put("minDownstreamKbps", 1000).put("maxHeight", 720)));
+
+        assertEquals(Integer.MAX_VALUE, decision.maxHeight);
+    }
+
+    @Test
+    public void availableAfterLossEndsAnOutage() {
+        assertFalse(policy.onAvailable());
+
+        policy.onLost();
+        assertFalse(policy.isConnected());
+
+        assertTrue(policy.onAvailable());
+        assertTrue(policy.isConnected());
+    }
+
+    private static NetworkCapabilities capabilities(int transport, int downstreamKbps) {
+        NetworkCapabilities capabilities = ShadowNetworkCapabilities.newInstance();
+        shadowOf(capabilities).addTransportType(transport);
+        shadowOf(capabilities).addCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        shadowOf(capabilities).setLinkDownstreamBandwidthKbps(downstreamKbps);
+        return capabilities;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.plugin;
+
+import static com.example.plugin.NativePlayerHarness.runUntil;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+@RunWith(RobolectricTestRunner.class)
+public class OfflineManagerTest {
+
+    private static final int SEGMENT_COUNT = 8;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private final List<String> changes = new ArrayList<>();
+    private final List<JSONObject> progress = new ArrayList<>();
+    private final List<RecordedRequest> fileRequests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger segmentsInFlight = new AtomicInteger();
+    private final AtomicInteger maxSegmentsInFlight = new AtomicInteger();
+    private final byte[] file = bytes(64 * 1024);
+    // Slows the first transfer of the progressive file down, so it can be interrupted
+    private boolean throttleFirstFile;
+
+    private Context context;
+    private DataSource.Factory upstreamFactory;
+    private File directory;
+    private OfflineManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                String path = request.getPath();
+                if (path.endsWith(".m3u8")) {
+                    return new MockResponse().setBody(playlist());
+                }
+                if (path.endsWith(".ts")) {
+                    int inFlight = segmentsInFlight.incrementAndGet();
+                    maxSegmentsInFlight.accumulateAndGet(inFlight, Math::max);
+                    // Keeps each segment busy long enough for others to start alongside
+                    Thread.sleep(100);
+                    segmentsInFlight.decrementAndGet();
+                    return new MockResponse().setBody(new Buffer().write(bytes(1024)));
+                }
+                fileRequests.add(request);
+                MockResponse response = rangeOf(request, file);
+                if (throttleFirstFile && fileRequests.size() == 1) {
+                    response.throttleBody(1024, 50, TimeUnit.MILLISECONDS);
+                }
+                return response;
+            }
+        });
+        server.start();
+        context = RuntimeEnvironment.getApplication();
+        upstreamFactory = new MediaHttp(new OkHttpClient.Builder()).getDataSourceFactory(RequestScheduler.PREFETCH);
+        directory = folder.newFolder("downloads");
+        manager = start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.release();
+        server.shutdown();
+    }
+
+    @Test
+    public void queuedStreamDownloadsItsSegmentsInParallel() throws Exception {
+        manager.configure(new JSONObject().put("maxParallelDownloads", 1));
+
+        assertTrue(manager.download("file", server.url("/vod/video.mp4").toString(), "File"));
+        assertTrue(manager.download("stream", server.url("/vod/index.m3u8").toString(), "Stream"));
+        runUntil(() -> changes.contains("stream:completed"));
+
+        assertTrue(changes.indexOf("stream:queued") < changes.indexOf("file:completed"));
+        assertTrue(changes.indexOf("file:completed") < changes.indexOf("stream:downloading"));
+        assertTrue(maxSegmentsInFlight.get() > 1);
+        assertTrue(manager.getStorage().getLong("usedBytes") >= SEGMENT_COUNT * 1024 + file.length);
+    }
+
+    @Test
+    public void interruptedDownloadResumesWithTheNextInstance() throws Exception {
+        throttleFirstFile = true;
+        manager.download("file", server.url("/vod/video.mp4").toString(), null);
+        runUntil(() -> !progress.isEmpty() && progress.get(progress.size() - 1).getLong("bytesDownloaded") > 0);
+
+        // As if the process was killed mid-download
+        manager.release();
+        changes.clear();
+        manager = start();
+        runUntil(() -> changes.contains("file:completed"));
+
+        assertEquals(2, fileRequests.size());
+        String range = fileRequests.get(1).getHeader("Range");
+        assertTrue(range.startsWith("bytes="));
+        assertNotEquals("bytes=0-", range);
+        assertArrayEquals(file, play("/vod/video.mp4"));
+    }
+
+    @Test
+    public void quotaRejectsDownloadsOnceItIsUsedUp() throws Exception {
+        assertTrue(manager.download("file", server.url("/vod/video.mp4").toString(), null));
+        runUntil(() -> changes.contains("file:completed"));
+        manager.configure(new JSONObject().put("quotaBytes", file.length / 2));
+
+        assertFalse(manager.download("stream", server.url("/vod/index.m3u8").toString(), null));
+        assertEquals(1, manager.getDownloads().length());
+        assertEquals(file.length / 2, manager.getStorage().getLong("quotaBytes"));
+    }
+
+    @Test
+    public void downloadedFilePlaysWithoutTheServer() throws Exception {
+        manager.download("file", server.url("/vod/video.mp4").toString(), null);
+        runUntil(() -> changes.contains("file:completed"));
+        String url = server.url("/vod/video.mp4").toString();
+        server.shutdown();
+
+        DataSource dataSource = manager.wrapForPlayback(upstreamFactory).createDataSource();
+        try {
+            dataSource.open(new DataSpec(Uri.parse(url)));
+            assertArrayEquals(file, DataSourceUtil.readToEnd(dataSource));
+        } finally {
+            dataSource.close();
+        }
+        assertEquals(1, fileRequests.size());
+    }
+
+    private OfflineManager start() {
+        OfflineManager offlineManager = new OfflineManager(context, upstreamFactory, directory);
+        offlineManager.setListener((type, downloadId, download) -> {
+            if ("downloadProgress".equals(type)) {
+                progress.add(download);
+            } else {
+                changes.add(downloadId + ":" + download.optString("state"));
+            }
+        });
+        return offlineManager;
+    }
+
+    private byte[] play(String path) throws Exception {
+        DataSource dataSource = manager.wrapForPlayback(upstreamFactory).createDataSource();
+        try {
+            dataSource.open(new DataSpec(Uri.parse(server.url(path).toString())));
+            return DataSourceUtil.readToEnd(dataSource);
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    private static String playlist() {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:4\n");
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            playlist.append("#EXTINF:4.0,\nsegment").append(i).append(".ts\n");
+        }
+        return playlist.append("#EXT-X-ENDLIST\n").toString();
+    }
+
+    private static MockResponse rangeOf(RecordedRequest request, byte[] body) {
+        String range = request.getHeader("Range");
+        if (range == null) {
+            return new MockResponse().setBody(new Buffer().write(body));
+        }
+        int start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+        return new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes " + start + "-" + (body.length - 1) + "/" + body.length)
+                .setBody(new Buffer().write(body, start, body.length - start));
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PlaybackMetricsTest {
+
+    private final PlaybackMetrics metrics = new PlaybackMetrics(1_000);
+
+    @Test
+    public void firstFrameCountsFromTheStartGiven() throws Exception {
+        metrics.onRenderedFirstFrame(at(1_450), new Object(), 1_450);
+
+        assertEquals(450, metrics.toJson().getLong("timeToFirstFrameMs"));
+    }
+
+    @Test
+    public void formatsWithoutABitrateAreNotCounted() throws Exception {
+        metrics.onVideoInputFormatChanged(at(1_000), video(Format.NO_VALUE), null);
+        metrics.onVideoInputFormatChanged(at(2_000), video(800_000), null);
+        metrics.onVideoInputFormatChanged(at(3_000), video(Format.NO_VALUE), null);
+        metrics.onVideoInputFormatChanged(at(4_000), video(1_600_000), null);
+
+        JSONObject stats = metrics.toJson();
+        assertEquals(1, stats.getInt("bitrateSwitches"));
+        JSONArray bitrates = stats.getJSONArray("bitrates");
+        assertEquals(2, bitrates.length());
+        assertEquals(800_000, bitrates.getJSONObject(0).getInt("bitrate"));
+        assertEquals(1_600_000, bitrates.getJSONObject(1).getInt("bitrate"));
+    }
+
+    private static Format video(int bitrate) {
+        return new Format.Builder().setSampleMimeType("video/avc").setAverageBitrate(bitrate).build();
+    }
+
+    private static AnalyticsListener.EventTime at(long realtimeMs) {
+        return new AnalyticsListener.EventTime(realtimeMs, Timeline.EMPTY, 0, null, 0,
+                Timeline.EMPTY, 0, null, 0, 0);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.plugin;
+
+import androidx.annotation.Nullable;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CallbackContext that keeps every result instead of sending it to a WebView.
+ */
+class RecordingCallbackContext extends CallbackContext {
+
+    final List<PluginResult> results = new ArrayList<>();
+
+    RecordingCallbackContext() {
+        super("test", null);
+    }
+
+    @Override
+    public synchronized void sendPluginResult(PluginResult pluginResult) {
+        results.add(pluginResult);
+    }
+
+    @Override
+    public synchronized boolean isFinished() {
+        for (PluginResult result : results) {
+            if (!result.getKeepCallback()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    synchronized PluginResult last() {
+        return results.isEmpty() ? null : results.get(results.size() - 1);
+    }
+
+    boolean succeeded() {
+        PluginResult result = last();
+        return result != null && result.getStatus() == PluginResult.Status.OK.ordinal();
+    }
+
+    boolean failed() {
+        PluginResult result = last();
+        return result != null && result.getStatus() == PluginResult.Status.ERROR.ordinal();
+    }
+
+    @Nullable
+    String message() {
+        PluginResult result = last();
+        return result != null ? result.getMessage() : null;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.plugin;
+
+import static com.example.plugin.NativePlayerHarness.runUntil;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+/**
+ * Drives a real player over the plugin's HTTP stack against a local server. The player
+ * has no renderers, since Robolectric has no decoders, so it never gets past buffering
+ * on its own.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RecoveryEngineTest {
+
+    private static final String LIVE_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:6\n"
+            + "#EXT-X-MEDIA-SEQUENCE:100\n"
+            + "#EXTINF:6.0,\nsegment100.ts\n"
+            + "#EXTINF:6.0,\nsegment101.ts\n"
+            + "#EXTINF:6.0,\nsegment102.ts\n"
+            + "#EXTINF:6.0,\nsegment103.ts\n"
+            + "#EXTINF:6.0,\nsegment104.ts\n"
+            + "#EXTINF:6.0,\nsegment105.ts\n"
+            + "#EXTINF:6.0,\nsegment106.ts\n"
+            + "#EXTINF:6.0,\nsegment107.ts\n";
+
+    private final MockWebServer server = new MockWebServer();
+    private final List<String> types = new ArrayList<>();
+    private final List<JSONObject> events = new ArrayList<>();
+    private ExoPlayer player;
+    private RecoveryEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        server.start();
+        // Every failed load is fatal at once, so each error reaches the engine
+        LoadErrorHandlingPolicy failFast = new DefaultLoadErrorHandlingPolicy() {
+            @Override
+            public long getRetryDelayMsFor(LoadErrorInfo loadErrorInfo) {
+                return C.TIME_UNSET;
+            }
+        };
+        MediaHttp http = new MediaHttp(new OkHttpClient.Builder());
+        player = new ExoPlayer.Builder(RuntimeEnvironment.getApplication(),
+                (eventHandler, videoListener, audioListener, textOutput, metadataOutput) -> new Renderer[0])
+                .setMediaSourceFactory(new DefaultMediaSourceFactory(http.getDataSourceFactory())
+                        .setLoadErrorHandlingPolicy(failFast))
+                .build();
+        engine = new RecoveryEngine(player, new Handler(Looper.getMainLooper()), (type, data) -> {
+            types.add(type);
+            events.add(data);
+        });
+        engine.configure(new JSONObject().put("maxRetries", 2).put("baseDelayMs", 10).put("maxDelayMs", 10));
+        player.addListener(engine);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        engine.release();
+        // Unblocks loads still waiting for a response
+        server.shutdown();
+        player.release();
+    }
+
+    @Test
+    public void serverErrorsAreRetriedUntilTheBudgetRunsOut() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        play("/vod/video.mp4");
+        runUntil(() -> recoveries("failed").size() == 1);
+
+        assertEquals(3, server.getRequestCount());
+        List<JSONObject> errors = ofType("error");
+        assertEquals(3, errors.size());
+        for (JSONObject errorObj : errors) {
+            assertEquals(RecoveryEngine.CATEGORY_NETWORK, errorObj.getString("category"));
+            assertEquals("ERROR_CODE_IO_BAD_HTTP_STATUS", errorObj.getString("codeName"));
+            assertEquals(503, errorObj.getInt("httpStatus"));
+        }
+        assertTrue(errors.get(0).getBoolean("willRetry"));
+        assertTrue(errors.get(1).getBoolean("willRetry"));
+        assertFalse(errors.get(2).getBoolean("willRetry"));
+        List<JSONObject> retries = recoveries("retrying");
+        assertEquals(2, retries.size());
+        assertEquals(1, retries.get(0).getInt("attempt"));
+        assertEquals(2, retries.get(1).getInt("attempt"));
+        assertTrue(retries.get(1).getLong("delayMs") <= 10);
+        assertEquals(503, retries.get(1).getJSONObject("error").getInt("httpStatus"));
+        assertEquals(Player.STATE_IDLE, player.getPlaybackState());
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        play("/vod/missing.mp4");
+        runUntil(() -> !ofType("error").isEmpty());
+
+        JSONObject errorObj = ofType("error").get(0);
+        assertEquals(RecoveryEngine.CATEGORY_NETWORK, errorObj.getString("category"));
+        assertEquals(404, errorObj.getInt("httpStatus"));
+        assertFalse(errorObj.getBoolean("willRetry"));
+        assertTrue(ofType("recovery").isEmpty());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void droppedConnectionResumesFromTheFailedPosition() throws Exception {
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(new byte[64]))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        // The retry then waits for its response, as a slow network would
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+        player.setMediaItem(MediaItem.fromUri(server.url("/vod/video.mp4").toString()));
+        player.seekTo(5_000);
+        player.prepare();
+        runUntil(() -> server.getRequestCount() == 2 && player.getPlaybackState() == Player.STATE_BUFFERING);
+
+        JSONObject errorObj = ofType("error").get(0);
+        assertEquals(RecoveryEngine.CATEGORY_NETWORK, errorObj.getString("category"));
+        assertEquals("ERROR_CODE_IO_NETWORK_CONNECTION_FAILED", errorObj.getString("codeName"));
+        assertTrue(errorObj.getBoolean("willRetry"));
+        assertEquals(5_000, player.getCurrentPosition());
+
+        // Stands in for the first frame after the retry
+        engine.onPlaybackStateChanged(Player.STATE_READY);
+
+        JSONObject recovered = recoveries("recovered").get(0);
+        assertEquals(1, recovered.getInt("attempt"));
+        assertEquals(1, recovered.getInt("totalRecoveries"));
+        assertTrue(recovered.has("recoveryMs"));
+    }
+
+    @Test
+    public void liveStreamResumesAtTheLiveEdge() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().endsWith(".m3u8")) {
+                    return new MockResponse().setBody(LIVE_PLAYLIST);
+                }
+                return new MockResponse().setResponseCode(503);
+            }
+        });
+
+        // Long enough to move the player before the retry
+        engine.configure(new JSONObject().put("baseDelayMs", 1000).put("maxDelayMs", 1000));
+
+        play("/live/index.m3u8");
+        runUntil(() -> recoveries("retrying").size() == 1);
+        assertTrue(player.isCurrentMediaItemLive());
+        // Where a viewer who paused long ago would be
+        player.seekTo(0);
+        runUntil(() -> ofType("error").size() == 2);
+
+        Timeline.Window window = player.getCurrentTimeline().getWindow(0, new Timeline.Window());
+        assertTrue(window.getDefaultPositionMs() > 0);
+        assertEquals(window.getDefaultPositionMs(), player.getCurrentPosition(), 1_000);
+    }
+
+    private void play(String path) {
+        player.setMediaItem(MediaItem.fromUri(server.url(path).toString()));
+        player.prepare();
+    }
+
+    private List<JSONObject> ofType(String type) {
+        List<JSONObject> matching = new ArrayList<>();
+        for (int i = 0; i < types.size(); i++) {
+            if (types.get(i).equals(type)) {
+                matching.add(events.get(i));
+            }
+        }
+        return matching;
+    }
+
+    private List<JSONObject> recoveries(String phase) {
+        List<JSONObject> matching = new ArrayList<>();
+        for (JSONObject recoveryObj : ofType("recovery")) {
+            if (phase.equals(recoveryObj.optString("phase"))) {
+                matching.add(recoveryObj);
+            }
+        }
+        return matching;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class RequestSchedulerTest {
+
+    private final RequestScheduler scheduler = new RequestScheduler(2);
+
+    @Test
+    public void segmentsShareTheSlotsAndInitSegmentsGetReservedOnes() {
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.MEDIA));
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.MEDIA));
+        assertNull(scheduler.tryAcquire(RequestScheduler.MEDIA));
+
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.INIT));
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.INIT));
+        assertNull(scheduler.tryAcquire(RequestScheduler.INIT));
+    }
+
+    @Test
+    public void manifestsAreNeverHeldBack() {
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.MEDIA));
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.MEDIA));
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.INIT));
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.INIT));
+
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(scheduler.tryAcquire(RequestScheduler.MANIFEST));
+        }
+    }
+
+    @Test
+    public void prefetchesGetHalfTheSlots() {
+        RequestScheduler.Lease prefetch = scheduler.tryAcquire(RequestScheduler.PREFETCH);
+        assertNotNull(prefetch);
+        assertNull(scheduler.tryAcquire(RequestScheduler.PREFETCH));
+        RequestScheduler.Lease segment = scheduler.tryAcquire(RequestScheduler.MEDIA);
+        assertNotNull(segment);
+
+        scheduler.release(prefetch);
+        scheduler.release(segment);
+        // A lease is only counted once
+        scheduler.release(segment);
+        assertEquals(0, scheduler.activeCount());
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.PREFETCH));
+    }
+
+    @Test
+    public void releasedSlotGoesToTheWaitingSegment() throws Exception {
+        RequestScheduler.Lease first = scheduler.tryAcquire(RequestScheduler.MEDIA);
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.MEDIA));
+        Thread prefetch = waitFor(RequestScheduler.PREFETCH);
+        Thread segment = waitFor(RequestScheduler.MEDIA);
+
+        scheduler.release(first);
+        segment.join(1000);
+
+        assertFalse(segment.isAlive());
+        assertTrue(prefetch.isAlive());
+        prefetch.interrupt();
+    }
+
+    @Test(timeout = 5000)
+    public void openProgressiveSourcesDoNotHoldTheSlotsForever() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(2, 50);
+        DataSource.Factory factory = new PrioritizedDataSource.Factory(
+                () -> new ByteArrayDataSource(new byte[1024]), scheduler, RequestScheduler.MEDIA);
+        List<DataSource> sources = new ArrayList<>();
+
+        // Players with a full buffer keep their progressive sources open without reading
+        for (int i = 0; i < 5; i++) {
+            DataSource source = factory.createDataSource();
+            assertEquals(1024, source.open(new DataSpec(Uri.parse("https://example.com/" + i + ".mp4"))));
+            sources.add(source);
+        }
+
+        assertTrue(scheduler.activeCount() <= 2);
+        for (DataSource source : sources) {
+            source.close();
+        }
+        assertEquals(0, scheduler.activeCount());
+    }
+
+    @Test(timeout = 5000)
+    public void prefetchWaitsOnlyAsLongAsTheHold() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(2, 50);
+        assertNotNull(scheduler.tryAcquire(RequestScheduler.PREFETCH));
+
+        // Never released, like a download that stays open
+        assertNotNull(scheduler.acquire(RequestScheduler.PREFETCH));
+    }
+
+    @Test
+    public void headerRoundTrips() {
+        for (int priority = RequestScheduler.MANIFEST; priority <= RequestScheduler.PREFETCH; priority++) {
+            assertEquals(priority, RequestScheduler.fromHeader(RequestScheduler.headerFor(priority)));
+        }
+    }
+
+    private Thread waitFor(int priority) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                scheduler.acquire(priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+}
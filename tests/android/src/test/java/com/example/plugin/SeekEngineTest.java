@@ -0,0 +1,161 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.Tracks;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SeekEngineTest {
+
+    private final List<String> completed = new ArrayList<>();
+    private final ExoPlayer player = mock(ExoPlayer.class);
+    private final SeekEngine engine = new SeekEngine(new Handler(Looper.getMainLooper()), new SeekEngine.Listener() {
+        @Override
+        public void onSeekStarted(long positionMs, boolean scrubbing) {
+        }
+
+        @Override
+        public void onSeekCompleted(long positionMs, long latencyMs, int coalesced, boolean scrubbing) {
+            completed.add(positionMs + "/" + coalesced);
+        }
+    });
+
+    @Before
+    public void setUp() {
+        when(player.getPlaybackState()).thenReturn(Player.STATE_READY);
+        // No video, so a seek lands when the player is ready again
+        when(player.getCurrentTracks()).thenReturn(Tracks.EMPTY);
+        engine.attach(player);
+    }
+
+    @Test
+    public void burstExecutesOnlyTheLatestPendingTarget() {
+        engine.seekTo(1000);
+        engine.seekTo(2000);
+        engine.seekTo(3000);
+        engine.seekTo(4000);
+        verify(player).seekTo(1000);
+        verify(player, times(1)).seekTo(anyLong());
+
+        engine.onPlaybackStateChanged(Player.STATE_READY);
+        verify(player).seekTo(4000);
+        verify(player, never()).seekTo(2000);
+        verify(player, never()).seekTo(3000);
+
+        engine.onPlaybackStateChanged(Player.STATE_READY);
+        assertEquals(2, completed.size());
+        assertEquals("4000/2", completed.get(1));
+    }
+
+    @Test
+    public void scrubSnapsToKeyframesAndReleaseSeeksExactly() {
+        engine.setScrubbing(true);
+        engine.seekTo(5000);
+        engine.onPlaybackStateChanged(Player.STATE_READY);
+        engine.setScrubbing(false);
+
+        InOrder inOrder = inOrder(player);
+        inOrder.verify(player).setSeekParameters(SeekParameters.CLOSEST_SYNC);
+        inOrder.verify(player).seekTo(5000);
+        inOrder.verify(player).setSeekParameters(SeekParameters.EXACT);
+        inOrder.verify(player).seekTo(5000);
+    }
+
+    @Test
+    public void idlePlayerIsNotWaitedFor() {
+        when(player.getPlaybackState()).thenReturn(Player.STATE_IDLE);
+
+        engine.seekTo(1000);
+        engine.seekTo(2000);
+
+        verify(player).seekTo(2000);
+    }
+
+    @Test
+    public void scrubInsideTheCurrentKeyframeIntervalDoesNotStallLaterSeeks() {
+        // Paused on the keyframe at 4 s, the next one is at 6 s
+        when(player.getCurrentPosition()).thenReturn(4000L);
+        when(player.getCurrentTracks()).thenReturn(videoTracks());
+        engine.setScrubbing(true);
+
+        engine.seekTo(4500);
+        engine.onPositionDiscontinuity(position(4000), position(4500), Player.DISCONTINUITY_REASON_SEEK);
+        // Snapped back onto the keyframe the player is on, so no renderer reset and no frame
+        engine.onPositionDiscontinuity(position(4500), position(4000), Player.DISCONTINUITY_REASON_SEEK_ADJUSTMENT);
+        engine.seekTo(5000);
+        verify(player, never()).seekTo(5000);
+
+        engine.onPlaybackStateChanged(Player.STATE_READY);
+
+        verify(player).seekTo(5000);
+        assertEquals("4500/0", completed.get(0));
+    }
+
+    @Test
+    public void seekWithoutFirstFrameTimesOutAndIssuesThePendingTarget() {
+        when(player.getCurrentPosition()).thenReturn(0L);
+        when(player.getCurrentTracks()).thenReturn(videoTracks());
+        engine.seekTo(1000);
+        engine.seekTo(2000);
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(SeekEngine.SEEK_TIMEOUT_MS));
+
+        verify(player).seekTo(2000);
+        assertEquals("1000/0", completed.get(0));
+    }
+
+    @Test
+    public void keyframeSeekIsNotReportedAndHoldsBackUserSeeks() {
+        when(player.getCurrentPosition()).thenReturn(7000L);
+
+        engine.seekToClosestKeyframe();
+        engine.onPositionDiscontinuity(position(7000), position(7000), Player.DISCONTINUITY_REASON_SEEK);
+        engine.seekTo(9000);
+        verify(player, never()).seekTo(9000);
+        engine.onPlaybackStateChanged(Player.STATE_READY);
+
+        InOrder inOrder = inOrder(player);
+        inOrder.verify(player).setSeekParameters(SeekParameters.CLOSEST_SYNC);
+        inOrder.verify(player).seekTo(7000);
+        inOrder.verify(player).setSeekParameters(SeekParameters.EXACT);
+        inOrder.verify(player).seekTo(9000);
+        engine.onPlaybackStateChanged(Player.STATE_READY);
+        assertEquals(1, completed.size());
+        assertEquals("9000/0", completed.get(0));
+    }
+
+    private static Tracks videoTracks() {
+        return new Tracks(ImmutableList.of(TestTracks.group(TestTracks.video(720, 2_000_000))));
+    }
+
+    private static Player.PositionInfo position(long positionMs) {
+        return new Player.PositionInfo(null, 0, null, null, 0, positionMs, positionMs,
+                C.INDEX_UNSET, C.INDEX_UNSET);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class StartupTracerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final StartupTracer tracer = new StartupTracer();
+    private final List<StartupTrace> completed = new ArrayList<>();
+
+    @Test
+    public void bridgeStampsCarryOverToTheTraceOfTheirCall() throws Exception {
+        tracer.onCommandReceived("NativePlayer1", System.currentTimeMillis() - 20);
+
+        StartupTrace trace = tracer.begin(1, "https://example.com/a.m3u8", "NativePlayer1", completed::add);
+
+        JSONArray phases = trace.toJson().getJSONArray("phases");
+        assertEquals("jsCall", phases.getJSONObject(0).getString("phase"));
+        assertEquals("bridge", phases.getJSONObject(1).getString("phase"));
+        assertTrue(phases.getJSONObject(1).getDouble("durationMs") >= 20);
+        assertEquals("uiThread", phases.getJSONObject(2).getString("phase"));
+    }
+
+    @Test
+    public void batchedCallsStartOnTheUiThread() throws Exception {
+        StartupTrace trace = tracer.begin(1, "https://example.com/a.mp4", "NativePlayer1#0", completed::add);
+
+        JSONArray phases = trace.toJson().getJSONArray("phases");
+        assertEquals(1, phases.length());
+        assertEquals("uiThread", phases.getJSONObject(0).getString("phase"));
+    }
+
+    @Test
+    public void discardedStampsDoNotCarryOver() throws Exception {
+        tracer.onCommandReceived("NativePlayer1", System.currentTimeMillis() - 20);
+        tracer.discard("NativePlayer1");
+
+        StartupTrace trace = tracer.begin(1, "https://example.com/a.mp4", "NativePlayer1", completed::add);
+
+        JSONArray phases = trace.toJson().getJSONArray("phases");
+        assertEquals(1, phases.length());
+        assertEquals("uiThread", phases.getJSONObject(0).getString("phase"));
+    }
+
+    @Test
+    public void firstFrameCompletesTheTraceOnce() throws Exception {
+        StartupTrace trace = tracer.begin(1, "https://example.com/a.mp4", "NativePlayer1", completed::add);
+        long startNs = SystemClock.elapsedRealtimeNanos();
+        trace.mark(StartupTrace.PREPARED, startNs + 1_000_000);
+        trace.mark(StartupTrace.FIRST_FRAME, startNs + 5_000_000);
+        trace.mark(StartupTrace.FIRST_FRAME, startNs + 9_000_000);
+
+        assertEquals(1, completed.size());
+        JSONObject traceObj = trace.toJson();
+        assertTrue(traceObj.getBoolean("complete"));
+        assertEquals(5.0, traceObj.getDouble("totalMs"), 1.0);
+    }
+
+    @Test
+    public void ringKeepsTheNewestTraces() throws Exception {
+        for (int id = 1; id <= StartupTracer.CAPACITY + 3; id++) {
+            StartupTrace trace = tracer.begin(id, "https://example.com/" + id + ".mp4", "NativePlayer" + id, completed::add);
+            trace.finish();
+            tracer.record(trace);
+        }
+
+        JSONArray recent = tracer.recent(100);
+
+        assertEquals(StartupTracer.CAPACITY, recent.length());
+        assertEquals(StartupTracer.CAPACITY + 3, recent.getJSONObject(0).getInt("playerId"));
+        assertEquals(4, recent.getJSONObject(StartupTracer.CAPACITY - 1).getInt("playerId"));
+        assertFalse(recent.getJSONObject(0).getBoolean("complete"));
+    }
+
+    @Test
+    public void dumpWritesTheRequestedTraces() throws Exception {
+        for (int id = 1; id <= 3; id++) {
+            StartupTrace trace = tracer.begin(id, "https://example.com/" + id + ".mp4", "NativePlayer" + id, completed::add);
+            trace.finish();
+            tracer.record(trace);
+        }
+        File file = new File(folder.getRoot(), "traces/startup.json");
+
+        JSONObject result = tracer.dump(file, 2);
+
+        assertEquals(2, result.getInt("count"));
+        JSONObject dumpObj = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals(3, dumpObj.getJSONArray("traces").getJSONObject(0).getInt("playerId"));
+        assertEquals(2, dumpObj.getJSONArray("traces").length());
+    }
+}
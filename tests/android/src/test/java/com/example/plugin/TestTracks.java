@@ -0,0 +1,81 @@
+package com.example.plugin;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Tracks;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Track lists as a player would report them for an adaptive stream.
+ */
+final class TestTracks {
+
+    private static final int[] HEIGHTS = {144, 240, 360, 480, 720, 1080, 1440, 2160};
+    private static final String[] LANGUAGES = {"en", "de", "fr", "es", "it", "ja", "pt", "nl"};
+
+    private TestTracks() {}
+
+    static Format video(int height, int bitrate) {
+        return new Format.Builder()
+                .setSampleMimeType(MimeTypes.VIDEO_H264)
+                .setCodecs("avc1.64001f")
+                .setWidth(height * 16 / 9)
+                .setHeight(height)
+                .setFrameRate(30)
+                .setAverageBitrate(bitrate)
+                .build();
+    }
+
+    static Format audio(String language) {
+        return new Format.Builder()
+                .setSampleMimeType(MimeTypes.AUDIO_AAC)
+                .setCodecs("mp4a.40.2")
+                .setChannelCount(2)
+                .setSampleRate(48000)
+                .setAverageBitrate(128_000)
+                .setLanguage(language)
+                .build();
+    }
+
+    static Format text(String language) {
+        return new Format.Builder()
+                .setSampleMimeType(MimeTypes.TEXT_VTT)
+                .setLanguage(language)
+                .build();
+    }
+
+    /**
+     * One group holding {@code formats}, all supported, with the first one selected.
+     */
+    static Tracks.Group group(Format... formats) {
+        int[] support = new int[formats.length];
+        boolean[] selected = new boolean[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            support[i] = C.FORMAT_HANDLED;
+        }
+        selected[0] = true;
+        return new Tracks.Group(new TrackGroup(formats), formats.length > 1, support, selected);
+    }
+
+    /**
+     * A video ladder of {@code renditions} tracks cycling through the usual heights, plus
+     * one audio and one text group per language.
+     */
+    static Tracks adaptive(int renditions, int languages) {
+        Format[] ladder = new Format[renditions];
+        for (int i = 0; i < renditions; i++) {
+            ladder[i] = video(HEIGHTS[i % HEIGHTS.length], 200_000 + i * 150_000);
+        }
+        ImmutableList.Builder<Tracks.Group> groups = ImmutableList.builder();
+        groups.add(group(ladder));
+        for (int i = 0; i < languages; i++) {
+            groups.add(group(audio(LANGUAGES[i % LANGUAGES.length])));
+        }
+        for (int i = 0; i < languages; i++) {
+            groups.add(group(text(LANGUAGES[i % LANGUAGES.length])));
+        }
+        return new Tracks(groups.build());
+    }
+}
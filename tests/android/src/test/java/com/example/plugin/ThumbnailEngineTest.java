@@ -0,0 +1,221 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decodes through a stand-in for the retriever, which has no codecs under Robolectric.
+ * URLs starting with "gate" block their worker until released, so the queue behind them
+ * can be filled first.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ThumbnailEngineTest {
+
+    private static final String URL = "file:///videos/clip.mp4";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    // "url@ms" of every decoded frame, in decoding order
+    private final List<String> decoded = new CopyOnWriteArrayList<>();
+    private final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+    private final CountDownLatch gatesEntered = new CountDownLatch(2);
+    private ThumbnailEngine engine;
+
+    @Before
+    public void setUp() {
+        gates.put("gate1", new CountDownLatch(1));
+        gates.put("gate2", new CountDownLatch(1));
+        engine = new ThumbnailEngine(RuntimeEnvironment.getApplication(), FileDataSource::new);
+        engine.setFrameSource((url, timeUs, width, height) -> {
+            CountDownLatch gate = gates.get(url);
+            if (gate != null) {
+                gatesEntered.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            decoded.add(url + "@" + timeUs / 1000);
+            return Bitmap.createBitmap(Math.max(width, 160), Math.max(height, 90), Bitmap.Config.ARGB_8888);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        for (CountDownLatch gate : gates.values()) {
+            gate.countDown();
+        }
+        engine.release();
+    }
+
+    @Test
+    public void concurrentRequestsShareOneDecodeAndLaterOnesHitTheCache() throws Exception {
+        Result first = new Result();
+        Result second = new Result();
+        engine.get("gate1", 1000, 0, 0, 70, first);
+        // Same 100 ms bucket, while the first is still decoding
+        engine.get("gate1", 1040, 0, 0, 70, second);
+        gates.get("gate1").countDown();
+
+        assertNotNull(first.await());
+        assertSame(first.await(), second.await());
+        assertEquals(Arrays.asList("gate1@1000"), decoded);
+
+        Result third = new Result();
+        engine.get("gate1", 1000, 0, 0, 70, third);
+        // Answered before get() returns, without a decode
+        assertSame(first.await(), third.jpeg.get());
+        assertEquals(1, decoded.size());
+
+        // Another size is another thumbnail
+        engine.get("gate1", 1000, 80, 45, 70, new Result());
+        waitFor(2);
+    }
+
+    @Test
+    public void explicitRequestsGoFirstAndSupersededPrefetchesAreDropped() throws Exception {
+        engine.get("gate1", 0, 0, 0, 70, new Result());
+        engine.get("gate2", 0, 0, 0, 70, new Result());
+        assertTrue(gatesEntered.await(5, TimeUnit.SECONDS));
+
+        engine.prefetch(URL, 1000, 500, 1, 0, 0, 70);
+        Result explicit = new Result();
+        engine.get(URL, 3000, 0, 0, 70, explicit);
+        engine.prefetch(URL, 8000, 500, 1, 0, 0, 70);
+        // One worker drains the queue alone, so the order is deterministic
+        gates.get("gate1").countDown();
+        waitFor(5);
+        gates.get("gate2").countDown();
+        waitFor(6);
+        // Time for the dropped prefetches to have been decoded, had they not been
+        Thread.sleep(200);
+
+        assertNotNull(explicit.await());
+        assertEquals(Arrays.asList(
+                "gate1@0", URL + "@3000", URL + "@8000", URL + "@8500", URL + "@7500", "gate2@0"), decoded);
+    }
+
+    @Test
+    public void shrinkingTheBudgetEvictsTheLeastRecentlyUsedBytes() throws Exception {
+        byte[] older = new Result().get(engine, URL, 1000);
+        byte[] newer = new Result().get(engine, URL, 2000);
+        assertEquals(2, decoded.size());
+
+        // Fits the newer thumbnail alone
+        engine.setMaxBytes(older.length + newer.length - 1);
+
+        Result hit = new Result();
+        engine.get(URL, 2000, 0, 0, 70, hit);
+        assertSame(newer, hit.jpeg.get());
+        Result miss = new Result();
+        engine.get(URL, 1000, 0, 0, 70, miss);
+        assertNotNull(miss.await());
+        assertEquals(3, decoded.size());
+        assertEquals(URL + "@1000", decoded.get(2));
+    }
+
+    @Test
+    public void cachedUrlIsReadFromTheCacheAtAnyPosition() throws Exception {
+        byte[] media = new byte[64 * 1024];
+        for (int i = 0; i < media.length; i++) {
+            media[i] = (byte) i;
+        }
+        Uri uri = Uri.parse("https://cdn.example.com/vod/video.mp4");
+        SimpleCache cache = new SimpleCache(folder.newFolder("media"), new NoOpCacheEvictor(),
+                new StandaloneDatabaseProvider(RuntimeEnvironment.getApplication()));
+        try {
+            new CacheWriter(new CacheDataSource(cache, new ByteArrayDataSource(media)), new DataSpec(uri),
+                    /* temporaryBuffer= */ null, /* progressListener= */ null).cache();
+            // Nothing answers on the network side; every byte has to come from the cache
+            CacheDataSource.Factory factory = new CacheDataSource.Factory()
+                    .setCache(cache)
+                    .setUpstreamDataSourceFactory(FileDataSource::new);
+            ThumbnailEngine.DataSourceMediaDataSource source =
+                    new ThumbnailEngine.DataSourceMediaDataSource(factory.createDataSource(), uri);
+            try {
+                assertEquals(media.length, source.getSize());
+                // The retriever reads the index at the end before the samples at the start
+                byte[] tail = new byte[1024];
+                assertEquals(1024, source.readAt(media.length - 1024, tail, 0, 1024));
+                assertArrayEquals(Arrays.copyOfRange(media, media.length - 1024, media.length), tail);
+                byte[] head = new byte[1024];
+                assertEquals(1024, source.readAt(0, head, 0, 1024));
+                assertArrayEquals(Arrays.copyOfRange(media, 0, 1024), head);
+                assertEquals(-1, source.readAt(media.length, head, 0, 1024));
+            } finally {
+                source.close();
+            }
+        } finally {
+            cache.release();
+        }
+    }
+
+    private void waitFor(int decodes) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (decoded.size() < decodes) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out with " + decoded);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static final class Result implements ThumbnailEngine.Callback {
+        final AtomicReference<byte[]> jpeg = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onThumbnail(byte[] jpeg, Exception error) {
+            assertNull(error);
+            this.jpeg.set(jpeg);
+            done.countDown();
+        }
+
+        byte[] await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            return jpeg.get();
+        }
+
+        byte[] get(ThumbnailEngine engine, String url, long timeMs) throws InterruptedException {
+            engine.get(url, timeMs, 0, 0, 70, this);
+            return await();
+        }
+    }
+}
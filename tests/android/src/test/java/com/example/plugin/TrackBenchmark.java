@@ -0,0 +1,57 @@
+package com.example.plugin;
+
+import com.google.android.exoplayer2.Tracks;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Track handling for growing renditions ladders: the work done on every
+ * {@code onTracksChanged}, and the lookup behind setVideoQuality.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TrackBenchmark {
+
+    @Param({"8", "64", "256"})
+    public int renditions;
+
+    private NativePlayer plugin;
+    private PlayerSession session;
+    private Tracks tracks;
+    private TrackSelectionParameters parameters;
+
+    @Setup
+    public void setUp() {
+        plugin = BenchmarkRunnerTest.harness.plugin;
+        session = new PlayerSession(1, "player", BufferProfile.DEFAULT, RenderMode.SURFACE);
+        tracks = TestTracks.adaptive(renditions, 8);
+        session.trackCatalog = new TrackCatalog(tracks);
+        parameters = TrackSelectionParameters.DEFAULT_WITHOUT_CONTEXT;
+    }
+
+    @Benchmark
+    public void onTracksChanged() {
+        session.trackCatalog = new TrackCatalog(tracks);
+        plugin.handleTrackChange(session);
+    }
+
+    @Benchmark
+    public TrackSelectionParameters setVideoQuality() {
+        return session.trackCatalog.videoForQuality("720p").applyTo(parameters);
+    }
+}
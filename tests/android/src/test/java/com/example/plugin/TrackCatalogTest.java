@@ -0,0 +1,75 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Tracks;
+import com.google.common.collect.ImmutableList;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class TrackCatalogTest {
+
+    @Test
+    public void qualityMapsToTheHighestBitrateRendition() {
+        Tracks tracks = new Tracks(ImmutableList.of(TestTracks.group(
+                TestTracks.video(360, 800_000),
+                TestTracks.video(720, 2_500_000),
+                TestTracks.video(720, 3_000_000),
+                TestTracks.video(1080, 5_000_000))));
+
+        TrackCatalog catalog = new TrackCatalog(tracks);
+
+        assertEquals("v:0.2", catalog.videoForQuality("720p").id);
+        assertEquals("v:0.0", catalog.videoForQuality("360p").id);
+        assertNull(catalog.videoForQuality("480p"));
+    }
+
+    @Test
+    public void tracksAreFoundById() {
+        TrackCatalog catalog = new TrackCatalog(TestTracks.adaptive(4, 2));
+
+        TrackCatalog.Track track = catalog.byId("a:1.0");
+
+        assertEquals(C.TRACK_TYPE_AUDIO, track.type);
+        assertSame(track, catalog.selected(C.TRACK_TYPE_AUDIO));
+        assertNull(catalog.byId("a:9.0"));
+    }
+
+    @Test
+    public void languagesAreNormalized() {
+        TrackCatalog catalog = new TrackCatalog(TestTracks.adaptive(1, 2));
+
+        assertTrue(catalog.hasLanguage(C.TRACK_TYPE_AUDIO, "eng"));
+        assertTrue(catalog.hasLanguage(C.TRACK_TYPE_TEXT, "de"));
+        assertFalse(catalog.hasLanguage(C.TRACK_TYPE_AUDIO, "fr"));
+    }
+
+    @Test
+    public void tracksAreKnownPerType() {
+        TrackCatalog catalog = new TrackCatalog(TestTracks.adaptive(1, 2));
+
+        assertTrue(catalog.hasTracks(C.TRACK_TYPE_AUDIO));
+        assertFalse(TrackCatalog.EMPTY.hasTracks(C.TRACK_TYPE_TEXT));
+    }
+
+    @Test
+    public void jsonListsVideoByDescendingBitrate() throws Exception {
+        TrackCatalog catalog = new TrackCatalog(TestTracks.adaptive(3, 1));
+
+        JSONObject json = catalog.toJson();
+
+        assertEquals(3, json.getJSONArray("video").length());
+        assertEquals("360p", json.getJSONArray("qualities").getString(0));
+        assertEquals(1, json.getJSONArray("audio").length());
+        assertEquals(1, json.getJSONArray("text").length());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class ViewSchedulerTest {
+
+    private final ViewScheduler scheduler = new ViewScheduler();
+
+    @Test
+    public void tilesBeyondTheDecoderSlotsBecomeStills() throws Exception {
+        scheduler.configure(new JSONObject().put("decoderSlots", 2));
+        PlayerSession first = tile(1, ViewScheduler.VISIBLE);
+        PlayerSession second = tile(2, ViewScheduler.VISIBLE);
+        PlayerSession focused = tile(3, ViewScheduler.FOCUSED);
+
+        Map<PlayerSession, ViewScheduler.Assignment> assignments =
+                scheduler.schedule(Arrays.asList(first, second, focused), 0);
+
+        assertEquals(Arrays.asList(focused, first, second), new ArrayList<>(assignments.keySet()));
+        assertTrue(assignments.get(focused).decodes);
+        assertTrue(assignments.get(first).decodes);
+        assertFalse(assignments.get(second).decodes);
+    }
+
+    @Test
+    public void offscreenTilesNeverDecode() throws Exception {
+        PlayerSession visible = tile(1, ViewScheduler.VISIBLE);
+        PlayerSession offscreen = tile(2, ViewScheduler.OFFSCREEN);
+
+        Map<PlayerSession, ViewScheduler.Assignment> assignments =
+                scheduler.schedule(Arrays.asList(visible, offscreen), 0);
+
+        assertTrue(assignments.get(visible).decodes);
+        assertFalse(assignments.get(offscreen).decodes);
+        assertEquals("still", assignments.get(offscreen).toJson().getString("state"));
+    }
+
+    @Test
+    public void onlyTheFocusedTileIsAudible() {
+        PlayerSession focused = tile(1, ViewScheduler.FOCUSED);
+        PlayerSession visible = tile(2, ViewScheduler.VISIBLE);
+
+        Map<PlayerSession, ViewScheduler.Assignment> assignments =
+                scheduler.schedule(Arrays.asList(focused, visible), 0);
+
+        assertTrue(assignments.get(focused).audible);
+        assertFalse(assignments.get(visible).audible);
+    }
+
+    @Test
+    public void budgetIsSplitByWeightAmongDecodingTiles() throws Exception {
+        scheduler.configure(new JSONObject().put("decoderSlots", 3));
+        List<PlayerSession> tiles = Arrays.asList(
+                tile(1, ViewScheduler.FOCUSED),
+                tile(2, ViewScheduler.VISIBLE),
+                tile(3, ViewScheduler.VISIBLE),
+                tile(4, ViewScheduler.VISIBLE));
+
+        Map<PlayerSession, ViewScheduler.Assignment> assignments = scheduler.schedule(tiles, 6_000_000);
+
+        assertEquals(4_000_000, assignments.get(tiles.get(0)).maxBitrate);
+        assertEquals(1_000_000, assignments.get(tiles.get(1)).maxBitrate);
+        assertEquals(1_000_000, assignments.get(tiles.get(2)).maxBitrate);
+        // A still gets no share
+        assertEquals(Integer.MAX_VALUE, assignments.get(tiles.get(3)).maxBitrate);
+    }
+
+    @Test
+    public void configuredBudgetReplacesTheEstimate() throws Exception {
+        assertEquals(3_000_000, scheduler.budgetFor(3_000_000));
+
+        scheduler.configure(new JSONObject().put("bandwidthBps", 8_000_000));
+
+        assertEquals(8_000_000, scheduler.budgetFor(3_000_000));
+    }
+
+    private static PlayerSession tile(int id, String priority) {
+        PlayerSession session = new PlayerSession(id, "tile" + id, BufferProfile.DEFAULT, RenderMode.SURFACE);
+        session.viewPriority = priority;
+        return session;
+    }
+}
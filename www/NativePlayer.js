@@ -1,44 +1,453 @@
 var exec = require('cordova/exec');
 
+// Event listeners keyed by event type; '*' receives every event.
+var listeners = {};
+var channelOpen = false;
+
+function dispatch(event) {
+    var callbacks = (listeners[event.type] || []).concat(listeners['*'] || []);
+    for (var i = 0; i < callbacks.length; i++) {
+        callbacks[i](event);
+    }
+}
+
+function openEventChannel() {
+    if (channelOpen) {
+        return;
+    }
+    channelOpen = true;
+    var success = function(batch) {
+        // Android delivers batches, iOS delivers single events
+        if (Array.isArray(batch)) {
+            for (var i = 0; i < batch.length; i++) {
+                dispatch(batch[i]);
+            }
+        } else if (batch) {
+            dispatch(batch);
+        }
+    };
+    var error = function(err) {
+        console.error('Error in NativePlayer event listener:', err);
+    };
+    exec(success, error, 'NativePlayer', 'registerEventListener', []);
+}
+
+function syncSubscriptions() {
+    var types = Object.keys(listeners).filter(function(type) {
+        return listeners[type].length > 0;
+    });
+    exec(null, function() {}, 'NativePlayer', 'setEventSubscriptions', [types]);
+}
+
+// Placeholders whose rects are mirrored to the native views, keyed by player id.
+var tracked = {};
+var trackedCount = 0;
+var layoutFrame = null;
+var resizeObserver = null;
+
+function scheduleLayout() {
+    if (layoutFrame === null && trackedCount > 0) {
+        layoutFrame = window.requestAnimationFrame(flushLayout);
+    }
+}
+
+function flushLayout() {
+    layoutFrame = null;
+    var updates = [];
+    for (var playerId in tracked) {
+        var entry = tracked[playerId];
+        var r = entry.element.getBoundingClientRect();
+        var rect = [Math.round(r.left), Math.round(r.top), Math.round(r.width), Math.round(r.height)];
+        var last = entry.rect;
+        if (last && last[0] === rect[0] && last[1] === rect[1] && last[2] === rect[2] && last[3] === rect[3]) {
+            continue;
+        }
+        entry.rect = rect;
+        updates.push([Number(playerId)].concat(rect));
+    }
+    if (updates.length > 0) {
+        exec(null, function() {}, 'NativePlayer', 'updateLayout', [updates]);
+    }
+}
+
+function trackLayout(playerId, divId) {
+    var element = document.getElementById(divId);
+    if (!element) {
+        return;
+    }
+    if (trackedCount === 0) {
+        window.addEventListener('scroll', scheduleLayout, {capture: true, passive: true});
+        window.addEventListener('resize', scheduleLayout);
+        if (window.ResizeObserver) {
+            resizeObserver = new ResizeObserver(scheduleLayout);
+            resizeObserver.observe(document.body);
+        }
+    }
+    if (!tracked[playerId]) {
+        trackedCount++;
+    }
+    tracked[playerId] = {element: element, rect: null};
+    if (resizeObserver) {
+        resizeObserver.observe(element);
+    }
+    scheduleLayout();
+}
+
+function untrackLayout(playerId) {
+    var entry = tracked[playerId];
+    if (!entry) {
+        return;
+    }
+    delete tracked[playerId];
+    trackedCount--;
+    if (resizeObserver) {
+        resizeObserver.unobserve(entry.element);
+    }
+    if (trackedCount === 0) {
+        window.removeEventListener('scroll', scheduleLayout, {capture: true});
+        window.removeEventListener('resize', scheduleLayout);
+        if (resizeObserver) {
+            resizeObserver.disconnect();
+            resizeObserver = null;
+        }
+    }
+}
+
 var NativePlayer = {
-    createPlayer: function(url, divId, success, error) {
-        exec(success, error, 'NativePlayer', 'createPlayer', [url, divId]);
+    /**
+     * Creates a player inside the element `divId`. `options` is optional:
+     * {bufferProfile: 'fastStart' | 'lowMemory' | 'highStability' | {base, minBufferMs, ...},
+     *  audioLanguage, textLanguage, viewPriority: 'focused' | 'visible' | 'offscreen'}
+     */
+    createPlayer: function(url, divId, options, success, error) {
+        if (typeof options === 'function') {
+            error = success;
+            success = options;
+            options = {};
+        }
+        var created = function(playerId) {
+            trackLayout(playerId, divId);
+            if (typeof success === 'function') {
+                success(playerId);
+            }
+        };
+        // Dates the call for the startup trace
+        exec(created, error, 'NativePlayer', 'createPlayer', [url, divId, options || {}, Date.now()]);
+    },
+    destroy: function(playerId, success, error) {
+        untrackLayout(playerId);
+        exec(success, error, 'NativePlayer', 'destroy', [playerId]);
+    },
+    /**
+     * Moves a player onto another placeholder element. The native view follows the
+     * element through scrolling and reflows.
+     */
+    trackLayout: function(playerId, divId) {
+        untrackLayout(playerId);
+        trackLayout(playerId, divId);
+    },
+    setPlayerPoolSize: function(size, success, error) {
+        exec(success, error, 'NativePlayer', 'setPlayerPoolSize', [size]);
+    },
+    /**
+     * Configures the on-disk media cache used by players created afterwards.
+     * options: {enabled, maxBytes, ignoreQueryParameters}
+     */
+    configureCache: function(options, success, error) {
+        exec(success, error, 'NativePlayer', 'configureCache', [options || {}]);
+    },
+    /**
+     * Warms the cache with the first `bytes` bytes of `url` (the whole file when omitted).
+     */
+    prefetch: function(url, bytes, success, error) {
+        exec(success, error, 'NativePlayer', 'prefetch', [url, bytes]);
+    },
+    getCacheStats: function(success, error) {
+        exec(success, error, 'NativePlayer', 'getCacheStats', []);
+    },
+    /**
+     * Configures the HTTP client shared by all players, prefetches and downloads.
+     * options: {connectTimeoutMs, readTimeoutMs, maxIdleConnections, keepAliveMs, http2,
+     * maxConcurrentRequests}
+     */
+    configureHttp: function(options, success, error) {
+        exec(success, error, 'NativePlayer', 'configureHttp', [options || {}]);
+    },
+    /**
+     * Returns {connections, idleConnections, activeRequests, requests}, with request
+     * timings totalled per priority class.
+     */
+    getHttpStats: function(success, error) {
+        exec(success, error, 'NativePlayer', 'getHttpStats', []);
+    },
+    /**
+     * options: {decoderSlots, bandwidthBps}, the number of multi-view tiles that decode at
+     * once and the bandwidth shared by them; a bandwidthBps of 0 uses the estimate.
+     */
+    configureMultiView: function(options, success, error) {
+        exec(success, error, 'NativePlayer', 'configureMultiView', [options || {}]);
+    },
+    /**
+     * Writes the startup traces of the last `count` players to a JSON file in the app's
+     * external files directory. Returns {path, count}.
+     */
+    dumpStartupTraces: function(count, success, error) {
+        exec(success, error, 'NativePlayer', 'dumpStartupTraces', [count]);
+    },
+    /**
+     * Returns {network, estimates}: the current network key and the stored bandwidth
+     * estimate of every network seen so far.
+     */
+    getBandwidthEstimates: function(success, error) {
+        exec(success, error, 'NativePlayer', 'getBandwidthEstimates', []);
+    },
+    resetBandwidthEstimates: function(success, error) {
+        exec(success, error, 'NativePlayer', 'resetBandwidthEstimates', []);
+    },
+    /**
+     * Sets the video caps applied per network. `rules` is checked in order and the first
+     * match wins: [{network: 'cellular', metered: true, maxHeight: 720}, {network: 'wifi'}].
+     * Conditions: network, metered, minDownstreamKbps, maxDownstreamKbps.
+     * Caps: maxHeight, maxBitrate.
+     */
+    setNetworkPolicy: function(rules, success, error) {
+        exec(success, error, 'NativePlayer', 'setNetworkPolicy', [rules || []]);
+    },
+    /**
+     * Returns {time, src} for the frame of `url` nearest to `time` seconds.
+     * options: {width, height, quality, format: 'dataUrl' | 'file'}
+     */
+    getThumbnail: function(url, time, options, success, error) {
+        exec(success, error, 'NativePlayer', 'getThumbnail', [url, time, options || {}]);
+    },
+    /**
+     * Decodes `count` frames on each side of `time`, `interval` seconds apart, so scrubbing
+     * around it is served from memory.
+     * options: {width, height, quality, count, interval}
+     */
+    prefetchThumbnails: function(url, time, options, success, error) {
+        exec(success, error, 'NativePlayer', 'prefetchThumbnails', [url, time, options || {}]);
     },
-    play: function(success, error) {
-        exec(success, error, 'NativePlayer', 'play', []);
+    setThumbnailCacheSize: function(maxBytes, success, error) {
+        exec(success, error, 'NativePlayer', 'setThumbnailCacheSize', [maxBytes]);
     },
-    pause: function(success, error) {
-        exec(success, error, 'NativePlayer', 'pause', []);
+    /**
+     * Downloads `url` for offline playback under `downloadId`. Progress arrives as
+     * `downloadProgress` events; later createPlayer calls with the same URL play locally.
+     */
+    download: function(downloadId, url, title, success, error) {
+        exec(success, error, 'NativePlayer', 'download', [downloadId, url, title]);
     },
-    stop: function(success, error) {
-        exec(success, error, 'NativePlayer', 'stop', []);
+    removeDownload: function(downloadId, success, error) {
+        exec(success, error, 'NativePlayer', 'removeDownload', [downloadId]);
     },
-    seekTo: function(position, success, error) {
-        exec(success, error, 'NativePlayer', 'seekTo', [position]);
+    pauseDownloads: function(success, error) {
+        exec(success, error, 'NativePlayer', 'pauseDownloads', []);
     },
-    setVolume: function(volume, success, error) {
-        exec(success, error, 'NativePlayer', 'setVolume', [volume]);
+    resumeDownloads: function(success, error) {
+        exec(success, error, 'NativePlayer', 'resumeDownloads', []);
     },
-    getPosition: function(success, error) {
-        exec(success, error, 'NativePlayer', 'getPosition', []);
+    /**
+     * Returns {downloads, storage}: every known download and the bytes used against the quota.
+     */
+    getDownloads: function(success, error) {
+        exec(success, error, 'NativePlayer', 'getDownloads', []);
     },
-    getDuration: function(success, error) {
-        exec(success, error, 'NativePlayer', 'getDuration', []);
+    /**
+     * options: {maxParallelDownloads, segmentThreads, quotaBytes}
+     */
+    setDownloadOptions: function(options, success, error) {
+        exec(success, error, 'NativePlayer', 'setDownloadOptions', [options || {}]);
     },
-    destroy: function(success, error) {
-        exec(success, error, 'NativePlayer', 'destroy', []);
+    play: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'play', [playerId]);
+    },
+    pause: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'pause', [playerId]);
+    },
+    stop: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'stop', [playerId]);
+    },
+    seekTo: function(playerId, position, success, error) {
+        exec(success, error, 'NativePlayer', 'seekTo', [playerId, position]);
+    },
+    /**
+     * Switches the player to another URL, optionally starting at `position` seconds.
+     * Cheaper than destroy + createPlayer: the surface and decoders are kept.
+     */
+    load: function(playerId, url, position, success, error) {
+        if (typeof position === 'function') {
+            error = success;
+            success = position;
+            position = null;
+        }
+        exec(success, error, 'NativePlayer', 'load', [playerId, url, position]);
+    },
+    /**
+     * Jumps to the live edge, at the target live offset. Fails when the item is not live.
+     */
+    seekToLiveEdge: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'seekToLiveEdge', [playerId]);
+    },
+    /**
+     * Sets how seeks land: 'exact' (default), 'closestSync', 'previousSync' or 'nextSync'.
+     * The sync modes jump to a keyframe, which is faster but less precise.
+     */
+    setSeekMode: function(playerId, mode, success, error) {
+        exec(success, error, 'NativePlayer', 'setSeekMode', [playerId, mode]);
+    },
+    /**
+     * Call with true when the user starts dragging the scrubber and with false on release.
+     * Seeks in between snap to keyframes; the release seeks once to the last position.
+     */
+    setScrubbing: function(playerId, scrubbing, success, error) {
+        exec(success, error, 'NativePlayer', 'setScrubbing', [playerId, scrubbing]);
+    },
+    /**
+     * Makes the player a multi-view tile: 'focused', 'visible' or 'offscreen'. null turns
+     * it back into a regular player.
+     */
+    setViewPriority: function(playerId, priority, success, error) {
+        exec(success, error, 'NativePlayer', 'setViewPriority', [playerId, priority]);
+    },
+    setVolume: function(playerId, volume, success, error) {
+        exec(success, error, 'NativePlayer', 'setVolume', [playerId, volume]);
+    },
+    /**
+     * Sets how often timeUpdate fires while playing, in Hz (0.2 to 4).
+     */
+    setTimeUpdateRate: function(playerId, rateHz, success, error) {
+        exec(success, error, 'NativePlayer', 'setTimeUpdateRate', [playerId, rateHz]);
+    },
+    /**
+     * Appends items to the player's queue, or inserts them at `index`. Items are URLs or
+     * {url, id, title} objects.
+     */
+    addToQueue: function(playerId, items, index, success, error) {
+        if (typeof index === 'function') {
+            error = success;
+            success = index;
+            index = -1;
+        }
+        exec(success, error, 'NativePlayer', 'addToQueue', [playerId, items, index]);
+    },
+    removeFromQueue: function(playerId, index, success, error) {
+        exec(success, error, 'NativePlayer', 'removeFromQueue', [playerId, index]);
+    },
+    moveInQueue: function(playerId, from, to, success, error) {
+        exec(success, error, 'NativePlayer', 'moveInQueue', [playerId, from, to]);
+    },
+    next: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'next', [playerId]);
+    },
+    previous: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'previous', [playerId]);
+    },
+    jumpTo: function(playerId, index, success, error) {
+        exec(success, error, 'NativePlayer', 'jumpTo', [playerId, index]);
+    },
+    /**
+     * Sets how many seconds before the end of the current item the next one is
+     * pre-buffered, and how many bytes of it.
+     */
+    setPreloadWindow: function(playerId, windowSeconds, bytes, success, error) {
+        exec(success, error, 'NativePlayer', 'setPreloadWindow', [playerId, windowSeconds, bytes]);
+    },
+    /**
+     * options: {maxRetries, baseDelayMs, maxDelayMs} for automatic recovery from errors.
+     */
+    setRecoveryOptions: function(playerId, options, success, error) {
+        exec(success, error, 'NativePlayer', 'setRecoveryOptions', [playerId, options || {}]);
+    },
+    /**
+     * Returns the player's quality-of-experience counters (startup, rebuffering, dropped
+     * frames, bitrates, bandwidth, bytes and decoder initialisation).
+     */
+    getStats: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'getStats', [playerId]);
+    },
+    /**
+     * Emits a `stats` event with the getStats summary every `intervalSeconds`; 0 stops it.
+     */
+    setStatsInterval: function(playerId, intervalSeconds, success, error) {
+        exec(success, error, 'NativePlayer', 'setStatsInterval', [playerId, intervalSeconds]);
+    },
+    getPosition: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'getPosition', [playerId]);
+    },
+    getDuration: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'getDuration', [playerId]);
+    },
+    setRate: function(playerId, rate, success, error) {
+        exec(success, error, 'NativePlayer', 'setRate', [playerId, rate]);
+    },
+    toggleFullscreen: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'toggleFullscreen', [playerId]);
+    },
+    togglePictureInPicture: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'togglePictureInPicture', [playerId]);
+    },
+    setPreferredAudioLanguage: function(playerId, language, success, error) {
+        exec(success, error, 'NativePlayer', 'setPreferredAudioLanguage', [playerId, language]);
+    },
+    setPreferredTextLanguage: function(playerId, language, success, error) {
+        exec(success, error, 'NativePlayer', 'setPreferredTextLanguage', [playerId, language]);
+    },
+    enableSubtitles: function(playerId, enable, success, error) {
+        exec(success, error, 'NativePlayer', 'enableSubtitles', [playerId, enable]);
+    },
+    setVideoQuality: function(playerId, quality, success, error) {
+        exec(success, error, 'NativePlayer', 'setVideoQuality', [playerId, quality]);
+    },
+    /**
+     * Returns {video, audio, text, qualities}: every track with its id, codecs, bitrate and
+     * language or resolution.
+     */
+    getTracks: function(playerId, success, error) {
+        exec(success, error, 'NativePlayer', 'getTracks', [playerId]);
+    },
+    selectTrack: function(playerId, trackId, success, error) {
+        exec(success, error, 'NativePlayer', 'selectTrack', [playerId, trackId]);
+    },
+    setBackgroundPlayback: function(playerId, enabled, success, error) {
+        exec(success, error, 'NativePlayer', 'setBackgroundPlayback', [playerId, enabled]);
+    },
+    /**
+     * Runs [[action, args], ...] back to back in one bridge crossing. success receives one
+     * {ok, result} or {ok: false, error} per command, in order.
+     */
+    executeBatch: function(commands, success, error) {
+        exec(success, error, 'NativePlayer', 'executeBatch', [commands]);
+    },
+    /**
+     * Subscribes to one event type. Only subscribed types are serialized natively.
+     */
+    on: function(type, callback) {
+        if (typeof callback !== 'function') {
+            return;
+        }
+        (listeners[type] = listeners[type] || []).push(callback);
+        syncSubscriptions();
+        openEventChannel();
+    },
+    off: function(type, callback) {
+        var callbacks = listeners[type];
+        if (!callbacks) {
+            return;
+        }
+        listeners[type] = callback ? callbacks.filter(function(cb) { return cb !== callback; }) : [];
+        syncSubscriptions();
+    },
+    /**
+     * Sets how often queued events are flushed to JS, in milliseconds. 0 flushes once per
+     * display frame.
+     */
+    setEventBatchInterval: function(intervalMs, success, error) {
+        exec(success, error, 'NativePlayer', 'setEventBatchInterval', [intervalMs]);
     },
     registerEventListener: function(callback) {
-        var success = function(event) {
-            if (typeof callback === 'function') {
-                callback(event);
-            }
-        };
-        var error = function(err) {
-            console.error('Error in NativePlayer event listener:', err);
-        };
-        exec(success, error, 'NativePlayer', 'registerEventListener', []);
+        NativePlayer.on('*', callback);
     }
 };
 
-module.exports = NativePlayer;
\ No newline at end of file
+module.exports = NativePlayer;